@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.example.processors.generic;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.example.processors.generic.util.Helper;
+import org.example.processors.generic.util.XmlStreamingConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @implNote payload level Helper methods over a range of payload sizes and shapes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HelperBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int fields;
+
+    @Param({"FLAT", "NESTED"})
+    public Payloads.Shape shape;
+
+    private final Gson gson = new Gson();
+    private String json;
+    private byte[] jsonBytes;
+    private JsonObject jsonObject;
+    private String xml;
+    private byte[] xmlBytes;
+    private DocumentBuilder documentBuilder;
+    private Map<String, String> replacementMap;
+    private final String[] keysToCheck = {"key1", "key2"};
+    private final String[] newKeyNames = {"cc_newField", "cc_newField2"};
+
+    @Setup
+    public void setup() throws ParserConfigurationException {
+        json = Payloads.json(fields, shape);
+        jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+        jsonObject = gson.fromJson(json, JsonObject.class);
+        xml = Payloads.xml(fields, shape);
+        xmlBytes = xml.getBytes(StandardCharsets.UTF_8);
+        documentBuilder = Helper.createDocumentBuilder();
+        replacementMap = Helper.createReplacementMap("six,2012,value1", "red,yellow,set");
+    }
+
+    @Benchmark
+    public JsonObject convertXmlToJson() {
+        return Helper.convertXmlToJson(xml);
+    }
+
+    @Benchmark
+    public JsonObject convertXmlToJsonReusedBuilder() {
+        return Helper.convertXmlToJson(xml, documentBuilder);
+    }
+
+    @Benchmark
+    public byte[] convertXmlToJsonStreaming() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(xmlBytes.length);
+        try (JsonGenerator generator = Helper.JSON_FACTORY.createGenerator(out)) {
+            XmlStreamingConverter.convertXmlToJson(new ByteArrayInputStream(xmlBytes), generator);
+        }
+        return out.toByteArray();
+    }
+
+    /* the tree remover works in place, so every call gets its own copy, see deepCopyBaseline for that share */
+    @Benchmark
+    public JsonObject removeNullEmptyAndWhitespaceFields() {
+        JsonObject copy = jsonObject.deepCopy();
+        Helper.removeNullEmptyAndWhitespaceFields(copy);
+        return copy;
+    }
+
+    @Benchmark
+    public JsonObject deepCopyBaseline() {
+        return jsonObject.deepCopy();
+    }
+
+    @Benchmark
+    public byte[] removeNullEmptyAndWhitespaceFieldsStreaming() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(jsonBytes.length);
+        try (JsonParser parser = Helper.JSON_FACTORY.createParser(jsonBytes);
+             JsonGenerator generator = Helper.JSON_FACTORY.createGenerator(out)) {
+            Helper.removeNullEmptyAndWhitespaceFields(parser, generator);
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public String addMapValueToJSON() {
+        return Helper.addMapValueToJSON(json, replacementMap, keysToCheck, newKeyNames, gson);
+    }
+}
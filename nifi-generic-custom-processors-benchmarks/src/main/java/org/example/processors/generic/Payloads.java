@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.example.processors.generic;
+
+/**
+ * @implNote deterministic json and xml payloads shared by the benchmarks, every payload carries the fields
+ * the processors are configured for plus a mix of null, empty, whitespace and regular values
+ */
+final class Payloads {
+
+    /* fields per nested group */
+    private static final int GROUP_SIZE = 10;
+
+    enum Shape {
+        /* every field on the top level object */
+        FLAT,
+        /* fields grouped into objects of ten, each group also holding an array of two small objects */
+        NESTED
+    }
+
+    private Payloads() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    static String json(int fields, Shape shape) {
+        StringBuilder json = new StringBuilder(fields * 24);
+        json.append("{\"email\": \"first.last@example.org\", \"key1\": \"value1\", \"key2\": \"2012\", \"AA\": \"0.705342\"");
+        if (shape == Shape.FLAT) {
+            for (int i = 0; i < fields; i++) {
+                json.append(", ");
+                appendJsonField(json, i);
+            }
+        } else {
+            for (int group = 0; group * GROUP_SIZE < fields; group++) {
+                json.append(", \"g").append(group).append("\": {");
+                int end = Math.min(fields, (group + 1) * GROUP_SIZE);
+                for (int i = group * GROUP_SIZE; i < end; i++) {
+                    appendJsonField(json, i);
+                    json.append(", ");
+                }
+                json.append("\"items\": [{\"id\": ").append(group).append(", \"note\": null}, {\"id\": ")
+                        .append(group).append(", \"note\": \" \"}]}");
+            }
+        }
+        return json.append('}').toString();
+    }
+
+    /* telemetry document with a numeric readings array below a nested object */
+    static String readings(int readings) {
+        StringBuilder json = new StringBuilder(readings * 8);
+        json.append("{\"device\": \"sensor-1\", \"telemetry\": {\"unit\": \"ratio\", \"readings\": [");
+        for (int i = 0; i < readings; i++) {
+            if (i > 0) {
+                json.append(", ");
+            }
+            json.append((i * 7919 % 1000) / 1000.0);
+        }
+        return json.append("]}}").toString();
+    }
+
+    static String xml(int elements, Shape shape) {
+        StringBuilder xml = new StringBuilder(elements * 32);
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?><root version=\"1\"><email>first.last@example.org</email>");
+        if (shape == Shape.FLAT) {
+            for (int i = 0; i < elements; i++) {
+                appendXmlElement(xml, i);
+            }
+        } else {
+            for (int group = 0; group * GROUP_SIZE < elements; group++) {
+                xml.append("<g").append(group).append(" id=\"").append(group).append("\">");
+                int end = Math.min(elements, (group + 1) * GROUP_SIZE);
+                for (int i = group * GROUP_SIZE; i < end; i++) {
+                    appendXmlElement(xml, i);
+                }
+                xml.append("<items><item type=\"a\">").append(group).append("</item></items></g").append(group).append('>');
+            }
+        }
+        return xml.append("</root>").toString();
+    }
+
+    private static void appendJsonField(StringBuilder json, int index) {
+        json.append("\"f").append(index).append("\": ");
+        switch (index % 5) {
+            case 0:
+                json.append("\"value").append(index).append('"');
+                break;
+            case 1:
+                json.append("null");
+                break;
+            case 2:
+                json.append("\"\"");
+                break;
+            case 3:
+                json.append("\"   \"");
+                break;
+            default:
+                json.append(index).append(".25");
+                break;
+        }
+    }
+
+    private static void appendXmlElement(StringBuilder xml, int index) {
+        if (index % 3 == 0) {
+            xml.append("<f").append(index).append(" unit=\"u").append(index).append("\"/>");
+        } else {
+            xml.append("<f").append(index).append(">value").append(index).append("</f").append(index).append('>');
+        }
+    }
+}
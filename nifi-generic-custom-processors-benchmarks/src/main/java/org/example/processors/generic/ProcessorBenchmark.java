@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.example.processors.generic;
+
+import org.apache.nifi.util.TestRunner;
+import org.apache.nifi.util.TestRunners;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @implNote end to end onTrigger of every processor through the mock framework, one FlowFile per operation.
+ * The runner is rebuilt for every iteration because the mock logger keeps every logged message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessorBenchmark {
+
+    @Param({"JsonNullRemover", "XmlToJson", "KeyMapReplacer", "KeyMapReplacerSplice", "JSONRegexMatcher", "RangeConverter"})
+    public String processor;
+
+    @Param({"10", "1000", "10000"})
+    public int fields;
+
+    @Param({"FLAT", "NESTED"})
+    public Payloads.Shape shape;
+
+    private TestRunner testRunner;
+    private byte[] content;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        testRunner = createTestRunner();
+        content = ("XmlToJson".equals(processor) ? Payloads.xml(fields, shape) : Payloads.json(fields, shape))
+                .getBytes(StandardCharsets.UTF_8);
+        /* first run schedules the processor, later runs only trigger it */
+        testRunner.enqueue(content);
+        testRunner.run(1, false, true);
+        testRunner.clearTransferState();
+    }
+
+    @Benchmark
+    public TestRunner onTrigger() {
+        testRunner.enqueue(content);
+        testRunner.run(1, false, false);
+        testRunner.clearTransferState();
+        return testRunner;
+    }
+
+    private TestRunner createTestRunner() {
+        TestRunner runner;
+        switch (processor) {
+            case "JsonNullRemover":
+                runner = TestRunners.newTestRunner(JsonNullRemover.class);
+                break;
+            case "XmlToJson":
+                runner = TestRunners.newTestRunner(XmlToJson.class);
+                break;
+            case "KeyMapReplacer":
+            case "KeyMapReplacerSplice":
+                runner = TestRunners.newTestRunner(KeyMapReplacer.class);
+                if ("KeyMapReplacerSplice".equals(processor)) {
+                    runner.setProperty(KeyMapReplacer.PROCESSING_MODE, "SPLICE");
+                }
+                runner.setProperty(KeyMapReplacer.CONST_MAP_KEYS, "six,2012,value1");
+                runner.setProperty(KeyMapReplacer.CONST_MAP_VALUES, "red,yellow,set");
+                runner.setProperty(KeyMapReplacer.KEY_TO_CHECK, "key1,key2");
+                runner.setProperty(KeyMapReplacer.NEW_KEY_NAMES, "cc_newField,cc_newField2");
+                break;
+            case "JSONRegexMatcher":
+                runner = TestRunners.newTestRunner(JSONRegexMatcher.class);
+                runner.setProperty(JSONRegexMatcher.REGEX, "@(.*)$");
+                runner.setProperty(JSONRegexMatcher.JSON_FIELD, "email");
+                break;
+            case "RangeConverter":
+                runner = TestRunners.newTestRunner(RangeConverter.class);
+                runner.setProperty(RangeConverter.SpecifiedKey, "AA");
+                runner.setProperty(RangeConverter.SpecifiedNewKey, "icc_key");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown processor " + processor);
+        }
+        return runner;
+    }
+}
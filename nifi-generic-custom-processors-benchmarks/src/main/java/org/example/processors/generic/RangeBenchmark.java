@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.example.processors.generic;
+
+import org.example.processors.generic.util.BucketTable;
+import org.example.processors.generic.util.Helper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @implNote convertToRange over a fixed spread of values, including values above 1, against BucketTable lookups
+ * with a growing number of buckets
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RangeBenchmark {
+
+    private static final int VALUE_COUNT = 1024;
+
+    private final double[] values = new double[VALUE_COUNT];
+    private int index;
+    private BucketTable bucketTable;
+
+    @Param({"10", "1000", "10000"})
+    public int buckets;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            values[i] = random.nextDouble() * 1.2;
+        }
+        bucketTable = BucketTable.parse("linear:0,1," + buckets, null);
+    }
+
+    @Benchmark
+    public String convertToRange() {
+        index = (index + 1) & (VALUE_COUNT - 1);
+        return Helper.convertToRange(values[index]);
+    }
+
+    @Benchmark
+    public String bucketTableLabel() {
+        index = (index + 1) & (VALUE_COUNT - 1);
+        return bucketTable.label(values[index]);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.example.processors.generic;
+
+import org.apache.nifi.util.TestRunner;
+import org.apache.nifi.util.TestRunners;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @implNote RangeConverter on a numeric readings array reached through a JSON Pointer, tree against streaming mode
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadingsBenchmark {
+
+    @Param({"1000", "100000"})
+    public int readings;
+
+    @Param({"TREE", "STREAMING"})
+    public String mode;
+
+    @Param({"", "linear:0,1,1000"})
+    public String boundaries;
+
+    private TestRunner testRunner;
+    private byte[] content;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        testRunner = TestRunners.newTestRunner(RangeConverter.class);
+        testRunner.setProperty(RangeConverter.SpecifiedKey, "/telemetry/readings");
+        testRunner.setProperty(RangeConverter.SpecifiedNewKey, "ranges");
+        testRunner.setProperty(RangeConverter.PROCESSING_MODE, mode);
+        if (!boundaries.isEmpty()) {
+            testRunner.setProperty(RangeConverter.BUCKET_BOUNDARIES, boundaries);
+        }
+        content = Payloads.readings(readings).getBytes(StandardCharsets.UTF_8);
+        /* first run schedules the processor, later runs only trigger it */
+        testRunner.enqueue(content);
+        testRunner.run(1, false, true);
+        testRunner.clearTransferState();
+    }
+
+    @Benchmark
+    public TestRunner onTrigger() {
+        testRunner.enqueue(content);
+        testRunner.run(1, false, false);
+        testRunner.clearTransferState();
+        return testRunner;
+    }
+}
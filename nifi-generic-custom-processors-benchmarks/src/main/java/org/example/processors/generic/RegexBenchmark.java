@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.example.processors.generic;
+
+import org.example.processors.generic.util.BoundedLruCache;
+import org.example.processors.generic.util.Helper;
+import org.example.processors.generic.util.RegexRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * @implNote applyRegexPattern over value lengths and pattern kinds, compiled per call, precompiled, as a RegexRule and
+ * as a RegexRule with a result cache, where the repeated value is a hit after the first call
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegexBenchmark {
+
+    @Param({"16", "256", "4096"})
+    public int valueLength;
+
+    /* a literal prefix, a character class and a capturing group pattern */
+    @Param({"@example", "\\w+", "@(.*)$"})
+    public String regex;
+
+    private String value;
+    private Pattern pattern;
+    private RegexRule regexRule;
+    private RegexRule cachedRegexRule;
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder(valueLength);
+        while (builder.length() < valueLength - "@example.org".length()) {
+            builder.append("first.last");
+        }
+        builder.setLength(Math.max(0, valueLength - "@example.org".length()));
+        value = builder.append("@example.org").toString();
+        pattern = Pattern.compile(regex);
+        regexRule = new RegexRule("email", regex);
+        cachedRegexRule = new RegexRule("email", regex, new BoundedLruCache<>(1024));
+    }
+
+    @Benchmark
+    public String applyRegexPattern() {
+        return Helper.applyRegexPattern(value, regex);
+    }
+
+    @Benchmark
+    public String applyRegexPatternPrecompiled() {
+        return Helper.applyRegexPattern(value, pattern);
+    }
+
+    @Benchmark
+    public String applyRegexRule() {
+        return regexRule.apply(value);
+    }
+
+    @Benchmark
+    public String applyRegexRuleCached() {
+        return cachedRegexRule.apply(value);
+    }
+}
@@ -0,0 +1,793 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.example.processors.generic;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.annotation.lifecycle.OnStopped;
+import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.processor.AbstractProcessor;
+import org.apache.nifi.processor.DataUnit;
+import org.apache.nifi.processor.ProcessContext;
+import org.apache.nifi.processor.ProcessSession;
+import org.apache.nifi.processor.Relationship;
+import org.apache.nifi.processor.util.StandardValidators;
+import org.example.processors.generic.util.Compression;
+import org.example.processors.generic.util.Constant;
+import org.example.processors.generic.util.CustomValidator;
+import org.example.processors.generic.util.DataFormat;
+import org.example.processors.generic.util.DebugTap;
+import org.example.processors.generic.util.JsonTreeCodec;
+import org.example.processors.generic.util.MemoryBudget;
+import org.example.processors.generic.util.MeteredInputStream;
+import org.example.processors.generic.util.MeteredOutputStream;
+import org.example.processors.generic.util.ObjectPool;
+import org.example.processors.generic.util.PhaseTimer;
+import org.example.processors.generic.util.ProcessorMetrics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * @implNote common base of the content processors. A batch of FlowFiles is taken per trigger and every FlowFile is
+ * rewritten through {@link ProcessSession#write(FlowFile, org.apache.nifi.processor.io.StreamCallback)}, so
+ * {@link #transform(InputStream, OutputStream)} reads the original content and writes the new content directly,
+ * always as UTF-8, without the payload ever being held as a String. Content can also be read and written in the binary
+ * {@link DataFormat}s, the input encoding is detected per FlowFile and the output encoding is set by OUTPUT_FORMAT.
+ * gzip or zstd {@link Compression} is detected and removed while reading and OUTPUT_COMPRESSION applied while writing.
+ * Time spent per FlowFile is split into read, parse, transform, serialize and write and reported with bytes in and
+ * out, records and failures by cause through {@link ProcessorMetrics}.
+ * Processors with both a tree and a streaming {@link Engine} can leave the choice to the size of each FlowFile: in AUTO
+ * processing mode small uncompressed FlowFiles are loaded as trees, which is faster, as long as their trees fit into the
+ * {@link MemoryBudget} shared by every processor of the JVM, and everything else is streamed with bounded memory. The
+ * content other paths hold in memory is counted against the same budget, see {@link #bufferedBytes(long, Engine)}.
+ * A sample of FlowFiles can be tapped for debugging, either copied to the debug relationship or previewed in the log,
+ * the payload itself is never logged otherwise.
+ */
+public abstract class AbstractContentProcessor extends AbstractProcessor {
+
+    /* custom relationship declaration and assignment*/
+    static final Relationship REL_SUCCESS = new Relationship.Builder().name(Constant.REL_SUCCESS_NAME)
+            .build();
+    static final Relationship REL_FAILURE = new Relationship.Builder().name(Constant.REL_FAILED_NAME).build();
+    static final Relationship REL_DEBUG = new Relationship.Builder().name(Constant.REL_DEBUG_NAME)
+            .description(Constant.REL_DEBUG_DESCRIPTION)
+            .build();
+
+    static final PropertyDescriptor BATCH_SIZE;
+    static final PropertyDescriptor LATENCY_HISTOGRAMS;
+    static final PropertyDescriptor DEBUG_TAP;
+    static final PropertyDescriptor DEBUG_SAMPLE_RATE;
+    static final PropertyDescriptor DEBUG_PREVIEW_LENGTH;
+    static final PropertyDescriptor OUTPUT_FORMAT;
+    static final PropertyDescriptor OUTPUT_COMPRESSION;
+    static final PropertyDescriptor STREAMING_THRESHOLD;
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(Constant.BATCH_SIZE_NAME);
+        builder.displayName(Constant.BATCH_SIZE_NAME);
+        builder.description(Constant.BATCH_SIZE_DESCRIPTION);
+        builder.required(true);
+        builder.defaultValue(Constant.BATCH_SIZE_DEFAULT);
+        builder.addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR);
+        BATCH_SIZE = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(Constant.LATENCY_HISTOGRAMS_NAME);
+        builder.displayName(Constant.LATENCY_HISTOGRAMS_NAME);
+        builder.description(Constant.LATENCY_HISTOGRAMS_DESCRIPTION);
+        builder.required(true);
+        builder.allowableValues("true", "false");
+        builder.defaultValue(Constant.LATENCY_HISTOGRAMS_DEFAULT);
+        LATENCY_HISTOGRAMS = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(Constant.DEBUG_TAP_NAME);
+        builder.displayName(Constant.DEBUG_TAP_NAME);
+        builder.description(Constant.DEBUG_TAP_DESCRIPTION);
+        builder.required(true);
+        builder.allowableValues(Constant.DEBUG_TAP_NONE, Constant.DEBUG_TAP_RELATIONSHIP, Constant.DEBUG_TAP_PREVIEW);
+        builder.defaultValue(Constant.DEBUG_TAP_NONE);
+        DEBUG_TAP = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(Constant.DEBUG_SAMPLE_RATE_NAME);
+        builder.displayName(Constant.DEBUG_SAMPLE_RATE_NAME);
+        builder.description(Constant.DEBUG_SAMPLE_RATE_DESCRIPTION);
+        builder.required(true);
+        builder.defaultValue(Constant.DEBUG_SAMPLE_RATE_DEFAULT);
+        builder.addValidator(CustomValidator::sampleRateValidator);
+        DEBUG_SAMPLE_RATE = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(Constant.DEBUG_PREVIEW_LENGTH_NAME);
+        builder.displayName(Constant.DEBUG_PREVIEW_LENGTH_NAME);
+        builder.description(Constant.DEBUG_PREVIEW_LENGTH_DESCRIPTION);
+        builder.required(true);
+        builder.defaultValue(Constant.DEBUG_PREVIEW_LENGTH_DEFAULT);
+        builder.addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR);
+        DEBUG_PREVIEW_LENGTH = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(Constant.OUTPUT_FORMAT_NAME);
+        builder.displayName(Constant.OUTPUT_FORMAT_NAME);
+        builder.description(Constant.OUTPUT_FORMAT_DESCRIPTION);
+        builder.required(true);
+        builder.allowableValues(DataFormat.JSON.name(), DataFormat.CBOR.name(), DataFormat.SMILE.name());
+        builder.defaultValue(DataFormat.JSON.name());
+        OUTPUT_FORMAT = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(Constant.OUTPUT_COMPRESSION_NAME);
+        builder.displayName(Constant.OUTPUT_COMPRESSION_NAME);
+        builder.description(Constant.OUTPUT_COMPRESSION_DESCRIPTION);
+        builder.required(true);
+        builder.allowableValues(Compression.NONE.name(), Compression.GZIP.name(), Compression.ZSTD.name());
+        builder.defaultValue(Compression.NONE.name());
+        OUTPUT_COMPRESSION = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(Constant.STREAMING_THRESHOLD_NAME);
+        builder.displayName(Constant.STREAMING_THRESHOLD_NAME);
+        builder.description(Constant.STREAMING_THRESHOLD_DESCRIPTION);
+        builder.required(true);
+        builder.defaultValue(Constant.STREAMING_THRESHOLD_DEFAULT);
+        builder.addValidator(StandardValidators.DATA_SIZE_VALIDATOR);
+        STREAMING_THRESHOLD = builder
+                .build();
+    }
+
+    private static final Set<Relationship> RELATIONSHIPS;
+    private static final Set<Relationship> RELATIONSHIPS_WITH_DEBUG;
+
+    static {
+        final Set<Relationship> intRelationships = new HashSet<>();
+        intRelationships.add(REL_FAILURE);
+        intRelationships.add(REL_SUCCESS);
+        RELATIONSHIPS = Collections.unmodifiableSet(intRelationships);
+        intRelationships.add(REL_DEBUG);
+        RELATIONSHIPS_WITH_DEBUG = Collections.unmodifiableSet(new HashSet<>(intRelationships));
+    }
+
+    /**
+     * @apiNote adds the properties every content processor supports
+     * @param propertyDescriptors
+     */
+    protected static void addCommonDescriptors(@NotNull List<PropertyDescriptor> propertyDescriptors) {
+        propertyDescriptors.add(BATCH_SIZE);
+        propertyDescriptors.add(LATENCY_HISTOGRAMS);
+        propertyDescriptors.add(DEBUG_TAP);
+        propertyDescriptors.add(DEBUG_SAMPLE_RATE);
+        propertyDescriptors.add(DEBUG_PREVIEW_LENGTH);
+        propertyDescriptors.add(OUTPUT_FORMAT);
+        propertyDescriptors.add(OUTPUT_COMPRESSION);
+    }
+
+    /**
+     * @apiNote adds the properties of AUTO processing mode, for processors with a streaming engine
+     * @param propertyDescriptors
+     */
+    protected static void addEngineDescriptors(@NotNull List<PropertyDescriptor> propertyDescriptors) {
+        propertyDescriptors.add(STREAMING_THRESHOLD);
+    }
+
+    /**
+     * way a FlowFile is transformed: TREE loads the whole document, STREAMING moves tokens with bounded memory
+     */
+    protected enum Engine {
+        TREE,
+        STREAMING
+    }
+
+    /* Gson is thread safe, one instance serves every batch */
+    protected final Gson gson = new Gson();
+
+    private volatile int batchSize;
+    private volatile ProcessorMetrics metrics = new ProcessorMetrics(false);
+    private volatile DebugTap debugTap = DebugTap.NONE;
+    private volatile DataFormat outputFormat = DataFormat.JSON;
+    private volatile Compression outputCompression = Compression.NONE;
+    /* engine of every FlowFile, null when it is chosen per FlowFile in AUTO processing mode */
+    private volatile Engine engine = Engine.TREE;
+    private volatile long streamingThreshold;
+    /* the budget of the JVM, a test hands in its own */
+    private volatile MemoryBudget memoryBudget = MemoryBudget.shared();
+    /* the debug relationship only exists while the tap copies FlowFiles */
+    private volatile Set<Relationship> relationships = RELATIONSHIPS;
+    /* pools of the processor by name, with the counts already published as counters */
+    private final Map<String, PoolCounts> pools = new ConcurrentHashMap<>();
+
+    @Override
+    public Set<Relationship> getRelationships() {
+        return relationships;
+    }
+
+    @Override
+    public void onPropertyModified(final @NotNull PropertyDescriptor descriptor, final String oldValue, final String newValue) {
+        if (descriptor.equals(DEBUG_TAP)) {
+            relationships = Constant.DEBUG_TAP_RELATIONSHIP.equals(newValue) ? RELATIONSHIPS_WITH_DEBUG : RELATIONSHIPS;
+        }
+    }
+
+    @OnScheduled
+    public void onScheduledContentProcessor(final @NotNull ProcessContext context) {
+        batchSize = context.getProperty(BATCH_SIZE).asInteger();
+        metrics = new ProcessorMetrics(context.getProperty(LATENCY_HISTOGRAMS).asBoolean());
+        debugTap = new DebugTap(context.getProperty(DEBUG_TAP).getValue(),
+                context.getProperty(DEBUG_SAMPLE_RATE).asDouble(),
+                context.getProperty(DEBUG_PREVIEW_LENGTH).asInteger());
+        outputFormat = DataFormat.valueOf(context.getProperty(OUTPUT_FORMAT).getValue());
+        outputCompression = Compression.valueOf(context.getProperty(OUTPUT_COMPRESSION).getValue());
+    }
+
+    /**
+     * @apiNote sets the engine from the processor's PROCESSING_MODE, called from its own OnScheduled method. AUTO
+     * chooses per FlowFile, any other mode than STREAMING is TREE
+     * @param context
+     * @param processingMode
+     */
+    protected final void configureEngine(final @NotNull ProcessContext context, @NotNull String processingMode) {
+        if (Constant.PROCESSING_MODE_AUTO.equals(processingMode)) {
+            streamingThreshold = context.getProperty(STREAMING_THRESHOLD).asDataSize(DataUnit.B).longValue();
+            engine = null;
+            getLogger().info("streaming FlowFiles above {} bytes, shared tree budget {} bytes", streamingThreshold, memoryBudget.getCapacity());
+        } else {
+            engine = Constant.PROCESSING_MODE_STREAMING.equals(processingMode) ? Engine.STREAMING : Engine.TREE;
+        }
+    }
+
+    /**
+     * @apiNote engine set by PROCESSING_MODE, TREE in AUTO mode where {@link #processFlowFile(FlowFile, ProcessSession)}
+     * chooses per FlowFile
+     * @return Engine
+     */
+    protected final @NotNull Engine getEngine() {
+        Engine configured = engine;
+        return configured == null ? Engine.TREE : configured;
+    }
+
+    /**
+     * @apiNote encoding of the content written, set by OUTPUT_FORMAT
+     * @return DataFormat
+     */
+    protected final @NotNull DataFormat getOutputFormat() {
+        return outputFormat;
+    }
+
+    /**
+     * @apiNote compression of the content written, set by OUTPUT_COMPRESSION
+     * @return Compression
+     */
+    protected final @NotNull Compression getOutputCompression() {
+        return outputCompression;
+    }
+
+    @OnStopped
+    public void onStoppedContentProcessor() {
+        getLogger().info("metrics since scheduled : {}", metrics.summary());
+        // pools are created again when the processor is scheduled
+        pools.clear();
+    }
+
+    /**
+     * @apiNote creates a pool holding one object per concurrent task, registered so its hits and misses are published
+     * as counters. Called from the processor's own OnScheduled method, a pool of the same name replaces the older one
+     * @param name
+     * @param context
+     * @param factory
+     * @param reset
+     * @return ObjectPool
+     */
+    protected final <T> @NotNull ObjectPool<T> newPool(@NotNull String name, @NotNull ProcessContext context, @NotNull Supplier<? extends T> factory, @Nullable Consumer<? super T> reset) {
+        return registerPool(name, new ObjectPool<>(Math.max(1, context.getMaxConcurrentTasks()), factory, reset));
+    }
+
+    /**
+     * @apiNote registers a pool created elsewhere so its hits and misses are published as counters
+     * @param name
+     * @param pool
+     * @return the pool
+     */
+    protected final <T> @NotNull ObjectPool<T> registerPool(@NotNull String name, @NotNull ObjectPool<T> pool) {
+        pools.put(name, new PoolCounts(pool));
+        return pool;
+    }
+
+    /* publishes what the pools counted since the last batch, the pools are shared by every thread */
+    private void reportPools(@NotNull ProcessSession session) {
+        for (Map.Entry<String, PoolCounts> entry : pools.entrySet()) {
+            PoolCounts counts = entry.getValue();
+            long hits;
+            long misses;
+            synchronized (counts) {
+                hits = counts.pool.getHits() - counts.reportedHits;
+                misses = counts.pool.getMisses() - counts.reportedMisses;
+                counts.reportedHits += hits;
+                counts.reportedMisses += misses;
+            }
+            if (hits != 0 || misses != 0) {
+                metrics.recordPool(session, entry.getKey(), hits, misses);
+            }
+        }
+    }
+
+    /**
+     * @apiNote totals since the processor was last scheduled, for reporting tasks and status output
+     * @return ProcessorMetrics
+     */
+    public ProcessorMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param context
+     * @param session
+     */
+    @Override
+    public void onTrigger(final ProcessContext context, final @NotNull ProcessSession session) {
+        /* Getting a batch of flow files from session */
+        List<FlowFile> inputFlowFiles = session.get(batchSize);
+
+        if (inputFlowFiles.isEmpty()) {
+            return;
+        }
+        if (getLogger().isDebugEnabled()) {
+            getLogger().debug("processing a batch of {} FlowFiles", inputFlowFiles.size());
+        }
+
+        beforeBatch(context);
+        for (FlowFile inputFlowFile : inputFlowFiles) {
+            if (inputFlowFile.getSize() == 0) {
+                getLogger().error("Empty measurements");
+                metrics.recordFailure(session, Constant.EMPTY_CONTENT_CAUSE);
+                session.transfer(inputFlowFile, REL_FAILURE);
+                continue;
+            }
+            processFlowFile(inputFlowFile, session);
+        }
+        reportPools(session);
+    }
+
+    /**
+     * @apiNote replaces the budget shared by the JVM, for tests
+     * @param memoryBudget
+     */
+    final void setMemoryBudget(@NotNull MemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * @apiNote heap the transform holds on to for a FlowFile, counted against the memory budget while it runs. A tree
+     * takes {@link MemoryBudget#TREE_OVERHEAD} times its content and streaming nothing beyond its buffers. Processors
+     * whose modes buffer otherwise override it. Compressed content is counted by its stored size, its size once
+     * decompressed is not known before it is read
+     * @param contentBytes size of the FlowFile
+     * @param engine engine the FlowFile is transformed with
+     * @return bytes
+     */
+    protected long bufferedBytes(long contentBytes, @NotNull Engine engine) {
+        return engine == Engine.TREE ? MemoryBudget.treeBytes(contentBytes) : 0;
+    }
+
+    /**
+     * @apiNote called once per batch before the first FlowFile is processed
+     * @param context
+     */
+    protected void beforeBatch(final ProcessContext context) {
+    }
+
+    /**
+     * @apiNote rewrites the content with {@link #transform(InputStream, OutputStream, Engine)}, a failing transform
+     * leaves the original content in place and routes the FlowFile to failure. In AUTO processing mode the FlowFile is
+     * loaded as a tree only if it is uncompressed, within STREAMING_THRESHOLD and the memory of its tree can be reserved
+     * from the shared budget until it is written, otherwise it is streamed. Compressed content is always streamed, its
+     * size once decompressed is not known before it is read. Whatever other engine a FlowFile gets, the memory it holds
+     * is reserved as well, beyond the budget if need be, since that path cannot stream instead
+     * @param inputFlowFile
+     * @param session
+     */
+    protected void processFlowFile(FlowFile inputFlowFile, @NotNull ProcessSession session) {
+        final long bytesIn = inputFlowFile.getSize();
+        final boolean tapped = sampleDebugTap();
+        final String inputPreview = previewInput(tapped, inputFlowFile, session);
+        final PhaseTimer timer = new PhaseTimer();
+        final Engine configured = engine;
+        final MemoryBudget budget = memoryBudget;
+        /* engine the FlowFile got in AUTO mode and whether only the budget kept it from the tree */
+        final Engine[] chosen = new Engine[1];
+        final boolean[] budgetFallback = new boolean[1];
+        try {
+            inputFlowFile = session.write(inputFlowFile, (inputStream, outputStream) -> {
+                BufferedInputStream bufferedStream = Compression.buffered(inputStream);
+                Compression compression = Compression.detect(bufferedStream);
+                boolean treeCandidate = configured == null && compression == Compression.NONE && bytesIn <= streamingThreshold;
+                MemoryBudget.Reservation reservation = treeCandidate ? budget.tryReserve(bufferedBytes(bytesIn, Engine.TREE)) : null;
+                chosen[0] = configured != null ? configured : reservation != null ? Engine.TREE : Engine.STREAMING;
+                budgetFallback[0] = treeCandidate && reservation == null;
+                if (reservation == null) {
+                    reservation = budget.reserve(bufferedBytes(bytesIn, chosen[0]));
+                }
+                try (MemoryBudget.Reservation held = reservation;
+                     InputStream contentStream = compression.decompressing(bufferedStream);
+                     OutputStream compressedStream = openOutput(outputStream)) {
+                    MeteredOutputStream meteredOutputStream = new MeteredOutputStream(compressedStream, timer);
+                    transform(new MeteredInputStream(contentStream, timer), meteredOutputStream, chosen[0]);
+                    meteredOutputStream.flush();
+                }
+            });
+        } catch (RuntimeException ex) {
+            getLogger().info("Ran into Error while generating the json {}", ex);
+            metrics.recordFailure(session, ex);
+            transfer(inputFlowFile, session, REL_FAILURE, tapped, inputPreview);
+            return;
+        } finally {
+            if (configured == null && chosen[0] != null) {
+                metrics.recordEngine(session, chosen[0].name(), budgetFallback[0]);
+            }
+        }
+        timer.stop();
+        metrics.recordSuccess(session, timer, bytesIn, inputFlowFile.getSize());
+
+        /* session transfer for REL_SUCCESS */
+        inputFlowFile = putFormatAttributes(inputFlowFile, session);
+        transfer(inputFlowFile, session, REL_SUCCESS, tapped, inputPreview);
+    }
+
+    private static final class PoolCounts {
+        private final ObjectPool<?> pool;
+        private long reportedHits;
+        private long reportedMisses;
+
+        private PoolCounts(@NotNull ObjectPool<?> pool) {
+            this.pool = pool;
+        }
+    }
+
+    /**
+     * @apiNote uncompressed content of a session input stream, buffered so its encoding can be detected. Closing it
+     * releases the decompressor and leaves the session stream open
+     * @param inputStream
+     * @return InputStream
+     */
+    protected final @NotNull InputStream openInput(@NotNull InputStream inputStream) throws IOException {
+        return Compression.decompressing(inputStream);
+    }
+
+    /**
+     * @apiNote stream compressing into a session output stream as set by OUTPUT_COMPRESSION. Closing it ends the
+     * compressed content and leaves the session stream open
+     * @param outputStream
+     * @return OutputStream
+     */
+    protected final @NotNull OutputStream openOutput(@NotNull OutputStream outputStream) throws IOException {
+        return outputCompression.compressing(outputStream);
+    }
+
+    /**
+     * @apiNote names the written FlowFile after the output encoding and compression, binary or compressed content also
+     * gets its mime.type
+     * @param flowFile
+     * @param session
+     * @return FlowFile
+     */
+    protected final FlowFile putFormatAttributes(FlowFile flowFile, @NotNull ProcessSession session) {
+        flowFile = session.putAttribute(flowFile, "filename",
+                flowFile.getId() + outputFormat.getExtension() + outputCompression.getExtension());
+        if (outputCompression.getMimeType() != null) {
+            flowFile = session.putAttribute(flowFile, Constant.MIME_TYPE_ATTRIBUTE, outputCompression.getMimeType());
+        } else if (outputFormat.isBinary()) {
+            flowFile = session.putAttribute(flowFile, Constant.MIME_TYPE_ATTRIBUTE, outputFormat.getMimeType());
+        }
+        return flowFile;
+    }
+
+    /**
+     * @apiNote draws whether the FlowFile about to be processed is tapped for debugging
+     * @return boolean
+     */
+    protected final boolean sampleDebugTap() {
+        return debugTap.sample();
+    }
+
+    /**
+     * @apiNote start of the input of a tapped FlowFile, taken before the content is replaced, null unless previews are on
+     * @param tapped
+     * @param inputFlowFile
+     * @param session
+     * @return String
+     */
+    protected final @Nullable String previewInput(boolean tapped, FlowFile inputFlowFile, @NotNull ProcessSession session) {
+        return tapped && debugTap.isPreview() ? debugTap.preview(inputFlowFile, session) : null;
+    }
+
+    /**
+     * @apiNote transfers the FlowFile, a tapped one is also copied to the debug relationship or previewed in the log
+     * @param flowFile
+     * @param session
+     * @param relationship
+     * @param tapped
+     * @param inputPreview
+     */
+    protected final void transfer(FlowFile flowFile, @NotNull ProcessSession session, @NotNull Relationship relationship, boolean tapped, @Nullable String inputPreview) {
+        if (tapped) {
+            if (debugTap.isRelationship()) {
+                FlowFile copy = session.clone(flowFile);
+                copy = session.putAttribute(copy, Constant.DEBUG_TAP_ROUTE_ATTRIBUTE, relationship.getName());
+                session.transfer(copy, REL_DEBUG);
+            } else if (debugTap.isPreview()) {
+                getLogger().info("debug tap {} routed to {}, input: {} output: {}",
+                        flowFile, relationship.getName(), inputPreview, debugTap.preview(flowFile, session));
+            }
+        }
+        session.transfer(flowFile, relationship);
+    }
+
+    /**
+     * @apiNote reads the original content from the input stream and writes the new content to the output stream,
+     * neither stream is to be closed here. Time is charged to {@link ProcessorMetrics.Phase#TRANSFORM} unless the
+     * transform switches phases through {@link PhaseTimer#of(InputStream)}, reading and writing are charged by the streams
+     * @param inputStream
+     * @param outputStream
+     */
+    protected abstract void transform(InputStream inputStream, OutputStream outputStream) throws IOException;
+
+    /**
+     * @apiNote transform with the engine chosen for the FlowFile, processors with a streaming engine override it and
+     * the others ignore the engine
+     * @param inputStream
+     * @param outputStream
+     * @param engine
+     */
+    protected void transform(InputStream inputStream, OutputStream outputStream, @NotNull Engine engine) throws IOException {
+        transform(inputStream, outputStream);
+    }
+
+    /**
+     * @apiNote token parser of the content in its detected encoding, to be closed by the caller
+     * @param inputStream
+     * @return JsonParser
+     */
+    protected final @NotNull JsonParser createParser(@NotNull InputStream inputStream) throws IOException {
+        return DataFormat.detect(inputStream).getFactory().createParser(inputStream);
+    }
+
+    /**
+     * @apiNote token generator of the content in the OUTPUT_FORMAT encoding, to be closed by the caller
+     * @param outputStream
+     * @return JsonGenerator
+     */
+    protected final @NotNull JsonGenerator createGenerator(@NotNull OutputStream outputStream) throws IOException {
+        return outputFormat.getFactory().createGenerator(outputStream);
+    }
+
+    /**
+     * @apiNote parses the content as a json object, decoding UTF-8 while reading, binary content is read as tokens
+     * @param inputStream
+     * @return JsonObject
+     */
+    protected JsonObject readJsonObject(@NotNull InputStream inputStream) throws IOException {
+        PhaseTimer timer = PhaseTimer.of(inputStream);
+        ProcessorMetrics.Phase previous = timer.switchTo(ProcessorMetrics.Phase.PARSE);
+        try {
+            DataFormat inputFormat = DataFormat.detect(inputStream);
+            if (inputFormat.isBinary()) {
+                try (JsonParser parser = inputFormat.getFactory().createParser(inputStream)) {
+                    parser.nextToken();
+                    JsonObject jsonObject = readBinaryObject(parser, "input json");
+                    assertFullyConsumed(parser);
+                    return jsonObject;
+                }
+            }
+            Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+            JsonObject jsonObject = gson.fromJson(reader, JsonObject.class);
+            if (jsonObject == null) throw new NullPointerException("input json is empty");
+            return jsonObject;
+        } finally {
+            timer.switchTo(previous);
+        }
+    }
+
+    /**
+     * @apiNote applies the consumer to the json object of the content, or to every object of a top-level array.
+     * Array elements are parsed, transformed and written one at a time, so memory is bounded by the largest element
+     * and the number of elements is reported as records
+     * @param inputStream
+     * @param outputStream
+     * @param jsonObjectConsumer
+     */
+    protected void transformJsonObjects(@NotNull InputStream inputStream, @NotNull OutputStream outputStream,
+                                        @NotNull Consumer<JsonObject> jsonObjectConsumer) throws IOException {
+        PhaseTimer timer = PhaseTimer.of(inputStream);
+        ProcessorMetrics.Phase previous = timer.switchTo(ProcessorMetrics.Phase.PARSE);
+        try {
+            DataFormat inputFormat = DataFormat.detect(inputStream);
+            if (inputFormat.isBinary() || outputFormat.isBinary()) {
+                transformTokens(inputFormat, inputStream, outputStream, jsonObjectConsumer, timer);
+                return;
+            }
+            JsonReader jsonReader = gson.newJsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+            if (jsonReader.peek() != JsonToken.BEGIN_ARRAY) {
+                JsonObject jsonObject = gson.fromJson(jsonReader, JsonObject.class);
+                if (jsonObject == null) throw new NullPointerException("input json is empty");
+                assertFullyConsumed(jsonReader);
+                timer.switchTo(ProcessorMetrics.Phase.TRANSFORM);
+                jsonObjectConsumer.accept(jsonObject);
+                writeJson(jsonObject, outputStream);
+                return;
+            }
+
+            Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+            JsonWriter jsonWriter = gson.newJsonWriter(writer);
+            long records = 0;
+            jsonReader.beginArray();
+            jsonWriter.beginArray();
+            while (jsonReader.hasNext()) {
+                timer.switchTo(ProcessorMetrics.Phase.PARSE);
+                JsonObject jsonObject = gson.fromJson(jsonReader, JsonObject.class);
+                if (jsonObject == null) throw new NullPointerException("array element " + records + " is null");
+                timer.switchTo(ProcessorMetrics.Phase.TRANSFORM);
+                jsonObjectConsumer.accept(jsonObject);
+                timer.switchTo(ProcessorMetrics.Phase.SERIALIZE);
+                gson.toJson(jsonObject, jsonWriter);
+                records++;
+            }
+            timer.switchTo(ProcessorMetrics.Phase.PARSE);
+            jsonReader.endArray();
+            assertFullyConsumed(jsonReader);
+            timer.switchTo(ProcessorMetrics.Phase.SERIALIZE);
+            jsonWriter.endArray();
+            /* the writer is not closed, that would close the content stream */
+            jsonWriter.flush();
+            timer.setRecords(records);
+        } finally {
+            timer.switchTo(previous);
+        }
+    }
+
+    /* transformJsonObjects with a binary encoding on either side, the trees are moved as tokens without json text */
+    private void transformTokens(@NotNull DataFormat inputFormat, @NotNull InputStream inputStream, @NotNull OutputStream outputStream,
+                                 @NotNull Consumer<JsonObject> jsonObjectConsumer, @NotNull PhaseTimer timer) throws IOException {
+        try (JsonParser parser = inputFormat.getFactory().createParser(inputStream);
+             JsonGenerator generator = outputFormat.getFactory().createGenerator(outputStream)) {
+            if (parser.nextToken() != com.fasterxml.jackson.core.JsonToken.START_ARRAY) {
+                JsonObject jsonObject = readBinaryObject(parser, "input json");
+                assertFullyConsumed(parser);
+                timer.switchTo(ProcessorMetrics.Phase.TRANSFORM);
+                jsonObjectConsumer.accept(jsonObject);
+                timer.switchTo(ProcessorMetrics.Phase.SERIALIZE);
+                JsonTreeCodec.write(jsonObject, generator);
+                return;
+            }
+
+            long records = 0;
+            generator.writeStartArray();
+            while (true) {
+                timer.switchTo(ProcessorMetrics.Phase.PARSE);
+                if (parser.nextToken() == com.fasterxml.jackson.core.JsonToken.END_ARRAY) {
+                    break;
+                }
+                JsonObject jsonObject = readBinaryObject(parser, "array element " + records);
+                timer.switchTo(ProcessorMetrics.Phase.TRANSFORM);
+                jsonObjectConsumer.accept(jsonObject);
+                timer.switchTo(ProcessorMetrics.Phase.SERIALIZE);
+                JsonTreeCodec.write(jsonObject, generator);
+                records++;
+            }
+            assertFullyConsumed(parser);
+            timer.switchTo(ProcessorMetrics.Phase.SERIALIZE);
+            generator.writeEndArray();
+            timer.setRecords(records);
+        }
+    }
+
+    /* the object the parser is on, with the errors Gson gives for a missing or non object value */
+    private static @NotNull JsonObject readBinaryObject(@NotNull JsonParser parser, @NotNull String what) throws IOException {
+        com.fasterxml.jackson.core.JsonToken token = parser.currentToken();
+        if (token == null || token == com.fasterxml.jackson.core.JsonToken.VALUE_NULL) {
+            throw new NullPointerException(what + " is empty");
+        }
+        JsonElement jsonElement = JsonTreeCodec.read(parser);
+        if (!jsonElement.isJsonObject()) {
+            throw new JsonSyntaxException("Expected a json object but was " + token);
+        }
+        return jsonElement.getAsJsonObject();
+    }
+
+    private static void assertFullyConsumed(@NotNull JsonParser parser) throws IOException {
+        if (parser.nextToken() != null) {
+            throw new JsonSyntaxException("JSON document was not fully consumed.");
+        }
+    }
+
+    /* same check as Gson#fromJson(Reader, Class), trailing content is an error */
+    private static void assertFullyConsumed(@NotNull JsonReader jsonReader) throws IOException {
+        if (jsonReader.peek() != JsonToken.END_DOCUMENT) {
+            throw new JsonSyntaxException("JSON document was not fully consumed.");
+        }
+    }
+
+    /**
+     * @apiNote serializes the json element, encoding UTF-8 while writing, or as tokens of a binary OUTPUT_FORMAT
+     * @param jsonElement
+     * @param outputStream
+     */
+    protected void writeJson(JsonElement jsonElement, @NotNull OutputStream outputStream) throws IOException {
+        PhaseTimer timer = PhaseTimer.of(outputStream);
+        ProcessorMetrics.Phase previous = timer.switchTo(ProcessorMetrics.Phase.SERIALIZE);
+        try {
+            if (outputFormat.isBinary()) {
+                try (JsonGenerator generator = createGenerator(outputStream)) {
+                    JsonTreeCodec.write(jsonElement, generator);
+                }
+                return;
+            }
+            Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+            gson.toJson(jsonElement, writer);
+            writer.flush();
+        } finally {
+            timer.switchTo(previous);
+        }
+    }
+}
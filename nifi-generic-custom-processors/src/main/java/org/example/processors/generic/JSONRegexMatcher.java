@@ -16,8 +16,9 @@
  */
 package org.example.processors.generic;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import org.apache.nifi.annotation.behavior.DynamicProperty;
 import org.apache.nifi.annotation.behavior.EventDriven;
 import org.apache.nifi.annotation.behavior.InputRequirement;
 import org.apache.nifi.annotation.behavior.SideEffectFree;
@@ -26,40 +27,48 @@ import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.Tags;
 import org.apache.nifi.annotation.lifecycle.OnScheduled;
 import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
 import org.apache.nifi.flowfile.FlowFile;
 import org.apache.nifi.processor.*;
-import org.apache.nifi.processor.io.OutputStreamCallback;
 import org.apache.nifi.processor.util.StandardValidators;
+import org.example.processors.generic.util.BoundedLruCache;
+import org.example.processors.generic.util.CustomValidator;
+import org.example.processors.generic.util.Helper;
+import org.example.processors.generic.util.JsonPathPlan;
+import org.example.processors.generic.util.RegexRule;
+import org.example.processors.generic.util.StreamingRegexMatcher;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.*;
 
 import static org.example.processors.generic.util.Constant.*;
-import static org.example.processors.generic.util.Helper.applyRegexPattern;
-import static org.example.processors.generic.util.Helper.flowFileReader;
 
 
 @Tags({"json,regex,replacer"})
-@CapabilityDescription("Replace specified json key-value using regex pattern")
+@CapabilityDescription("Replace specified json key-value using regex pattern, every rule runs against a single parse of the document")
 @EventDriven
 @SupportsBatching
 @SideEffectFree
 @InputRequirement(InputRequirement.Requirement.INPUT_REQUIRED)
-public class JSONRegexMatcher extends AbstractProcessor {
+@DynamicProperty(name = JSONRegexMatcher_DYNAMIC_NAME, value = JSONRegexMatcher_DYNAMIC_VALUE, description = JSONRegexMatcher_DYNAMIC_DESCRIPTION)
+public class JSONRegexMatcher extends AbstractContentProcessor {
 
     /* property builder function  */
     static final PropertyDescriptor REGEX;
     static final PropertyDescriptor JSON_FIELD;
-    private static String regexPattern;
-    private static String keyToMatch;
-
-
-    /* custom relationship declaration and assignment*/
-    static final Relationship REL_SUCCESS = new Relationship.Builder().name(REL_SUCCESS_NAME)
-            .build();
-    static final Relationship REL_FAILURE = new Relationship.Builder().name(REL_FAILED_NAME).build();
+    static final PropertyDescriptor PROCESSING_MODE;
+    static final PropertyDescriptor REGEX_CACHE_SIZE;
+    /* field reference of every rule to its compiled pattern, built once per schedule */
+    private volatile JsonPathPlan<RegexRule> pathPlan;
+    /* result cache of every rule, empty when caching is off */
+    private volatile List<BoundedLruCache<String, String>> resultCaches = Collections.emptyList();
+    /* cache totals already published as counters */
+    private long reportedHits;
+    private long reportedMisses;
 
 
     static {
@@ -70,6 +79,7 @@ public class JSONRegexMatcher extends AbstractProcessor {
         builder.required(true);
         builder.defaultValue(JSONRegexMatcher_REGEX_NAMES_PROPERTY_EXAMPLE);
         builder.addValidator(StandardValidators.NON_EMPTY_VALIDATOR);
+        builder.addValidator(StandardValidators.REGULAR_EXPRESSION_VALIDATOR);
         REGEX = builder
                 .build();
     }
@@ -82,11 +92,36 @@ public class JSONRegexMatcher extends AbstractProcessor {
         builder.defaultValue(JSONRegexMatcher_FIELD_PROPERTY_EXAMPLE);
         builder.required(true);
         builder.addValidator(StandardValidators.NON_EMPTY_VALIDATOR);
+        builder.addValidator(CustomValidator::jsonPathValidator);
         JSON_FIELD = builder
                 .build();
     }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(PROCESSING_MODE_NAME);
+        builder.displayName(PROCESSING_MODE_NAME);
+        builder.description(JSONRegexMatcher_PROCESSING_MODE_DESCRIPTION);
+        builder.required(true);
+        builder.allowableValues(PROCESSING_MODE_TREE, PROCESSING_MODE_STREAMING, PROCESSING_MODE_AUTO);
+        builder.defaultValue(PROCESSING_MODE_TREE);
+        PROCESSING_MODE = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(JSONRegexMatcher_CACHE_SIZE_NAME);
+        builder.displayName(JSONRegexMatcher_CACHE_SIZE_NAME);
+        builder.description(JSONRegexMatcher_CACHE_SIZE_DESCRIPTION);
+        builder.required(true);
+        builder.defaultValue(JSONRegexMatcher_CACHE_SIZE_DEFAULT);
+        builder.addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR);
+        REGEX_CACHE_SIZE = builder
+                .build();
+    }
+
     private List<PropertyDescriptor> descriptors;
-    private Set<Relationship> relationships;
 
 
     /* processor initialization method */
@@ -95,98 +130,127 @@ public class JSONRegexMatcher extends AbstractProcessor {
 
         final List<PropertyDescriptor> propertyDescriptors = new ArrayList<>();
 
-        /* intRelationships and propertyDescriptors  ProcessorInitialization */
+        /* propertyDescriptors  ProcessorInitialization */
         propertyDescriptors.add(JSON_FIELD);
         propertyDescriptors.add(REGEX);
+        propertyDescriptors.add(PROCESSING_MODE);
+        addEngineDescriptors(propertyDescriptors);
+        propertyDescriptors.add(REGEX_CACHE_SIZE);
+        addCommonDescriptors(propertyDescriptors);
         this.descriptors = Collections.unmodifiableList(propertyDescriptors);
+    }
 
-        final Set<Relationship> intRelationships = new HashSet<>();
-        intRelationships.add(REL_FAILURE);
-        intRelationships.add(REL_SUCCESS);
-        this.relationships = Collections.unmodifiableSet(intRelationships);
+    @Override
+    public final List<PropertyDescriptor> getSupportedPropertyDescriptors() {
+        return descriptors;
     }
 
     @Override
-    public Set<Relationship> getRelationships() {
-        return this.relationships;
+    protected PropertyDescriptor getSupportedDynamicPropertyDescriptor(final String propertyDescriptorName) {
+        /* dynamic property name is the json field, its value the regex pattern */
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(propertyDescriptorName);
+        builder.displayName(propertyDescriptorName);
+        builder.description(JSONRegexMatcher_DYNAMIC_DESCRIPTION);
+        builder.required(false);
+        builder.dynamic(true);
+        builder.addValidator(StandardValidators.REGULAR_EXPRESSION_VALIDATOR);
+        return builder.build();
     }
 
     @Override
-    public final List<PropertyDescriptor> getSupportedPropertyDescriptors() {
-        return descriptors;
+    protected Collection<ValidationResult> customValidate(final @NotNull ValidationContext validationContext) {
+        /* dynamic property names are field references too */
+        final List<ValidationResult> results = new ArrayList<>();
+        for (PropertyDescriptor property : validationContext.getProperties().keySet()) {
+            if (property.isDynamic()) {
+                ValidationResult result = CustomValidator.jsonPathValidator(property.getName(), property.getName(), validationContext);
+                if (!result.isValid()) {
+                    results.add(result);
+                }
+            }
+        }
+        return results;
     }
 
     @OnScheduled
     public void onScheduled(final @NotNull ProcessContext context) {
         // loading values from property files
-        regexPattern = context.getProperty(REGEX).getValue();
-        keyToMatch = context.getProperty(JSON_FIELD).getValue();
+        String regexPattern = context.getProperty(REGEX).getValue();
+        String keyToMatch = context.getProperty(JSON_FIELD).getValue();
         getLogger().info("input values : regex Pattern {}, key To Match {} ", regexPattern,keyToMatch );
 
-    }
-    /**
-     * @param context
-     * @param session
-     */
-    @Override
-    public void onTrigger(final ProcessContext context, final @NotNull ProcessSession session) throws NullPointerException {
-        getLogger().info("inside onTrigger method");
-        /* Getting flow file from session */
-        FlowFile inputFlowFile = session.get();
-
-        if (inputFlowFile == null) {
-            getLogger().info("input FlowFile null");
-            session.transfer((FlowFile) null, REL_FAILURE);
-            return;
+        // patterns are compiled here once instead of for every FlowFile
+        final int cacheSize = context.getProperty(REGEX_CACHE_SIZE).asInteger();
+        final List<BoundedLruCache<String, String>> caches = new ArrayList<>();
+        final List<RegexRule> rules = new ArrayList<>();
+        rules.add(new RegexRule(keyToMatch, regexPattern, createResultCache(cacheSize, caches)));
+        for (Map.Entry<PropertyDescriptor, String> property : context.getProperties().entrySet()) {
+            if (property.getKey().isDynamic() && property.getValue() != null) {
+                rules.add(new RegexRule(property.getKey().getName(), property.getValue(), createResultCache(cacheSize, caches)));
+            }
         }
-        if (inputFlowFile.getSize() == 0) {
-            getLogger().error("Empty measurements");
-            session.transfer((FlowFile) null, REL_FAILURE);
-            return;
+        resultCaches = Collections.unmodifiableList(caches);
+        synchronized (this) {
+            reportedHits = 0;
+            reportedMisses = 0;
         }
+        JsonPathPlan.Builder<RegexRule> planBuilder = JsonPathPlan.builder();
+        for (RegexRule rule : rules) {
+            planBuilder.add(rule.getFieldName(), rule);
+        }
+        pathPlan = planBuilder.build();
+        configureEngine(context, context.getProperty(PROCESSING_MODE).getValue());
+        getLogger().info("compiled {} regex rules, result cache size {}", rules.size(), cacheSize);
+    }
 
-        try {
-            getLogger().info("reading json file from inputFlowFile");
-            String jsonContent = flowFileReader(inputFlowFile, session);
-            getLogger().info("jsonContent {}", jsonContent);
-
-            Gson gson = new Gson();
-            JsonObject jsonObject = gson.fromJson(jsonContent, JsonObject.class);
-            if (jsonObject.has(keyToMatch)) {
-                String originalValue = jsonObject.get(keyToMatch).getAsString();
-                String newValue = applyRegexPattern(originalValue, regexPattern);
-
-                jsonObject.addProperty(keyToMatch, newValue);
-                getLogger().info("jsonObject addProperty {}",jsonObject);
-            } else {
-                getLogger().info("Key not found in JSON object.");
-            }
-
-            String updatedJsonString = new Gson().toJson(jsonObject);
-            getLogger().info("updatedJsonString {}",updatedJsonString);
+    private static BoundedLruCache<String, String> createResultCache(int cacheSize, @NotNull List<BoundedLruCache<String, String>> caches) {
+        if (cacheSize == 0) {
+            return null;
+        }
+        BoundedLruCache<String, String> cache = new BoundedLruCache<>(cacheSize);
+        caches.add(cache);
+        return cache;
+    }
 
-            getLogger().info("sessionTransfer .");
-            sessionTransfer(inputFlowFile, session, updatedJsonString);
-        }catch ( NullPointerException ex){
-            getLogger().info("Ran into Error while generating the json {}", ex);
-            session.transfer(inputFlowFile, REL_FAILURE);
+    @Override
+    protected void processFlowFile(FlowFile inputFlowFile, @NotNull ProcessSession session) {
+        super.processFlowFile(inputFlowFile, session);
+        if (!resultCaches.isEmpty()) {
+            reportCacheCounters(session);
         }
+    }
 
+    /* publishes what the caches counted since the last FlowFile, the caches are shared by every thread */
+    private synchronized void reportCacheCounters(@NotNull ProcessSession session) {
+        long hits = 0;
+        long misses = 0;
+        for (BoundedLruCache<String, String> cache : resultCaches) {
+            hits += cache.getHits();
+            misses += cache.getMisses();
+        }
+        session.adjustCounter(REGEX_CACHE_HITS_COUNTER, hits - reportedHits, false);
+        session.adjustCounter(REGEX_CACHE_MISSES_COUNTER, misses - reportedMisses, false);
+        reportedHits = hits;
+        reportedMisses = misses;
+    }
+    @Override
+    protected void transform(InputStream inputStream, OutputStream outputStream) throws IOException {
+        transform(inputStream, outputStream, getEngine());
     }
 
-    private void sessionTransfer(FlowFile inputFlowFile, @NotNull ProcessSession session, String jsonContent) {
-        /*  Creating and writing session for REL_SUCCESS */
-        session.write(inputFlowFile, new OutputStreamCallback() {
-            @Override
-            public void process(OutputStream outputStream) throws IOException {
-                outputStream.write(jsonContent.getBytes());
+    @Override
+    protected void transform(InputStream inputStream, OutputStream outputStream, @NotNull Engine engine) throws IOException {
+        if (engine == Engine.STREAMING) {
+            /* only the subtrees the plan leads to are looked into, everything else is copied token by token */
+            try (JsonParser parser = createParser(inputStream);
+                 JsonGenerator generator = createGenerator(outputStream)) {
+                StreamingRegexMatcher.apply(pathPlan, parser, generator);
             }
-        });
-
-        /* session transfer for REL_SUCCESS */
-        session.putAttribute(inputFlowFile, "filename", inputFlowFile.getId() + ".json");
-        session.transfer(inputFlowFile, REL_SUCCESS);
+            return;
+        }
+        /* a top-level array is matched element by element */
+        transformJsonObjects(inputStream, outputStream, jsonObject -> Helper.applyRegexRules(jsonObject, pathPlan.getRoot()));
     }
 
 }
-
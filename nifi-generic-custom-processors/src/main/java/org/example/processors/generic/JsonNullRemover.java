@@ -16,126 +16,180 @@
  */
 package org.example.processors.generic;
 
-import com.google.gson.Gson;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import org.apache.nifi.annotation.behavior.EventDriven;
 import org.apache.nifi.annotation.behavior.InputRequirement;
 import org.apache.nifi.annotation.behavior.SideEffectFree;
 import org.apache.nifi.annotation.behavior.SupportsBatching;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.annotation.lifecycle.OnStopped;
 import org.apache.nifi.components.PropertyDescriptor;
-import org.apache.nifi.flowfile.FlowFile;
 import org.apache.nifi.processor.*;
-import org.apache.nifi.processor.io.OutputStreamCallback;
+import org.apache.nifi.processor.util.StandardValidators;
 import org.example.processors.generic.util.Constant;
+import org.example.processors.generic.util.DataFormat;
 import org.example.processors.generic.util.Helper;
+import org.example.processors.generic.util.ParallelLineTransformer;
+import org.example.processors.generic.util.PhaseTimer;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 @Tags({"json,null,remover"})
-@CapabilityDescription("Remove null fields from Json Objects")
+@CapabilityDescription("Remove null fields from Json Objects, in STREAMING mode tokens are piped from input to output with bounded memory, in NDJSON mode lines are cleaned in parallel")
 @EventDriven
 @SupportsBatching
 @SideEffectFree
 @InputRequirement(InputRequirement.Requirement.INPUT_REQUIRED)
-public class JsonNullRemover extends AbstractProcessor {
+public class JsonNullRemover extends AbstractContentProcessor {
+
+    /* property builder function  */
+    static final PropertyDescriptor PROCESSING_MODE;
+    static final PropertyDescriptor PARALLELISM;
+    static final PropertyDescriptor CHUNK_SIZE;
+
+    private String processingMode;
+    /* workers of the NDJSON mode, shared by every concurrent task of the processor */
+    private volatile ForkJoinPool forkJoinPool;
+    private volatile ParallelLineTransformer lineTransformer;
+
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(Constant.PROCESSING_MODE_NAME);
+        builder.displayName(Constant.PROCESSING_MODE_NAME);
+        builder.description(Constant.JsonNullRemover_PROCESSING_MODE_DESCRIPTION);
+        builder.required(true);
+        builder.allowableValues(Constant.PROCESSING_MODE_TREE, Constant.PROCESSING_MODE_STREAMING, Constant.PROCESSING_MODE_NDJSON, Constant.PROCESSING_MODE_AUTO);
+        builder.defaultValue(Constant.PROCESSING_MODE_TREE);
+        PROCESSING_MODE = builder
+                .build();
+    }
 
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(Constant.PARALLELISM_NAME);
+        builder.displayName(Constant.PARALLELISM_NAME);
+        builder.description(Constant.PARALLELISM_DESCRIPTION);
+        builder.required(true);
+        builder.defaultValue(Constant.PARALLELISM_DEFAULT);
+        builder.addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR);
+        PARALLELISM = builder
+                .build();
+    }
 
-    /* custom relationship declaration and assignment*/
-    static final Relationship REL_SUCCESS = new Relationship.Builder().name(Constant.REL_SUCCESS_NAME)
-            .build();
-    static final Relationship REL_FAILURE = new Relationship.Builder().name(Constant.REL_FAILED_NAME).build();
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(Constant.CHUNK_SIZE_NAME);
+        builder.displayName(Constant.CHUNK_SIZE_NAME);
+        builder.description(Constant.CHUNK_SIZE_DESCRIPTION);
+        builder.required(true);
+        builder.defaultValue(Constant.CHUNK_SIZE_DEFAULT);
+        builder.addValidator(StandardValidators.DATA_SIZE_VALIDATOR);
+        CHUNK_SIZE = builder
+                .build();
+    }
 
 
     private List<PropertyDescriptor> descriptors;
-    private Set<Relationship> relationships;
 
 
     /* processor initialization method */
     @Override
     protected void init(final ProcessorInitializationContext context) {
-        final Set<Relationship> intRelationships = new HashSet<>();
-        intRelationships.add(REL_FAILURE);
-        intRelationships.add(REL_SUCCESS);
-        this.relationships = Collections.unmodifiableSet(intRelationships);
+        final List<PropertyDescriptor> propertyDescriptors = new ArrayList<>();
+
+        /* propertyDescriptors  ProcessorInitialization */
+        propertyDescriptors.add(PROCESSING_MODE);
+        propertyDescriptors.add(PARALLELISM);
+        propertyDescriptors.add(CHUNK_SIZE);
+        addEngineDescriptors(propertyDescriptors);
+        addCommonDescriptors(propertyDescriptors);
+        this.descriptors = Collections.unmodifiableList(propertyDescriptors);
+    }
+
+    @Override
+    public final List<PropertyDescriptor> getSupportedPropertyDescriptors() {
+        return descriptors;
+    }
+
+    @OnScheduled
+    public void onScheduled(final @NotNull ProcessContext context) {
+        // loading values from property files
+        processingMode = context.getProperty(PROCESSING_MODE).getValue();
+        getLogger().info("input values : processingMode {}", processingMode);
+        configureEngine(context, processingMode);
+
+        if (Constant.PROCESSING_MODE_NDJSON.equals(processingMode)) {
+            int parallelism = context.getProperty(PARALLELISM).asInteger();
+            forkJoinPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+            int chunkSize = (int) Math.min(Integer.MAX_VALUE / 2, context.getProperty(CHUNK_SIZE).asDataSize(DataUnit.B).longValue());
+            lineTransformer = new ParallelLineTransformer(forkJoinPool, Math.max(1, chunkSize), JsonNullRemover::removeNullFieldsFromLine,
+                    context.getMaxConcurrentTasks());
+            registerPool("NDJSON chunk buffers", lineTransformer.getChunkBuffers());
+            registerPool("NDJSON output buffers", lineTransformer.getOutputBuffers());
+            getLogger().info("cleaning NDJSON with {} threads in chunks of {} bytes", forkJoinPool.getParallelism(), chunkSize);
+        }
+    }
+
+    @OnStopped
+    public void onStopped() {
+        if (forkJoinPool != null) {
+            forkJoinPool.shutdown();
+            forkJoinPool = null;
+            lineTransformer = null;
+        }
     }
 
     @Override
-    public Set<Relationship> getRelationships() {
-        return this.relationships;
+    protected long bufferedBytes(long contentBytes, @NotNull Engine engine) {
+        /* lines are held a chunk at a time, bounded by CHUNK_SIZE rather than by the FlowFile */
+        return Constant.PROCESSING_MODE_NDJSON.equals(processingMode) ? 0 : super.bufferedBytes(contentBytes, engine);
     }
 
     @Override
-    public final List<PropertyDescriptor> getSupportedPropertyDescriptors() {
-        return descriptors;
+    protected void transform(InputStream inputStream, OutputStream outputStream) throws IOException {
+        transform(inputStream, outputStream, getEngine());
     }
 
-    /**
-     * @param context
-     * @param session
-     */
     @Override
-    public void onTrigger(final ProcessContext context, final @NotNull ProcessSession session) throws NullPointerException {
-        getLogger().info("inside onTrigger method");
-        /* Getting flow file from session */
-        FlowFile inputFlowFile = session.get();
-
-        if (inputFlowFile == null) {
-            getLogger().info("input FlowFile null");
-            session.transfer((FlowFile) null, REL_FAILURE);
+    protected void transform(InputStream inputStream, OutputStream outputStream, @NotNull Engine engine) throws IOException {
+        /* binary content has no lines, its documents are cleaned one after the other as in STREAMING */
+        final boolean binary = getOutputFormat().isBinary() || DataFormat.detect(inputStream).isBinary();
+        if (Constant.PROCESSING_MODE_NDJSON.equals(processingMode) && !binary) {
+            /* lines are cleaned on the pool, this thread only reads chunks and writes results in order */
+            long lines = lineTransformer.transform(inputStream, outputStream);
+            PhaseTimer.of(inputStream).setRecords(lines);
             return;
         }
-        if (inputFlowFile.getSize() == 0) {
-            getLogger().error("Empty measurements");
-            session.transfer((FlowFile) null, REL_FAILURE);
+        if (engine == Engine.STREAMING || Constant.PROCESSING_MODE_NDJSON.equals(processingMode)) {
+            /*  piping tokens from the original content to the new content, nothing is buffered beyond one field */
+            try (JsonParser parser = createParser(inputStream);
+                 JsonGenerator generator = createGenerator(outputStream)) {
+                Helper.removeNullEmptyAndWhitespaceFields(parser, generator);
+            }
             return;
         }
 
-       try {
-            getLogger().info("reading json file from inputFlowFile");
-            String jsonString = Helper.flowFileReader(inputFlowFile, session);
-            getLogger().info("jsonContent {}", jsonString);
-
-            // Parse the JSON string to a JsonObject
-           JsonObject jsonObject = JsonParser.parseString(jsonString).getAsJsonObject();
-           // Remove null, empty, and whitespace fields
-           if (jsonObject != null) {
-               Helper.removeNullEmptyAndWhitespaceFields(jsonObject);
-           }
-           // Convert the JsonObject back to a JSON string
-           String updatedJsonString = new Gson().toJson(jsonObject);
-           // Print the updated JSON string
-           getLogger().info("updated Json {}", jsonString);
-           getLogger().info("sessionTransfer ...");
-           sessionTransfer(inputFlowFile, session, updatedJsonString);
-
-        }catch ( NullPointerException ex){
-            getLogger().info("Ran into Error while generating the json {}", ex);
-            session.transfer(inputFlowFile, REL_FAILURE);
-        }
+        JsonObject jsonObject = readJsonObject(inputStream);
+        // Remove null, empty, and whitespace fields
+        Helper.removeNullEmptyAndWhitespaceFields(jsonObject);
+        writeJson(jsonObject, outputStream);
     }
 
-    private void sessionTransfer(FlowFile inputFlowFile, @NotNull ProcessSession session, String jsonContent) {
-        /*  Creating and writing session for REL_SUCCESS */
-        session.write(inputFlowFile, new OutputStreamCallback() {
-            @Override
-            public void process(OutputStream outputStream) throws IOException {
-                outputStream.write(jsonContent.getBytes());
-            }
-        });
-
-        /* session transfer for REL_SUCCESS */
-        session.putAttribute(inputFlowFile, "filename", inputFlowFile.getId() + ".json");
-        session.transfer(inputFlowFile, REL_SUCCESS);
+    private static void removeNullFieldsFromLine(byte[] buffer, int offset, int length, OutputStream outputStream) throws IOException {
+        try (JsonParser parser = Helper.JSON_FACTORY.createParser(buffer, offset, length);
+             JsonGenerator generator = Helper.JSON_FACTORY.createGenerator(outputStream)) {
+            Helper.removeNullEmptyAndWhitespaceFields(parser, generator);
+        }
     }
 
 }
-
@@ -0,0 +1,363 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.example.processors.generic;
+
+import com.google.gson.JsonObject;
+import org.apache.nifi.annotation.behavior.EventDriven;
+import org.apache.nifi.annotation.behavior.InputRequirement;
+import org.apache.nifi.annotation.behavior.SideEffectFree;
+import org.apache.nifi.annotation.behavior.SupportsBatching;
+import org.apache.nifi.annotation.documentation.CapabilityDescription;
+import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
+import org.apache.nifi.processor.*;
+import org.apache.nifi.processor.util.StandardValidators;
+import org.example.processors.generic.util.BucketTable;
+import org.example.processors.generic.util.CustomValidator;
+import org.example.processors.generic.util.Helper;
+import org.example.processors.generic.util.JsonPathPlan;
+import org.example.processors.generic.util.RegexRule;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static org.example.processors.generic.util.Constant.*;
+
+@Tags({"json,null,remover,replacer,regex,range,chain"})
+@CapabilityDescription("Apply JsonNullRemover, KeyMapReplacer, JSONRegexMatcher and RangeConverter operations in the configured order to a single parse of the document, written once")
+@EventDriven
+@SupportsBatching
+@SideEffectFree
+@InputRequirement(InputRequirement.Requirement.INPUT_REQUIRED)
+public class JsonTransformChain extends AbstractContentProcessor {
+
+    /* property builder function  */
+    static final PropertyDescriptor OPERATIONS;
+    static final PropertyDescriptor CONST_MAP_KEYS;
+    static final PropertyDescriptor CONST_MAP_VALUES;
+    static final PropertyDescriptor KEY_TO_CHECK;
+    static final PropertyDescriptor NEW_KEY_NAMES;
+    static final PropertyDescriptor REGEX_PATTERN;
+    static final PropertyDescriptor REGEX_FIELD;
+    static final PropertyDescriptor RANGE_FIELD;
+    static final PropertyDescriptor RANGE_NEW_FIELD;
+    static final PropertyDescriptor BUCKET_BOUNDARIES;
+    static final PropertyDescriptor BUCKET_LABELS;
+
+    /* operations in the configured order, built once per schedule */
+    private volatile List<Consumer<JsonObject>> operations;
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(JsonTransformChain_OPERATIONS_NAME);
+        builder.displayName(JsonTransformChain_OPERATIONS_NAME);
+        builder.description(JsonTransformChain_OPERATIONS_DESCRIPTION);
+        builder.required(true);
+        builder.defaultValue(JsonTransformChain_OPERATIONS_PROPERTY_EXAMPLE);
+        builder.addValidator(JsonTransformChain::operationsValidator);
+        OPERATIONS = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(KEY_NAMES);
+        builder.displayName(KEY_NAMES);
+        builder.description(KEY_NAMES_DESCRIPTION);
+        builder.required(false);
+        builder.addValidator(CustomValidator::customPropertyValidator);
+        CONST_MAP_KEYS = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(KEY_VALUES);
+        builder.displayName(KEY_VALUES);
+        builder.description(KEY_VALUES_DESCRIPTION);
+        builder.required(false);
+        builder.addValidator(CustomValidator::customPropertyValidator);
+        CONST_MAP_VALUES = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(KEY_TO_CHECK_NAME);
+        builder.displayName(KEY_TO_CHECK_NAME);
+        builder.description(KEY_TO_CHECK_NAME_DESCRIPTION);
+        builder.required(false);
+        builder.addValidator(CustomValidator::customPropertyValidator);
+        KEY_TO_CHECK = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(NEW_KEY_NAMES_DISPLAY);
+        builder.displayName(NEW_KEY_NAMES_DISPLAY);
+        builder.description(NEW_KEY_NAMES_DESCRIPTION);
+        builder.required(false);
+        builder.addValidator(CustomValidator::customPropertyValidator);
+        NEW_KEY_NAMES = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(JsonTransformChain_REGEX_PATTERN_NAME);
+        builder.displayName(JsonTransformChain_REGEX_PATTERN_NAME);
+        builder.description(JsonTransformChain_REGEX_PATTERN_DESCRIPTION);
+        builder.required(false);
+        builder.addValidator(StandardValidators.REGULAR_EXPRESSION_VALIDATOR);
+        REGEX_PATTERN = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(JsonTransformChain_REGEX_FIELD_NAME);
+        builder.displayName(JsonTransformChain_REGEX_FIELD_NAME);
+        builder.description(JsonTransformChain_REGEX_FIELD_DESCRIPTION);
+        builder.required(false);
+        builder.addValidator(CustomValidator::jsonPathValidator);
+        REGEX_FIELD = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(JsonTransformChain_RANGE_FIELD_NAME);
+        builder.displayName(JsonTransformChain_RANGE_FIELD_NAME);
+        builder.description(JsonTransformChain_RANGE_FIELD_DESCRIPTION);
+        builder.required(false);
+        builder.addValidator(StandardValidators.NON_EMPTY_VALIDATOR);
+        RANGE_FIELD = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(JsonTransformChain_RANGE_NEW_FIELD_NAME);
+        builder.displayName(JsonTransformChain_RANGE_NEW_FIELD_NAME);
+        builder.description(JsonTransformChain_RANGE_NEW_FIELD_DESCRIPTION);
+        builder.required(false);
+        builder.addValidator(StandardValidators.NON_EMPTY_VALIDATOR);
+        RANGE_NEW_FIELD = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(BUCKET_BOUNDARIES_NAME);
+        builder.displayName(BUCKET_BOUNDARIES_NAME);
+        builder.description(BUCKET_BOUNDARIES_DESCRIPTION);
+        builder.required(false);
+        builder.addValidator(StandardValidators.NON_EMPTY_VALIDATOR);
+        BUCKET_BOUNDARIES = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(BUCKET_LABELS_NAME);
+        builder.displayName(BUCKET_LABELS_NAME);
+        builder.description(BUCKET_LABELS_DESCRIPTION);
+        builder.required(false);
+        builder.addValidator(StandardValidators.NON_EMPTY_VALIDATOR);
+        BUCKET_LABELS = builder
+                .build();
+    }
+
+    private List<PropertyDescriptor> descriptors;
+
+
+    /* processor initialization method */
+    @Override
+    protected void init(final ProcessorInitializationContext context) {
+        final List<PropertyDescriptor> propertyDescriptors = new ArrayList<>();
+
+        /* propertyDescriptors  ProcessorInitialization */
+        propertyDescriptors.add(OPERATIONS);
+        propertyDescriptors.add(CONST_MAP_KEYS);
+        propertyDescriptors.add(CONST_MAP_VALUES);
+        propertyDescriptors.add(KEY_TO_CHECK);
+        propertyDescriptors.add(NEW_KEY_NAMES);
+        propertyDescriptors.add(REGEX_PATTERN);
+        propertyDescriptors.add(REGEX_FIELD);
+        propertyDescriptors.add(RANGE_FIELD);
+        propertyDescriptors.add(RANGE_NEW_FIELD);
+        propertyDescriptors.add(BUCKET_BOUNDARIES);
+        propertyDescriptors.add(BUCKET_LABELS);
+        addCommonDescriptors(propertyDescriptors);
+        this.descriptors = Collections.unmodifiableList(propertyDescriptors);
+    }
+
+    @Override
+    public final List<PropertyDescriptor> getSupportedPropertyDescriptors() {
+        return descriptors;
+    }
+
+    /**
+     * Validation for the coma separated operation list
+     * @param subject
+     * @param input
+     * @param validationContext
+     * @return
+     */
+    static @NotNull ValidationResult operationsValidator(String subject, String input, ValidationContext validationContext) {
+        boolean valid = input != null && !input.trim().isEmpty();
+        if (valid) {
+            for (String operation : input.split(",")) {
+                valid &= isOperation(operation.trim());
+            }
+        }
+        ValidationResult.Builder builder = new ValidationResult.Builder()
+                .subject(subject)
+                .input(input)
+                .valid(valid);
+        if (!valid) {
+            builder.explanation(JsonTransformChain_OPERATIONS_VALIDATION_DESCRIPTION);
+        }
+        return builder.build();
+    }
+
+    private static boolean isOperation(@NotNull String operation) {
+        return OPERATION_REMOVE_NULLS.equals(operation) || OPERATION_KEY_MAP.equals(operation)
+                || OPERATION_REGEX.equals(operation) || OPERATION_RANGE.equals(operation);
+    }
+
+    @Override
+    protected Collection<ValidationResult> customValidate(final @NotNull ValidationContext validationContext) {
+        /* every configured operation needs its own properties */
+        final List<ValidationResult> results = new ArrayList<>();
+        final String operationList = validationContext.getProperty(OPERATIONS).getValue();
+        if (operationList == null) {
+            return results;
+        }
+        final Set<String> configured = new HashSet<>();
+        for (String operation : operationList.split(",")) {
+            configured.add(operation.trim());
+        }
+        if (configured.contains(OPERATION_KEY_MAP)) {
+            requireProperties(validationContext, results, OPERATION_KEY_MAP, CONST_MAP_KEYS, CONST_MAP_VALUES, KEY_TO_CHECK, NEW_KEY_NAMES);
+            final String keyToCheck = validationContext.getProperty(KEY_TO_CHECK).getValue();
+            final String newKeyNames = validationContext.getProperty(NEW_KEY_NAMES).getValue();
+            if (keyToCheck != null && newKeyNames != null && keyToCheck.split(",").length != newKeyNames.split(",").length) {
+                results.add(new ValidationResult.Builder()
+                        .subject(NEW_KEY_NAMES_DISPLAY)
+                        .input(newKeyNames)
+                        .valid(false)
+                        .explanation(NEW_KEY_NAMES_VALIDATION_DESCRIPTION)
+                        .build());
+            }
+        }
+        if (configured.contains(OPERATION_REGEX)) {
+            requireProperties(validationContext, results, OPERATION_REGEX, REGEX_PATTERN, REGEX_FIELD);
+        }
+        if (configured.contains(OPERATION_RANGE)) {
+            requireProperties(validationContext, results, OPERATION_RANGE, RANGE_FIELD, RANGE_NEW_FIELD);
+            final String boundaries = validationContext.getProperty(BUCKET_BOUNDARIES).getValue();
+            if (boundaries != null) {
+                try {
+                    BucketTable.parse(boundaries, validationContext.getProperty(BUCKET_LABELS).getValue());
+                } catch (IllegalArgumentException e) {
+                    results.add(new ValidationResult.Builder()
+                            .subject(BUCKET_BOUNDARIES_NAME)
+                            .input(boundaries)
+                            .valid(false)
+                            .explanation(e.getMessage())
+                            .build());
+                }
+            }
+        }
+        return results;
+    }
+
+    private static void requireProperties(@NotNull ValidationContext validationContext, @NotNull List<ValidationResult> results,
+                                          @NotNull String operation, PropertyDescriptor @NotNull ... properties) {
+        for (PropertyDescriptor property : properties) {
+            if (!validationContext.getProperty(property).isSet()) {
+                results.add(new ValidationResult.Builder()
+                        .subject(property.getName())
+                        .valid(false)
+                        .explanation(String.format(JsonTransformChain_MISSING_PROPERTY_DESCRIPTION, operation))
+                        .build());
+            }
+        }
+    }
+
+    @OnScheduled
+    public void onScheduled(final @NotNull ProcessContext context) {
+        // loading values from property files
+        final String operationList = context.getProperty(OPERATIONS).getValue();
+        getLogger().info("input values : operations {}", operationList);
+
+        /* every operation is configured once here, a FlowFile only runs the list */
+        final List<Consumer<JsonObject>> chain = new ArrayList<>();
+        for (String operation : operationList.split(",")) {
+            chain.add(createOperation(operation.trim(), context));
+        }
+        operations = Collections.unmodifiableList(chain);
+    }
+
+    private @NotNull Consumer<JsonObject> createOperation(@NotNull String operation, @NotNull ProcessContext context) {
+        switch (operation) {
+            case OPERATION_REMOVE_NULLS:
+                return Helper::removeNullEmptyAndWhitespaceFields;
+            case OPERATION_KEY_MAP:
+                final Map<String, String> replacementMap = Helper.createReplacementMap(
+                        context.getProperty(CONST_MAP_KEYS).getValue(), context.getProperty(CONST_MAP_VALUES).getValue());
+                final String[] keyToCheck = context.getProperty(KEY_TO_CHECK).getValue().split(",");
+                final String[] newKeyNames = context.getProperty(NEW_KEY_NAMES).getValue().split(",");
+                return jsonObject -> Helper.addMapValueToJSON(jsonObject, replacementMap::get, keyToCheck, newKeyNames);
+            case OPERATION_REGEX:
+                final String regexField = context.getProperty(REGEX_FIELD).getValue();
+                final JsonPathPlan<RegexRule> pathPlan = JsonPathPlan.<RegexRule>builder()
+                        .add(regexField, new RegexRule(regexField, context.getProperty(REGEX_PATTERN).getValue()))
+                        .build();
+                return jsonObject -> Helper.applyRegexRules(jsonObject, pathPlan.getRoot());
+            case OPERATION_RANGE:
+                final String[] fieldPath = Helper.parseFieldPath(context.getProperty(RANGE_FIELD).getValue());
+                final String newKey = context.getProperty(RANGE_NEW_FIELD).getValue();
+                final String boundaries = context.getProperty(BUCKET_BOUNDARIES).getValue();
+                final BucketTable bucketTable = boundaries == null ? null : BucketTable.parse(boundaries, context.getProperty(BUCKET_LABELS).getValue());
+                return jsonObject -> Helper.addRange(jsonObject, fieldPath, newKey, bucketTable);
+            default:
+                throw new IllegalArgumentException("Unknown operation " + operation);
+        }
+    }
+
+    @Override
+    protected void transform(InputStream inputStream, OutputStream outputStream) throws IOException {
+        /* one parse and one serialization whatever the number of operations, a top-level array is chained element by element */
+        final List<Consumer<JsonObject>> chain = operations;
+        transformJsonObjects(inputStream, outputStream, jsonObject -> {
+            for (Consumer<JsonObject> operation : chain) {
+                operation.accept(jsonObject);
+            }
+        });
+    }
+
+}
@@ -16,6 +16,7 @@
  */
 package org.example.processors.generic;
 
+import com.google.gson.JsonObject;
 import org.apache.nifi.annotation.behavior.EventDriven;
 import org.apache.nifi.annotation.behavior.InputRequirement;
 import org.apache.nifi.annotation.behavior.SideEffectFree;
@@ -23,27 +24,58 @@ import org.apache.nifi.annotation.behavior.SupportsBatching;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.Tags;
 import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.annotation.lifecycle.OnStopped;
 import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
+import org.apache.nifi.distributed.cache.client.DistributedMapCacheClient;
 import org.apache.nifi.flowfile.FlowFile;
 import org.apache.nifi.processor.*;
-import org.apache.nifi.processor.io.OutputStreamCallback;
+import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.processor.util.StandardValidators;
+import org.apache.nifi.schema.access.SchemaNotFoundException;
+import org.apache.nifi.serialization.*;
+import org.apache.nifi.serialization.record.Record;
+import org.apache.nifi.serialization.record.RecordField;
+import org.apache.nifi.serialization.record.RecordFieldType;
+import org.apache.nifi.serialization.record.RecordSchema;
+import org.example.processors.generic.util.Compression;
+import org.example.processors.generic.util.Constant;
+import org.example.processors.generic.util.DataFormat;
 import org.example.processors.generic.util.CustomValidator;
+import org.example.processors.generic.util.JsonFieldSplicer;
+import org.example.processors.generic.util.KeyLookup;
+import org.example.processors.generic.util.MeteredInputStream;
+import org.example.processors.generic.util.MeteredOutputStream;
+import org.example.processors.generic.util.NearCacheLookup;
+import org.example.processors.generic.util.ObjectPool;
+import org.example.processors.generic.util.PhaseTimer;
+import org.example.processors.generic.util.ProcessorMetrics;
+import org.example.processors.generic.util.ReloadableLookupTable;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.example.processors.generic.util.Constant.*;
 import static org.example.processors.generic.util.Helper.*;
 
 @Tags({"json,key,map"})
-@CapabilityDescription("Json Key value replacer")
+@CapabilityDescription("Json Key value replacer, values come from KEYS/VALUES, a memory mapped LOOKUP_FILE reloaded when it changes or a Distributed Map Cache behind a local near-cache, with a Record Reader and Record Writer every record of the FlowFile is enriched in one pass")
 @EventDriven
 @SupportsBatching
 @SideEffectFree
 @InputRequirement(InputRequirement.Requirement.INPUT_REQUIRED)
-public class KeyMapReplacer extends AbstractProcessor {
+public class KeyMapReplacer extends AbstractContentProcessor {
 
     /* property builder function  */
 
@@ -51,18 +83,38 @@ public class KeyMapReplacer extends AbstractProcessor {
     static final PropertyDescriptor CONST_MAP_VALUES;
     static final PropertyDescriptor KEY_TO_CHECK;
     static final PropertyDescriptor NEW_KEY_NAMES;
-
-    private static String propertyValueMapKeys;
-    private static String propertyValueMapValues;
-
-    private static String[] newKeyNamesArray;
-    private static String[] keyToCheckArray;
-
-    /* custom relationship declaration and assignment*/
-    static final Relationship REL_SUCCESS = new Relationship.Builder().name(REL_SUCCESS_NAME)
-            .build();
-    static final Relationship REL_FAILURE = new Relationship.Builder().name(REL_FAILED_NAME).build();
-
+    static final PropertyDescriptor RECORD_READER;
+    static final PropertyDescriptor RECORD_WRITER;
+    static final PropertyDescriptor LOOKUP_FILE;
+    static final PropertyDescriptor LOOKUP_RELOAD_INTERVAL;
+    static final PropertyDescriptor PROCESSING_MODE;
+    static final PropertyDescriptor LOOKUP_CACHE_SERVICE;
+    static final PropertyDescriptor NEAR_CACHE_SIZE;
+    static final PropertyDescriptor NEAR_CACHE_TTL;
+
+    /* records buffered so their keys go to a remote lookup in one request, bounds the memory a FlowFile takes */
+    private static final int REMOTE_LOOKUP_BATCH_RECORDS = 10000;
+
+    /* settings of this instance, two KeyMapReplacers in a flow have their own keys */
+    private volatile String propertyValueMapKeys;
+    private volatile String propertyValueMapValues;
+
+    private volatile String[] newKeyNamesArray;
+    private volatile String[] keyToCheckArray;
+
+    /* replacement values, the KEYS/VALUES map, the memory mapped lookup file or the distributed cache */
+    private volatile KeyLookup keyLookup;
+    private volatile ReloadableLookupTable lookupTable;
+    /* checks the lookup file for changes, loading a changed file never holds up a FlowFile */
+    private volatile ScheduledExecutorService lookupReloader;
+    private volatile int lookupBatchRecords = 1;
+    private RecordReaderFactory recordReaderFactory;
+    private boolean splice;
+    /* the splicer reuses its content buffer, so a task borrows one for the length of a FlowFile */
+    private volatile ObjectPool<JsonFieldSplicer> fieldSplicers;
+    private RecordSetWriterFactory recordSetWriterFactory;
+    /* enriched schema per incoming schema, kept across FlowFiles until the processor is rescheduled */
+    private final ConcurrentMap<RecordSchema, RecordSchema> enrichedSchemaCache = new ConcurrentHashMap<>();
 
     static {
         PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
@@ -111,8 +163,100 @@ public class KeyMapReplacer extends AbstractProcessor {
                 .build();
     }
 
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(RECORD_READER_NAME);
+        builder.displayName(RECORD_READER_NAME);
+        builder.description(RECORD_READER_DESCRIPTION);
+        builder.required(false);
+        builder.identifiesControllerService(RecordReaderFactory.class);
+        RECORD_READER = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(RECORD_WRITER_NAME);
+        builder.displayName(RECORD_WRITER_NAME);
+        builder.description(RECORD_WRITER_DESCRIPTION);
+        builder.required(false);
+        builder.identifiesControllerService(RecordSetWriterFactory.class);
+        RECORD_WRITER = builder
+                .build();
+    }
+
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(LOOKUP_FILE_NAME);
+        builder.displayName(LOOKUP_FILE_NAME);
+        builder.description(LOOKUP_FILE_DESCRIPTION);
+        builder.required(false);
+        builder.addValidator(StandardValidators.FILE_EXISTS_VALIDATOR);
+        LOOKUP_FILE = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(LOOKUP_RELOAD_INTERVAL_NAME);
+        builder.displayName(LOOKUP_RELOAD_INTERVAL_NAME);
+        builder.description(LOOKUP_RELOAD_INTERVAL_DESCRIPTION);
+        builder.required(true);
+        builder.defaultValue(LOOKUP_RELOAD_INTERVAL_DEFAULT);
+        builder.addValidator(StandardValidators.TIME_PERIOD_VALIDATOR);
+        LOOKUP_RELOAD_INTERVAL = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(Constant.PROCESSING_MODE_NAME);
+        builder.displayName(Constant.PROCESSING_MODE_NAME);
+        builder.description(Constant.KeyMapReplacer_PROCESSING_MODE_DESCRIPTION);
+        builder.required(true);
+        builder.allowableValues(Constant.PROCESSING_MODE_TREE, Constant.PROCESSING_MODE_SPLICE);
+        builder.defaultValue(Constant.PROCESSING_MODE_TREE);
+        PROCESSING_MODE = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(LOOKUP_CACHE_SERVICE_NAME);
+        builder.displayName(LOOKUP_CACHE_SERVICE_NAME);
+        builder.description(LOOKUP_CACHE_SERVICE_DESCRIPTION);
+        builder.required(false);
+        builder.identifiesControllerService(DistributedMapCacheClient.class);
+        LOOKUP_CACHE_SERVICE = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(NEAR_CACHE_SIZE_NAME);
+        builder.displayName(NEAR_CACHE_SIZE_NAME);
+        builder.description(NEAR_CACHE_SIZE_DESCRIPTION);
+        builder.required(true);
+        builder.defaultValue(NEAR_CACHE_SIZE_DEFAULT);
+        builder.addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR);
+        NEAR_CACHE_SIZE = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(NEAR_CACHE_TTL_NAME);
+        builder.displayName(NEAR_CACHE_TTL_NAME);
+        builder.description(NEAR_CACHE_TTL_DESCRIPTION);
+        builder.required(true);
+        builder.defaultValue(NEAR_CACHE_TTL_DEFAULT);
+        builder.addValidator(StandardValidators.TIME_PERIOD_VALIDATOR);
+        NEAR_CACHE_TTL = builder
+                .build();
+    }
+
     private List<PropertyDescriptor> descriptors;
-    private Set<Relationship> relationships;
 
 
     /* processor initialization method */
@@ -121,31 +265,62 @@ public class KeyMapReplacer extends AbstractProcessor {
 
         final List<PropertyDescriptor> propertyDescriptors = new ArrayList<>();
 
-        /* intRelationships and propertyDescriptors  ProcessorInitialization */
+        /* propertyDescriptors  ProcessorInitialization */
         propertyDescriptors.add(NEW_KEY_NAMES);
         propertyDescriptors.add(KEY_TO_CHECK);
         propertyDescriptors.add(CONST_MAP_VALUES);
         propertyDescriptors.add(CONST_MAP_KEYS);
+        propertyDescriptors.add(RECORD_READER);
+        propertyDescriptors.add(RECORD_WRITER);
+        propertyDescriptors.add(LOOKUP_FILE);
+        propertyDescriptors.add(LOOKUP_RELOAD_INTERVAL);
+        propertyDescriptors.add(PROCESSING_MODE);
+        propertyDescriptors.add(LOOKUP_CACHE_SERVICE);
+        propertyDescriptors.add(NEAR_CACHE_SIZE);
+        propertyDescriptors.add(NEAR_CACHE_TTL);
+        addCommonDescriptors(propertyDescriptors);
         this.descriptors = Collections.unmodifiableList(propertyDescriptors);
-
-        final Set<Relationship> intRelationships = new HashSet<>();
-        intRelationships.add(REL_FAILURE);
-        intRelationships.add(REL_SUCCESS);
-        this.relationships = Collections.unmodifiableSet(intRelationships);
     }
 
     @Override
-    public Set<Relationship> getRelationships() {
-        return this.relationships;
+    public final List<PropertyDescriptor> getSupportedPropertyDescriptors() {
+        return descriptors;
     }
 
     @Override
-    public final List<PropertyDescriptor> getSupportedPropertyDescriptors() {
-        return descriptors;
+    protected Collection<ValidationResult> customValidate(final @NotNull ValidationContext validationContext) {
+        final List<ValidationResult> results = new ArrayList<>();
+        final boolean readerSet = validationContext.getProperty(RECORD_READER).isSet();
+        final boolean writerSet = validationContext.getProperty(RECORD_WRITER).isSet();
+        if (readerSet != writerSet) {
+            results.add(new ValidationResult.Builder()
+                    .subject(RECORD_READER_NAME)
+                    .valid(false)
+                    .explanation(RECORD_READER_WRITER_VALIDATION_DESCRIPTION)
+                    .build());
+        }
+        final String keyToCheck = validationContext.getProperty(KEY_TO_CHECK).getValue();
+        final String newKeyNames = validationContext.getProperty(NEW_KEY_NAMES).getValue();
+        if (keyToCheck != null && newKeyNames != null && keyToCheck.split(",").length != newKeyNames.split(",").length) {
+            results.add(new ValidationResult.Builder()
+                    .subject(NEW_KEY_NAMES_DISPLAY)
+                    .input(newKeyNames)
+                    .valid(false)
+                    .explanation(NEW_KEY_NAMES_VALIDATION_DESCRIPTION)
+                    .build());
+        }
+        if (validationContext.getProperty(LOOKUP_FILE).isSet() && validationContext.getProperty(LOOKUP_CACHE_SERVICE).isSet()) {
+            results.add(new ValidationResult.Builder()
+                    .subject(LOOKUP_CACHE_SERVICE_NAME)
+                    .valid(false)
+                    .explanation(LOOKUP_SOURCE_VALIDATION_DESCRIPTION)
+                    .build());
+        }
+        return results;
     }
 
     @OnScheduled
-    public void onScheduled(final @NotNull ProcessContext context) {
+    public void onScheduled(final @NotNull ProcessContext context) throws IOException {
         // loading values from property files
         propertyValueMapKeys = context.getProperty(CONST_MAP_KEYS).getValue();
         propertyValueMapValues = context.getProperty(CONST_MAP_VALUES).getValue();
@@ -157,69 +332,224 @@ public class KeyMapReplacer extends AbstractProcessor {
         keyToCheckArray = keyToCheck.split(",");
         getLogger().info("newKeyNamesArray {}", newKeyNamesArray);
         getLogger().info("keyToCheckArray {}", keyToCheckArray);
+
+        recordReaderFactory = context.getProperty(RECORD_READER).asControllerService(RecordReaderFactory.class);
+        recordSetWriterFactory = context.getProperty(RECORD_WRITER).asControllerService(RecordSetWriterFactory.class);
+        enrichedSchemaCache.clear();
+
+        splice = Constant.PROCESSING_MODE_SPLICE.equals(context.getProperty(PROCESSING_MODE).getValue());
+        final String[] keys = keyToCheckArray;
+        final String[] newKeys = newKeyNamesArray;
+        fieldSplicers = newPool("JsonFieldSplicer", context, () -> new JsonFieldSplicer(keys, newKeys), null);
+
+        // the lookup source is built once here, not for every FlowFile
+        lookupBatchRecords = 1;
+        if (context.getProperty(LOOKUP_CACHE_SERVICE).isSet()) {
+            final DistributedMapCacheClient cacheClient = context.getProperty(LOOKUP_CACHE_SERVICE).asControllerService(DistributedMapCacheClient.class);
+            final int nearCacheSize = context.getProperty(NEAR_CACHE_SIZE).asInteger();
+            final long nearCacheTtl = context.getProperty(NEAR_CACHE_TTL).asTimePeriod(TimeUnit.MILLISECONDS);
+            lookupTable = null;
+            keyLookup = new NearCacheLookup(cacheClient, nearCacheSize, nearCacheTtl);
+            lookupBatchRecords = REMOTE_LOOKUP_BATCH_RECORDS;
+            getLogger().info("looking up keys through the cache service, near-cache size {} ttl {} ms", nearCacheSize, nearCacheTtl);
+        } else if (context.getProperty(LOOKUP_FILE).isSet()) {
+            final long reloadInterval = context.getProperty(LOOKUP_RELOAD_INTERVAL).asTimePeriod(TimeUnit.MILLISECONDS);
+            lookupTable = new ReloadableLookupTable(Paths.get(context.getProperty(LOOKUP_FILE).getValue()));
+            keyLookup = lookupTable;
+            getLogger().info("loaded {} entries from lookup file", lookupTable.size());
+            lookupReloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "KeyMapReplacer lookup reload " + getIdentifier());
+                thread.setDaemon(true);
+                return thread;
+            });
+            final long checkInterval = Math.max(1, reloadInterval);
+            lookupReloader.scheduleWithFixedDelay(this::reloadLookupTable, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+        } else {
+            final Map<String, String> replacementMap = createReplacementMap(propertyValueMapKeys, propertyValueMapValues);
+            getLogger().info("replacement map with {} entries", replacementMap.size());
+            lookupTable = null;
+            keyLookup = replacementMap::get;
+        }
     }
 
-    /**
-     * @param context
-     * @param session
-     */
-    @Override
-    public void onTrigger(final ProcessContext context, final @NotNull ProcessSession session) throws NullPointerException {
-        getLogger().info("inside onTrigger method");
-        /* Getting flow file from session */
-        FlowFile inputFlowFile = session.get();
-
-        if (inputFlowFile == null) {
-            getLogger().info("input FlowFile null");
-            session.transfer((FlowFile) null, REL_FAILURE);
-            return;
+    @OnStopped
+    public void onStopped() {
+        if (lookupReloader != null) {
+            lookupReloader.shutdownNow();
+            lookupReloader = null;
         }
-        if (inputFlowFile.getSize() == 0) {
-            getLogger().error("Empty measurements");
-            session.transfer((FlowFile) null, REL_FAILURE);
+    }
+
+    /* runs on the reload thread, an exception escaping it would cancel the later checks */
+    private void reloadLookupTable() {
+        final ReloadableLookupTable table = lookupTable;
+        if (table == null) {
             return;
         }
-
-
-
-
-        if (keyToCheckArray.length != newKeyNamesArray.length) throw new IllegalArgumentException("keyToCheck and newKeyNames not matched at length");
         try {
-            getLogger().info("reading json file from inputFlowFile");
-            String jsonContent = flowFileReader(inputFlowFile, session);
-            getLogger().info("jsonContent {}", jsonContent);
-
-            // Creating a map to store the replacement key-value pairs
-            getLogger().info("Create a map to store the replacement key-value pairs");
-            final Map<String, String> replacementMap = createReplacementMap(propertyValueMapKeys, propertyValueMapValues);
-            getLogger().info("new Map {}", replacementMap);
+            if (table.reloadIfModified()) {
+                getLogger().info("reloaded {} entries from lookup file", table.size());
+            }
+        } catch (IOException | RuntimeException e) {
+            getLogger().warn("Unable to reload the lookup file, keeping the loaded table", e);
+        }
+    }
 
-            String newJson = addMapValueToJSON(jsonContent, replacementMap, keyToCheckArray , newKeyNamesArray);
-            getLogger().info("newKeyNamesArray {}", newKeyNamesArray);
-            getLogger().info("keyToCheckArray {}", keyToCheckArray);
+    @Override
+    protected void processFlowFile(FlowFile inputFlowFile, @NotNull ProcessSession session) {
+        if (recordReaderFactory != null) {
+            recordTransfer(inputFlowFile, session, keyLookup);
+        } else {
+            super.processFlowFile(inputFlowFile, session);
+        }
+    }
 
-            sessionTransfer(inputFlowFile, session, newJson);
-        }catch ( NullPointerException ex){
-            getLogger().info("Ran into Error while generating the json {}", ex);
-            session.transfer(inputFlowFile, REL_FAILURE);
+    @Override
+    protected long bufferedBytes(long contentBytes, @NotNull Engine engine) {
+        /* the splicer holds the content bytes in a buffer grown by doubling, binary content still goes through the tree */
+        if (splice && !getOutputFormat().isBinary()) {
+            return Math.min(contentBytes, Long.MAX_VALUE / 2) * 2;
         }
+        return super.bufferedBytes(contentBytes, engine);
+    }
 
+    @Override
+    protected void transform(InputStream inputStream, OutputStream outputStream) throws IOException {
+        if (splice && !getOutputFormat().isBinary() && !DataFormat.detect(inputStream).isBinary()) {
+            /* the original bytes are copied through, only the new fields are encoded. Binary content goes through the tree */
+            try (ObjectPool.Lease<JsonFieldSplicer> fieldSplicer = fieldSplicers.lease()) {
+                fieldSplicer.get().splice(inputStream, outputStream, keyLookup);
+            }
+            return;
+        }
+        JsonObject jsonObject = readJsonObject(inputStream);
+        addMapValueToJSON(jsonObject, keyLookup, keyToCheckArray, newKeyNamesArray);
+        writeJson(jsonObject, outputStream);
+    }
 
+    private void recordTransfer(FlowFile inputFlowFile, @NotNull ProcessSession session, KeyLookup replacementLookup) {
+        final FlowFile original = inputFlowFile;
+        final AtomicReference<WriteResult> writeResult = new AtomicReference<>();
+        final AtomicReference<String> mimeType = new AtomicReference<>();
+        final boolean tapped = sampleDebugTap();
+        final String inputPreview = previewInput(tapped, inputFlowFile, session);
+        final PhaseTimer timer = new PhaseTimer();
+        try {
+            /* one pass over the FlowFile, every record is enriched and written before the next one is read */
+            inputFlowFile = session.write(inputFlowFile, (inputStream, outputStream) -> {
+                /* the record services see uncompressed content, compressed the same way as the other modes */
+                try (InputStream contentStream = openInput(inputStream);
+                     OutputStream compressedStream = openOutput(outputStream)) {
+                    final OutputStream meteredOutputStream = new MeteredOutputStream(compressedStream, timer);
+                    timer.switchTo(ProcessorMetrics.Phase.PARSE);
+                    try (RecordReader reader = recordReaderFactory.createRecordReader(original, new MeteredInputStream(contentStream, timer), getLogger())) {
+                        final RecordSchema enrichedSchema = enrichedSchemaCache.computeIfAbsent(reader.getSchema(), this::enrichSchema);
+                        final RecordSchema writeSchema = recordSetWriterFactory.getSchema(original.getAttributes(), enrichedSchema);
+                        try (RecordSetWriter writer = recordSetWriterFactory.createWriter(getLogger(), writeSchema, meteredOutputStream, original)) {
+                            writer.beginRecordSet();
+                            /* one record at a time, or batches whose keys a remote lookup resolves in one request */
+                            final List<Record> pending = new ArrayList<>();
+                            Record record;
+                            while ((record = reader.nextRecord()) != null) {
+                                pending.add(record);
+                                if (pending.size() >= lookupBatchRecords) {
+                                    enrichAndWrite(pending, writer, enrichedSchema, replacementLookup, timer);
+                                    timer.switchTo(ProcessorMetrics.Phase.PARSE);
+                                }
+                            }
+                            enrichAndWrite(pending, writer, enrichedSchema, replacementLookup, timer);
+                            timer.switchTo(ProcessorMetrics.Phase.SERIALIZE);
+                            writeResult.set(writer.finishRecordSet());
+                            mimeType.set(writer.getMimeType());
+                        }
+                    } catch (MalformedRecordException | SchemaNotFoundException e) {
+                        throw new ProcessException("Unable to read or write records", e);
+                    }
+                }
+            });
+        } catch (RuntimeException ex) {
+            getLogger().info("Ran into Error while enriching the records {}", ex);
+            getMetrics().recordFailure(session, ex);
+            transfer(inputFlowFile, session, REL_FAILURE, tapped, inputPreview);
+            return;
+        }
+        timer.stop();
+        timer.setRecords(writeResult.get().getRecordCount());
+        getMetrics().recordSuccess(session, timer, original.getSize(), inputFlowFile.getSize());
+
+        final Map<String, String> attributes = new HashMap<>(writeResult.get().getAttributes());
+        attributes.put("record.count", String.valueOf(writeResult.get().getRecordCount()));
+        if (mimeType.get() != null) {
+            attributes.put("mime.type", mimeType.get());
+        }
+        final Compression compression = getOutputCompression();
+        if (compression.getMimeType() != null) {
+            attributes.put("mime.type", compression.getMimeType());
+            attributes.put("filename", inputFlowFile.getAttribute("filename") + compression.getExtension());
+        }
+        inputFlowFile = session.putAllAttributes(inputFlowFile, attributes);
+        transfer(inputFlowFile, session, REL_SUCCESS, tapped, inputPreview);
     }
 
-    private void sessionTransfer(FlowFile inputFlowFile, @NotNull ProcessSession session, String jsonContent) {
-        /*  Creating and writing session for REL_SUCCESS */
-        session.write(inputFlowFile, new OutputStreamCallback() {
-            @Override
-            public void process(OutputStream outputStream) throws IOException {
-                outputStream.write(jsonContent.getBytes());
+    /**
+     * @apiNote adds the new key names to the incoming schema as string fields, existing fields of the same name are replaced
+     * @param schema
+     * @return RecordSchema
+     */
+    private @NotNull RecordSchema enrichSchema(@NotNull RecordSchema schema) {
+        final List<RecordField> fields = new ArrayList<>(schema.getFields());
+        for (String newKeyName : newKeyNamesArray) {
+            final RecordField newField = new RecordField(newKeyName, RecordFieldType.STRING.getDataType(), true);
+            boolean replaced = false;
+            for (int i = 0; i < fields.size(); i++) {
+                if (fields.get(i).getFieldName().equals(newKeyName)) {
+                    fields.set(i, newField);
+                    replaced = true;
+                }
+            }
+            if (!replaced) {
+                fields.add(newField);
             }
-        });
+        }
+        return new SimpleRecordSchema(fields);
+    }
 
-        /* session transfer for REL_SUCCESS */
-        session.putAttribute(inputFlowFile, "filename", inputFlowFile.getId() + ".json");
-        session.transfer(inputFlowFile, REL_SUCCESS);
+    private void enrichAndWrite(@NotNull List<Record> records, RecordSetWriter writer, RecordSchema enrichedSchema,
+                                KeyLookup replacementLookup, @NotNull PhaseTimer timer) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        timer.switchTo(ProcessorMetrics.Phase.TRANSFORM);
+        if (records.size() > 1 || keyToCheckArray.length > 1) {
+            final Set<String> keys = new HashSet<>();
+            for (Record record : records) {
+                for (String keyToCheck : keyToCheckArray) {
+                    final String key = record.getAsString(keyToCheck);
+                    if (key != null) {
+                        keys.add(key);
+                    }
+                }
+            }
+            replacementLookup.prefetch(keys);
+        }
+        for (Record record : records) {
+            enrichRecord(record, enrichedSchema, replacementLookup);
+            timer.switchTo(ProcessorMetrics.Phase.SERIALIZE);
+            writer.write(record);
+            timer.switchTo(ProcessorMetrics.Phase.TRANSFORM);
+        }
+        records.clear();
     }
 
-}
+    /* sets the new fields on the record itself, a new key set earlier is seen by a later key as in the tree transform */
+    private void enrichRecord(@NotNull Record record, RecordSchema enrichedSchema, KeyLookup replacementLookup) {
+        record.incorporateSchema(enrichedSchema);
+        for (int i = 0; i < keyToCheckArray.length; i++) {
+            final String replacementValue = record.getAsString(keyToCheckArray[i]);
+            if (replacementValue != null) {
+                record.setValue(newKeyNamesArray[i], replacementLookup.lookup(replacementValue));
+            }
+        }
+    }
 
+}
\ No newline at end of file
@@ -16,8 +16,8 @@
  */
 package org.example.processors.generic;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import org.apache.nifi.annotation.behavior.EventDriven;
 import org.apache.nifi.annotation.behavior.InputRequirement;
 import org.apache.nifi.annotation.behavior.SideEffectFree;
@@ -26,37 +26,45 @@ import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.Tags;
 import org.apache.nifi.annotation.lifecycle.OnScheduled;
 import org.apache.nifi.components.PropertyDescriptor;
-import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
 import org.apache.nifi.processor.*;
-import org.apache.nifi.processor.io.OutputStreamCallback;
 import org.apache.nifi.processor.util.StandardValidators;
+import org.example.processors.generic.util.BucketTable;
 import org.example.processors.generic.util.Helper;
+import org.example.processors.generic.util.ObjectPool;
+import org.example.processors.generic.util.PhaseTimer;
+import org.example.processors.generic.util.StreamingRangeConverter;
 import org.jetbrains.annotations.NotNull;
 import org.example.processors.generic.util.Constant;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.*;
 
 @Tags({"json,regex,replacer"})
-@CapabilityDescription("Replace specified json key-value using regex pattern")
+@CapabilityDescription("Add the range bucket of a numeric json field, or a parallel array of buckets for a numeric array, the field can be a JSON Pointer to a nested value")
 @EventDriven
 @SupportsBatching
 @SideEffectFree
 @InputRequirement(InputRequirement.Requirement.INPUT_REQUIRED)
-public class RangeConverter extends AbstractProcessor {
+public class RangeConverter extends AbstractContentProcessor {
 
     /* property builder function  */
 
     static final PropertyDescriptor SpecifiedKey;
     static final PropertyDescriptor SpecifiedNewKey;
+    static final PropertyDescriptor BUCKET_BOUNDARIES;
+    static final PropertyDescriptor BUCKET_LABELS;
+    static final PropertyDescriptor PROCESSING_MODE;
 
-    private static String specifiedKey;
-    private static String  specifiedNewKey;
-
-    /* custom relationship declaration and assignment*/
-    static final Relationship REL_SUCCESS = new Relationship.Builder().name(Constant.REL_SUCCESS_NAME)
-            .build();
-    static final Relationship REL_FAILURE = new Relationship.Builder().name(Constant.REL_FAILED_NAME).build();
+    private volatile String specifiedKey;
+    private volatile String specifiedNewKey;
+    /* custom buckets, null keeps the fixed ranges of Helper.convertToRange */
+    private volatile BucketTable bucketTable;
+    /* SpecifiedKey split into path segments, a single segment for a top-level field */
+    private volatile String[] fieldPath;
+    private volatile ObjectPool<StreamingRangeConverter> streamingConverters;
 
 
     static {
@@ -82,8 +90,42 @@ public class RangeConverter extends AbstractProcessor {
         SpecifiedNewKey = builder
                 .build();
     }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(Constant.BUCKET_BOUNDARIES_NAME);
+        builder.displayName(Constant.BUCKET_BOUNDARIES_NAME);
+        builder.description(Constant.BUCKET_BOUNDARIES_DESCRIPTION);
+        builder.required(false);
+        builder.addValidator(StandardValidators.NON_EMPTY_VALIDATOR);
+        BUCKET_BOUNDARIES = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(Constant.BUCKET_LABELS_NAME);
+        builder.displayName(Constant.BUCKET_LABELS_NAME);
+        builder.description(Constant.BUCKET_LABELS_DESCRIPTION);
+        builder.required(false);
+        builder.addValidator(StandardValidators.NON_EMPTY_VALIDATOR);
+        BUCKET_LABELS = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(Constant.PROCESSING_MODE_NAME);
+        builder.displayName(Constant.PROCESSING_MODE_NAME);
+        builder.description(Constant.RangeConverter_PROCESSING_MODE_DESCRIPTION);
+        builder.required(true);
+        builder.allowableValues(Constant.PROCESSING_MODE_TREE, Constant.PROCESSING_MODE_STREAMING, Constant.PROCESSING_MODE_AUTO);
+        builder.defaultValue(Constant.PROCESSING_MODE_TREE);
+        PROCESSING_MODE = builder
+                .build();
+    }
+
     private List<PropertyDescriptor> descriptors;
-    private Set<Relationship> relationships;
 
 
     /* processor initialization method */
@@ -92,25 +134,39 @@ public class RangeConverter extends AbstractProcessor {
 
         final List<PropertyDescriptor> propertyDescriptors = new ArrayList<>();
 
-        /* intRelationships and propertyDescriptors  ProcessorInitialization */
+        /* propertyDescriptors  ProcessorInitialization */
         propertyDescriptors.add(SpecifiedNewKey);
         propertyDescriptors.add(SpecifiedKey);
+        propertyDescriptors.add(BUCKET_BOUNDARIES);
+        propertyDescriptors.add(BUCKET_LABELS);
+        propertyDescriptors.add(PROCESSING_MODE);
+        addEngineDescriptors(propertyDescriptors);
+        addCommonDescriptors(propertyDescriptors);
         this.descriptors = Collections.unmodifiableList(propertyDescriptors);
-
-        final Set<Relationship> intRelationships = new HashSet<>();
-        intRelationships.add(REL_FAILURE);
-        intRelationships.add(REL_SUCCESS);
-        this.relationships = Collections.unmodifiableSet(intRelationships);
     }
 
     @Override
-    public Set<Relationship> getRelationships() {
-        return this.relationships;
+    public final List<PropertyDescriptor> getSupportedPropertyDescriptors() {
+        return descriptors;
     }
 
     @Override
-    public final List<PropertyDescriptor> getSupportedPropertyDescriptors() {
-        return descriptors;
+    protected Collection<ValidationResult> customValidate(final @NotNull ValidationContext validationContext) {
+        final List<ValidationResult> results = new ArrayList<>();
+        final String boundaries = validationContext.getProperty(BUCKET_BOUNDARIES).getValue();
+        if (boundaries != null) {
+            try {
+                BucketTable.parse(boundaries, validationContext.getProperty(BUCKET_LABELS).getValue());
+            } catch (IllegalArgumentException e) {
+                results.add(new ValidationResult.Builder()
+                        .subject(Constant.BUCKET_BOUNDARIES_NAME)
+                        .input(boundaries)
+                        .valid(false)
+                        .explanation(e.getMessage())
+                        .build());
+            }
+        }
+        return results;
     }
 
     @OnScheduled
@@ -120,68 +176,40 @@ public class RangeConverter extends AbstractProcessor {
         specifiedNewKey = context.getProperty(SpecifiedNewKey).getValue();
         getLogger().info("input values : specifiedKey {}, specifiedNewKey {} ", specifiedKey,specifiedNewKey );
 
-    }
-
-    /**
-     * @param context
-     * @param session
-     */
-    @Override
-    public void onTrigger(final ProcessContext context, final @NotNull ProcessSession session) throws NullPointerException {
-        getLogger().info("inside onTrigger method");
-        /* Getting flow file from session */
-        FlowFile inputFlowFile = session.get();
-
-        if (inputFlowFile == null) {
-            getLogger().info("input FlowFile null");
-            session.transfer((FlowFile) null, REL_FAILURE);
-            return;
-        }
-        if (inputFlowFile.getSize() == 0) {
-            getLogger().error("Empty measurements");
-            session.transfer((FlowFile) null, REL_FAILURE);
-            return;
+        /* labels are built and interned once, converting a value only searches the boundaries */
+        final String boundaries = context.getProperty(BUCKET_BOUNDARIES).getValue();
+        bucketTable = boundaries == null ? null : BucketTable.parse(boundaries, context.getProperty(BUCKET_LABELS).getValue());
+        if (bucketTable != null) {
+            getLogger().info("using {} buckets", bucketTable.size());
         }
 
+        fieldPath = Helper.parseFieldPath(specifiedKey);
+        configureEngine(context, context.getProperty(PROCESSING_MODE).getValue());
+        final String[] path = fieldPath;
+        final String newKey = specifiedNewKey;
+        final BucketTable buckets = bucketTable;
+        /* the converter reuses its value arrays, so a task borrows one for the length of a FlowFile */
+        streamingConverters = newPool("StreamingRangeConverter", context, () -> new StreamingRangeConverter(path, newKey, buckets), null);
+    }
 
-        try {
-            getLogger().info("reading json file from inputFlowFile");
-            String jsonContent = Helper.flowFileReader(inputFlowFile, session);
-            getLogger().info("jsonContent {}", jsonContent);
-
-            Gson gson = new Gson();
-            JsonObject jsonObject = gson.fromJson(jsonContent, JsonObject.class);
-            double inputValue = jsonObject.get(specifiedKey).getAsDouble();
-
-            String range = Helper.convertToRange(inputValue);
-            jsonObject.addProperty(specifiedNewKey, range);
-
-            String updatedJson = gson.toJson(jsonObject);
-            getLogger().info("Updated JSON: " + updatedJson);
-
-
-            getLogger().info("sessionTransfer .");
-            sessionTransfer(inputFlowFile, session, updatedJson);
-        }catch ( NullPointerException ex){
-            getLogger().info("Ran into Error while generating the json {}", ex);
-            session.transfer(inputFlowFile, REL_FAILURE);
-        }
-
+    @Override
+    protected void transform(InputStream inputStream, OutputStream outputStream) throws IOException {
+        transform(inputStream, outputStream, getEngine());
     }
 
-    private void sessionTransfer(FlowFile inputFlowFile, @NotNull ProcessSession session, String jsonContent) {
-        /*  Creating and writing session for REL_SUCCESS */
-        session.write(inputFlowFile, new OutputStreamCallback() {
-            @Override
-            public void process(OutputStream outputStream) throws IOException {
-                outputStream.write(jsonContent.getBytes());
+    @Override
+    protected void transform(InputStream inputStream, OutputStream outputStream, @NotNull Engine engine) throws IOException {
+        if (engine == Engine.STREAMING) {
+            /* numbers go from the token stream into primitive arrays, no JsonElement per value */
+            try (ObjectPool.Lease<StreamingRangeConverter> streamingConverter = streamingConverters.lease();
+                 JsonParser parser = createParser(inputStream);
+                 JsonGenerator generator = createGenerator(outputStream)) {
+                PhaseTimer.of(inputStream).setRecords(streamingConverter.get().convert(parser, generator));
             }
-        });
-
-        /* session transfer for REL_SUCCESS */
-        session.putAttribute(inputFlowFile, "filename", inputFlowFile.getId() + ".json");
-        session.transfer(inputFlowFile, REL_SUCCESS);
+            return;
+        }
+        /* a top-level array is converted element by element */
+        transformJsonObjects(inputStream, outputStream, jsonObject -> Helper.addRange(jsonObject, fieldPath, specifiedNewKey, bucketTable));
     }
 
 }
-
@@ -16,7 +16,7 @@
  */
 package org.example.processors.generic;
 
-import com.google.gson.Gson;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.google.gson.JsonObject;
 import org.apache.nifi.annotation.behavior.EventDriven;
 import org.apache.nifi.annotation.behavior.InputRequirement;
@@ -24,55 +24,122 @@ import org.apache.nifi.annotation.behavior.SideEffectFree;
 import org.apache.nifi.annotation.behavior.SupportsBatching;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.annotation.lifecycle.OnScheduled;
 import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
 import org.apache.nifi.flowfile.FlowFile;
 import org.apache.nifi.processor.*;
-import org.apache.nifi.processor.io.OutputStreamCallback;
+import org.apache.nifi.processor.util.StandardValidators;
 import org.example.processors.generic.util.Constant;
+import org.example.processors.generic.util.CustomValidator;
 import org.example.processors.generic.util.Helper;
+import org.example.processors.generic.util.MeteredInputStream;
+import org.example.processors.generic.util.MeteredOutputStream;
+import org.example.processors.generic.util.ObjectPool;
+import org.example.processors.generic.util.PhaseTimer;
+import org.example.processors.generic.util.ProcessorMetrics;
+import org.example.processors.generic.util.XmlPathFilter;
+import org.example.processors.generic.util.XmlStreamingConverter;
 import org.jetbrains.annotations.NotNull;
+import org.w3c.dom.Document;
 
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.time.format.DateTimeParseException;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
-import static org.example.processors.generic.util.Helper.convertXmlToJson;
 
 @Tags({"json,xml,reader"})
-@CapabilityDescription("json To Xml Reader")
+@CapabilityDescription("json To Xml Reader, in STREAMING mode the xml is read with StAX and json is written while reading, INCLUDE_PATHS converts only the selected subtrees, RECORD_ELEMENT writes every selected element as one NDJSON line, optionally split into FlowFiles of RECORDS_PER_FLOWFILE lines")
 @EventDriven
 @SupportsBatching
 @SideEffectFree
 @InputRequirement(InputRequirement.Requirement.INPUT_REQUIRED)
-public class XmlToJson extends AbstractProcessor {
+public class XmlToJson extends AbstractContentProcessor {
 
+    /* property builder function  */
+    static final PropertyDescriptor PROCESSING_MODE;
+    static final PropertyDescriptor INCLUDE_PATHS;
+    static final PropertyDescriptor RECORD_ELEMENT;
+    static final PropertyDescriptor RECORDS_PER_FLOWFILE;
 
-    /* custom relationship declaration and assignment*/
-    static final Relationship REL_SUCCESS = new Relationship.Builder().name(Constant.REL_SUCCESS_NAME)
-            .build();
-    static final Relationship REL_FAILURE = new Relationship.Builder().name(Constant.REL_FAILED_NAME).build();
+    private String processingMode;
+    /* compiled include paths, null converts the whole document */
+    private volatile XmlPathFilter includeFilter;
+    /* compiled record paths, null converts the document as one object */
+    private volatile XmlPathFilter recordFilter;
+    private volatile int recordsPerFlowFile;
+
+    /* document builders are not thread safe, each task borrows one and gives it back after the FlowFile */
+    private volatile ObjectPool<DocumentBuilder> documentBuilders;
+
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(Constant.PROCESSING_MODE_NAME);
+        builder.displayName(Constant.PROCESSING_MODE_NAME);
+        builder.description(Constant.PROCESSING_MODE_DESCRIPTION);
+        builder.required(true);
+        builder.allowableValues(Constant.PROCESSING_MODE_TREE, Constant.PROCESSING_MODE_STREAMING, Constant.PROCESSING_MODE_AUTO);
+        builder.defaultValue(Constant.PROCESSING_MODE_TREE);
+        PROCESSING_MODE = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(Constant.XmlToJson_INCLUDE_PATHS_NAME);
+        builder.displayName(Constant.XmlToJson_INCLUDE_PATHS_NAME);
+        builder.description(Constant.XmlToJson_INCLUDE_PATHS_DESCRIPTION);
+        builder.required(false);
+        builder.addValidator(CustomValidator::xmlPathValidator);
+        INCLUDE_PATHS = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(Constant.XmlToJson_RECORD_ELEMENT_NAME);
+        builder.displayName(Constant.XmlToJson_RECORD_ELEMENT_NAME);
+        builder.description(Constant.XmlToJson_RECORD_ELEMENT_DESCRIPTION);
+        builder.required(false);
+        builder.addValidator(CustomValidator::xmlPathValidator);
+        RECORD_ELEMENT = builder
+                .build();
+    }
+
+    static {
+        PropertyDescriptor.Builder builder = new PropertyDescriptor.Builder();
+        builder.name(Constant.XmlToJson_RECORDS_PER_FLOWFILE_NAME);
+        builder.displayName(Constant.XmlToJson_RECORDS_PER_FLOWFILE_NAME);
+        builder.description(Constant.XmlToJson_RECORDS_PER_FLOWFILE_DESCRIPTION);
+        builder.required(true);
+        builder.defaultValue("0");
+        builder.addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR);
+        RECORDS_PER_FLOWFILE = builder
+                .build();
+    }
 
 
     private List<PropertyDescriptor> descriptors;
-    private Set<Relationship> relationships;
 
 
     /* processor initialization method */
     @Override
     protected void init(final ProcessorInitializationContext context) {
-        final Set<Relationship> intRelationships = new HashSet<>();
-        intRelationships.add(REL_FAILURE);
-        intRelationships.add(REL_SUCCESS);
-        this.relationships = Collections.unmodifiableSet(intRelationships);
-    }
+        final List<PropertyDescriptor> propertyDescriptors = new ArrayList<>();
 
-    @Override
-    public Set<Relationship> getRelationships() {
-        return this.relationships;
+        /* propertyDescriptors  ProcessorInitialization */
+        propertyDescriptors.add(PROCESSING_MODE);
+        propertyDescriptors.add(INCLUDE_PATHS);
+        propertyDescriptors.add(RECORD_ELEMENT);
+        propertyDescriptors.add(RECORDS_PER_FLOWFILE);
+        addEngineDescriptors(propertyDescriptors);
+        addCommonDescriptors(propertyDescriptors);
+        this.descriptors = Collections.unmodifiableList(propertyDescriptors);
     }
 
     @Override
@@ -80,60 +147,188 @@ public class XmlToJson extends AbstractProcessor {
         return descriptors;
     }
 
+    @Override
+    protected Collection<ValidationResult> customValidate(final @NotNull ValidationContext validationContext) {
+        final List<ValidationResult> results = new ArrayList<>();
+        if (validationContext.getProperty(RECORD_ELEMENT).isSet() && validationContext.getProperty(INCLUDE_PATHS).isSet()) {
+            results.add(new ValidationResult.Builder()
+                    .subject(Constant.XmlToJson_RECORD_ELEMENT_NAME)
+                    .valid(false)
+                    .explanation(Constant.XmlToJson_RECORD_ELEMENT_VALIDATION_DESCRIPTION)
+                    .build());
+        }
+        return results;
+    }
+
+    @OnScheduled
+    public void onScheduled(final @NotNull ProcessContext context) {
+        // loading values from property files
+        processingMode = context.getProperty(PROCESSING_MODE).getValue();
+        String includePaths = context.getProperty(INCLUDE_PATHS).getValue();
+        String recordElement = context.getProperty(RECORD_ELEMENT).getValue();
+        recordsPerFlowFile = context.getProperty(RECORDS_PER_FLOWFILE).asInteger();
+        getLogger().info("input values : processingMode {}, includePaths {}, recordElement {}, recordsPerFlowFile {}",
+                processingMode, includePaths, recordElement, recordsPerFlowFile);
+        configureEngine(context, processingMode);
+        // paths are compiled here once instead of for every FlowFile
+        includeFilter = includePaths == null ? null : XmlPathFilter.compile(includePaths);
+        recordFilter = recordElement == null ? null : XmlPathFilter.compile(recordElement);
+        documentBuilders = newPool("DocumentBuilder", context, XmlToJson::createDocumentBuilder, DocumentBuilder::reset);
+    }
+
+    private static @NotNull DocumentBuilder createDocumentBuilder() {
+        try {
+            return Helper.createDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("Unable to create the xml document builder", e);
+        }
+    }
+
+    @Override
+    protected void processFlowFile(FlowFile inputFlowFile, @NotNull ProcessSession session) {
+        if (recordFilter != null && recordsPerFlowFile > 0) {
+            splitRecords(inputFlowFile, session);
+            return;
+        }
+        super.processFlowFile(inputFlowFile, session);
+    }
+
     /**
-     * @param context
+     * @apiNote streams the records of the FlowFile into new FlowFiles of at most RECORDS_PER_FLOWFILE lines while the
+     * xml is read, the incoming FlowFile is dropped once they are transferred and goes to failure on any error
+     * @param inputFlowFile
      * @param session
      */
-    @Override
-    public void onTrigger(final ProcessContext context, final @NotNull ProcessSession session) throws NullPointerException {
-        getLogger().info("inside onTrigger method");
-        /* Getting flow file from session */
-        FlowFile inputFlowFile = session.get();
-
-        if (inputFlowFile == null) {
-            getLogger().info("input FlowFile null");
-            session.transfer((FlowFile) null, REL_FAILURE);
+    private void splitRecords(FlowFile inputFlowFile, @NotNull ProcessSession session) {
+        final long bytesIn = inputFlowFile.getSize();
+        final boolean tapped = sampleDebugTap();
+        final String inputPreview = previewInput(tapped, inputFlowFile, session);
+        final PhaseTimer timer = new PhaseTimer();
+        final List<FlowFile> splits = new ArrayList<>();
+        long records = 0;
+        long bytesOut = 0;
+        try (InputStream inputStream = session.read(inputFlowFile);
+             InputStream contentStream = openInput(inputStream);
+             XmlStreamingConverter.RecordReader reader = XmlStreamingConverter.openRecords(new MeteredInputStream(contentStream, timer), recordFilter)) {
+            final long[] written = new long[1];
+            do {
+                written[0] = 0;
+                FlowFile split = session.create(inputFlowFile);
+                splits.add(split);
+                split = session.write(split, outputStream -> {
+                    try (OutputStream compressedStream = openOutput(outputStream)) {
+                        MeteredOutputStream meteredOutputStream = new MeteredOutputStream(compressedStream, timer);
+                        written[0] = writeRecords(reader, meteredOutputStream, recordsPerFlowFile);
+                        meteredOutputStream.flush();
+                    }
+                });
+                if (written[0] == 0) {
+                    // the previous split ended exactly on the last record
+                    splits.remove(splits.size() - 1);
+                    session.remove(split);
+                    break;
+                }
+                split = session.putAttribute(split, Constant.RECORD_COUNT_ATTRIBUTE, String.valueOf(written[0]));
+                splits.set(splits.size() - 1, split);
+                records += written[0];
+                bytesOut += split.getSize();
+            } while (written[0] == recordsPerFlowFile);
+        } catch (IOException | RuntimeException ex) {
+            getLogger().info("Ran into Error while splitting the xml records {}", ex);
+            for (FlowFile split : splits) {
+                session.remove(split);
+            }
+            getMetrics().recordFailure(session, ex);
+            transfer(inputFlowFile, session, REL_FAILURE, tapped, inputPreview);
             return;
         }
-        if (inputFlowFile.getSize() == 0) {
-            getLogger().error("Empty measurements");
-            session.transfer((FlowFile) null, REL_FAILURE);
-            return;
+        timer.stop();
+        timer.setRecords(records);
+        getMetrics().recordSuccess(session, timer, bytesIn, bytesOut);
+
+        /* session transfer for REL_SUCCESS, every split knows its place among the others */
+        final String fragmentIdentifier = UUID.randomUUID().toString();
+        final String originalFilename = inputFlowFile.getAttribute("filename");
+        for (int index = 0; index < splits.size(); index++) {
+            Map<String, String> attributes = new HashMap<>();
+            attributes.put(Constant.FRAGMENT_IDENTIFIER_ATTRIBUTE, fragmentIdentifier);
+            attributes.put(Constant.FRAGMENT_INDEX_ATTRIBUTE, String.valueOf(index));
+            attributes.put(Constant.FRAGMENT_COUNT_ATTRIBUTE, String.valueOf(splits.size()));
+            if (originalFilename != null) {
+                attributes.put(Constant.SEGMENT_ORIGINAL_FILENAME_ATTRIBUTE, originalFilename);
+            }
+            FlowFile split = session.putAllAttributes(splits.get(index), attributes);
+            split = putFormatAttributes(split, session);
+            transfer(split, session, REL_SUCCESS, tapped, inputPreview);
+        }
+        if (splits.isEmpty()) {
+            getLogger().info("no record element found in {}", inputFlowFile);
         }
+        session.remove(inputFlowFile);
+    }
 
-        try {
-            getLogger().info("reading xml file from inputFlowFile");
-            String inputXml = Helper.flowFileReader(inputFlowFile, session);
-            getLogger().info("inputXml {}", inputXml);
-
-            if (inputXml.isEmpty()) throw new NullPointerException("input xml is empty");
-            JsonObject convertedValue = convertXmlToJson(inputXml);
-
-            Gson finalGson = new Gson();
-            String updatedJson = finalGson.toJson(convertedValue);
-            getLogger().info("Updated JSON: " + updatedJson);
-
-            getLogger().info("sessionTransfer .");
-            sessionTransfer(inputFlowFile, session, updatedJson);
-        }catch (NullPointerException | DateTimeParseException ex){
-            getLogger().info("Ran into Error while generating the json {}", ex);
-            session.transfer(inputFlowFile, REL_FAILURE);
+    /**
+     * @apiNote writes the next records of the reader as NDJSON lines, or as a sequence of binary values
+     * @param reader
+     * @param outputStream
+     * @param limit largest number of records written, 0 for all of them
+     * @return number of records written
+     */
+    private long writeRecords(XmlStreamingConverter.@NotNull RecordReader reader, OutputStream outputStream, long limit) throws IOException {
+        final boolean lines = !getOutputFormat().isBinary();
+        long count = 0;
+        try (JsonGenerator generator = createGenerator(outputStream)) {
+            // lines are separated by the newline written after each record, not by the generator
+            generator.setRootValueSeparator(null);
+            while ((limit == 0 || count < limit) && reader.next(generator)) {
+                if (lines) {
+                    generator.writeRaw('\n');
+                }
+                count++;
+            }
         }
+        return count;
+    }
+
+    @Override
+    protected long bufferedBytes(long contentBytes, @NotNull Engine engine) {
+        /* records and include paths are written while the xml is read, whatever the engine */
+        return recordFilter != null || includeFilter != null ? 0 : super.bufferedBytes(contentBytes, engine);
     }
 
-    private void sessionTransfer(FlowFile inputFlowFile, @NotNull ProcessSession session, String jsonContent) {
-        /*  Creating and writing session for REL_SUCCESS */
-        session.write(inputFlowFile, new OutputStreamCallback() {
-            @Override
-            public void process(OutputStream outputStream) throws IOException {
-                outputStream.write(jsonContent.getBytes());
+    @Override
+    protected void transform(InputStream inputStream, OutputStream outputStream) throws IOException {
+        transform(inputStream, outputStream, getEngine());
+    }
+
+    @Override
+    protected void transform(InputStream inputStream, OutputStream outputStream, @NotNull Engine engine) throws IOException {
+        if (recordFilter != null) {
+            /* one record at a time, repeated elements become lines instead of overwriting each other in one object */
+            try (XmlStreamingConverter.RecordReader reader = XmlStreamingConverter.openRecords(inputStream, recordFilter)) {
+                PhaseTimer.of(inputStream).setRecords(writeRecords(reader, outputStream, 0));
             }
-        });
+            return;
+        }
+        if (engine == Engine.STREAMING || includeFilter != null) {
+            /*  json is written to the content repository while the xml is still being read, a DOM would hold the skipped subtrees too.
+                repeated siblings are written as repeated names instead of the last one only */
+            try (JsonGenerator generator = createGenerator(outputStream)) {
+                XmlStreamingConverter.convertXmlToJson(inputStream, generator, includeFilter);
+            }
+            return;
+        }
 
-        /* session transfer for REL_SUCCESS */
-        session.putAttribute(inputFlowFile, "filename", inputFlowFile.getId() + ".json");
-        session.transfer(inputFlowFile, REL_SUCCESS);
+        PhaseTimer timer = PhaseTimer.of(inputStream);
+        ProcessorMetrics.Phase previous = timer.switchTo(ProcessorMetrics.Phase.PARSE);
+        Document document;
+        try (ObjectPool.Lease<DocumentBuilder> documentBuilder = documentBuilders.lease()) {
+            document = Helper.parseXml(inputStream, documentBuilder.get());
+        } finally {
+            timer.switchTo(previous);
+        }
+        JsonObject convertedValue = Helper.convertElementToJson(document.getDocumentElement());
+        writeJson(convertedValue, outputStream);
     }
 
 }
-
@@ -0,0 +1,143 @@
+package org.example.processors.generic.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Fixed size map safe for concurrent use that drops least recently used entries when full. Entries are spread over
+ * segments by hash, each segment is an access ordered {@link LinkedHashMap} behind its own lock, so threads only wait
+ * for each other when they hit the same segment, and a full segment evicts its own eldest entry. The segments together
+ * never hold more than the maximum size.
+ * @param <K> key
+ * @param <V> value
+ */
+public class BoundedLruCache<K, V> {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment<K, V>[] segments;
+    private final int mask;
+    private final int maxSize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public BoundedLruCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("cache size must be at least 1, got " + maxSize);
+        }
+        int count = 1;
+        while (count < MAX_SEGMENTS && count * 2 <= maxSize) {
+            count *= 2;
+        }
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            /* the remainder goes to the first segments, so the capacities add up to exactly maxSize */
+            segments[i] = new Segment<>(maxSize / count + (i < maxSize % count ? 1 : 0));
+        }
+        this.mask = count - 1;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @apiNote cached value of the key, computed and cached on a miss. The function runs outside the segment lock,
+     * two threads missing the same key at the same time may both compute it
+     * @param key
+     * @param function
+     * @return V
+     */
+    public V computeIfAbsent(@NotNull K key, @NotNull Function<? super K, ? extends V> function) {
+        Segment<K, V> segment = segmentFor(key);
+        V value;
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        value = function.apply(key);
+        if (value != null) {
+            synchronized (segment) {
+                segment.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @apiNote cached value of the key, null when it is not cached
+     * @param key
+     * @return V
+     */
+    public @Nullable V get(@NotNull K key) {
+        Segment<K, V> segment = segmentFor(key);
+        V value;
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    public void put(@NotNull K key, @NotNull V value) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /* lookups answered from the cache since it was created */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /* lookups that had to compute the value since the cache was created */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private @NotNull Segment<K, V> segmentFor(@NotNull K key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    /* access ordered map that evicts its eldest entry once above its capacity */
+    private static final class Segment<K, V> extends LinkedHashMap<K, V> {
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
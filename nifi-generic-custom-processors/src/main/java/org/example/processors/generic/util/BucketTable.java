@@ -0,0 +1,176 @@
+package org.example.processors.generic.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Sorted bucket boundaries with one label per bucket, built once when the processor is scheduled.
+ * n boundaries make n + 1 buckets: below the first boundary, one between each pair of boundaries (lower bound
+ * included) and from the last boundary up, so every value has a bucket. Looking up a label is a binary search over
+ * a primitive array and returns one of the precomputed labels, nothing is allocated per value.
+ */
+public class BucketTable {
+
+    private static final String LINEAR_PREFIX = "linear:";
+    private static final String LOG_PREFIX = "log:";
+    /* generated boundaries are rounded so labels read 0.3 and 100, not 0.30000000000000004 and 99.99999999999999 */
+    private static final MathContext GENERATED_PRECISION = new MathContext(12);
+
+    private final double[] boundaries;
+    private final String[] labels;
+
+    public BucketTable(double @NotNull [] boundaries, String @NotNull [] labels) {
+        if (boundaries.length == 0) {
+            throw new IllegalArgumentException("at least one bucket boundary is required");
+        }
+        if (labels.length != boundaries.length + 1) {
+            throw new IllegalArgumentException(boundaries.length + " boundaries need " + (boundaries.length + 1) + " labels, got " + labels.length);
+        }
+        for (int i = 0; i < boundaries.length; i++) {
+            if (Double.isNaN(boundaries[i]) || (i > 0 && boundaries[i] <= boundaries[i - 1])) {
+                throw new IllegalArgumentException("bucket boundaries must be strictly increasing numbers");
+            }
+        }
+        this.boundaries = boundaries.clone();
+        this.labels = new String[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            this.labels[i] = labels[i].intern();
+        }
+    }
+
+    /**
+     * @apiNote builds the table from the property values, boundaries are either a comma separated list such as
+     * {@code 0,10,50,100}, {@code linear:start,end,buckets} for even buckets or {@code log:start,end,buckets} for buckets
+     * growing by the same factor. Without labels every bucket is labelled by its bounds: {@code <0}, {@code 0-10}, {@code >=100}
+     * @param boundarySpec
+     * @param labelSpec comma separated labels, one more than there are boundaries, or null
+     * @return BucketTable
+     */
+    public static @NotNull BucketTable parse(@NotNull String boundarySpec, @Nullable String labelSpec) {
+        double[] boundaries = parseBoundaries(boundarySpec.trim());
+        String[] labels = labelSpec == null || labelSpec.trim().isEmpty() ? defaultLabels(boundaries) : splitTrimmed(labelSpec);
+        return new BucketTable(boundaries, labels);
+    }
+
+    /**
+     * @apiNote label of the bucket holding the value, O(log n) in the number of boundaries
+     * @param value
+     * @return String
+     */
+    public @NotNull String label(double value) {
+        if (Double.isNaN(value)) {
+            throw new NumberFormatException("NaN has no bucket");
+        }
+        /* number of boundaries lower or equal to the value is the bucket index */
+        int low = 0;
+        int high = boundaries.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (boundaries[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return labels[low];
+    }
+
+    /**
+     * @apiNote bulk variant of {@link #label(double)}, every value takes the same number of search steps with no
+     * data dependent branch, so the loop over the values stays tight
+     * @param values
+     * @param length number of values to place
+     * @param indexes receives the bucket index of each value, see {@link #label(int)}
+     */
+    public void indexes(double @NotNull [] values, int length, int @NotNull [] indexes) {
+        final double[] bounds = boundaries;
+        final int count = bounds.length;
+        for (int i = 0; i < length; i++) {
+            double value = values[i];
+            int base = 0;
+            int remaining = count;
+            while (remaining > 1) {
+                int half = remaining >>> 1;
+                base = bounds[base + half] <= value ? base + half : base;
+                remaining -= half;
+            }
+            indexes[i] = bounds[base] <= value ? base + 1 : base;
+        }
+    }
+
+    /**
+     * @apiNote label of a bucket index
+     * @param index
+     * @return String
+     */
+    public @NotNull String label(int index) {
+        return labels[index];
+    }
+
+    public int size() {
+        return labels.length;
+    }
+
+    private static double @NotNull [] parseBoundaries(@NotNull String boundarySpec) {
+        if (boundarySpec.startsWith(LINEAR_PREFIX) || boundarySpec.startsWith(LOG_PREFIX)) {
+            boolean log = boundarySpec.startsWith(LOG_PREFIX);
+            String[] parts = splitTrimmed(boundarySpec.substring(log ? LOG_PREFIX.length() : LINEAR_PREFIX.length()));
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("expected start,end,buckets after " + (log ? LOG_PREFIX : LINEAR_PREFIX));
+            }
+            return generateBoundaries(log, Double.parseDouble(parts[0]), Double.parseDouble(parts[1]), Integer.parseInt(parts[2]));
+        }
+        String[] parts = splitTrimmed(boundarySpec);
+        double[] boundaries = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            boundaries[i] = Double.parseDouble(parts[i]);
+        }
+        return boundaries;
+    }
+
+    /* buckets + 1 boundaries from start to end, evenly spaced or growing by a constant factor */
+    private static double @NotNull [] generateBoundaries(boolean log, double start, double end, int buckets) {
+        if (buckets < 1 || !(end > start)) {
+            throw new IllegalArgumentException("generated buckets need end > start and at least one bucket");
+        }
+        if (log && start <= 0) {
+            throw new IllegalArgumentException("log buckets need a positive start");
+        }
+        double[] boundaries = new double[buckets + 1];
+        for (int i = 0; i <= buckets; i++) {
+            double boundary = log
+                    ? start * Math.pow(end / start, (double) i / buckets)
+                    : start + (end - start) * i / buckets;
+            boundaries[i] = new BigDecimal(boundary).round(GENERATED_PRECISION).doubleValue();
+        }
+        return boundaries;
+    }
+
+    private static String @NotNull [] defaultLabels(double @NotNull [] boundaries) {
+        String[] labels = new String[boundaries.length + 1];
+        labels[0] = "<" + format(boundaries[0]);
+        for (int i = 1; i < boundaries.length; i++) {
+            labels[i] = format(boundaries[i - 1]) + "-" + format(boundaries[i]);
+        }
+        labels[boundaries.length] = ">=" + format(boundaries[boundaries.length - 1]);
+        return labels;
+    }
+
+    private static @NotNull String format(double value) {
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "Infinity" : "-Infinity";
+        }
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+
+    private static String @NotNull [] splitTrimmed(@NotNull String value) {
+        String[] parts = value.split(",");
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = parts[i].trim();
+        }
+        return parts;
+    }
+}
@@ -0,0 +1,133 @@
+package org.example.processors.generic.util;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of the content, applied while the content streams so a compressed FlowFile is read and written once
+ * instead of going through a CompressContent processor on each side. Compressed input is recognized from its magic
+ * bytes, {@code 1F 8B} for gzip and {@code 28 B5 2F FD} for a zstd frame, neither of which starts json, xml, CBOR or
+ * Smile content. The streams handed out here can be closed to release their native memory, the session streams they
+ * wrap stay open.
+ */
+public enum Compression {
+
+    NONE("", null),
+    GZIP(".gz", "application/gzip"),
+    ZSTD(".zst", "application/zstd");
+
+    private static final int MAGIC_LENGTH = 4;
+    private static final int GZIP_BUFFER_SIZE = 8192;
+
+    private final String extension;
+    private final String mimeType;
+
+    Compression(@NotNull String extension, @Nullable String mimeType) {
+        this.extension = extension;
+        this.mimeType = mimeType;
+    }
+
+    /* file name extension added to the name of the content, with its dot, empty when not compressed */
+    public @NotNull String getExtension() {
+        return extension;
+    }
+
+    /* mime type of compressed content, null when not compressed */
+    public @Nullable String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * @apiNote compression of the content the stream is positioned on, the stream is left where it was
+     * @param inputStream stream with mark support
+     * @return Compression
+     */
+    public static @NotNull Compression detect(@NotNull InputStream inputStream) throws IOException {
+        inputStream.mark(MAGIC_LENGTH);
+        int[] magic = new int[MAGIC_LENGTH];
+        try {
+            for (int i = 0; i < MAGIC_LENGTH; i++) {
+                magic[i] = inputStream.read();
+                if (magic[i] < 0) {
+                    break;
+                }
+            }
+        } finally {
+            inputStream.reset();
+        }
+        if (magic[0] == 0x1F && magic[1] == 0x8B) {
+            return GZIP;
+        }
+        if (magic[0] == 0x28 && magic[1] == 0xB5 && magic[2] == 0x2F && magic[3] == 0xFD) {
+            return ZSTD;
+        }
+        return NONE;
+    }
+
+    /**
+     * @apiNote the uncompressed content of the stream whatever its compression, buffered with mark support so the
+     * {@link DataFormat} can be detected. Closing it leaves the given stream open
+     * @param inputStream
+     * @return InputStream
+     */
+    public static @NotNull InputStream decompressing(@NotNull InputStream inputStream) throws IOException {
+        BufferedInputStream buffered = buffered(inputStream);
+        return detect(buffered).decompressing(buffered);
+    }
+
+    /**
+     * @apiNote the stream buffered with mark support so its compression can be detected. Closing it leaves the given
+     * stream open
+     * @param inputStream
+     * @return BufferedInputStream
+     */
+    public static @NotNull BufferedInputStream buffered(@NotNull InputStream inputStream) {
+        return new BufferedInputStream(CloseShieldInputStream.wrap(inputStream));
+    }
+
+    /**
+     * @apiNote the uncompressed content of a buffered stream compressed this way, buffered with mark support
+     * @param buffered stream from {@link #buffered(InputStream)}
+     * @return InputStream
+     */
+    public @NotNull InputStream decompressing(@NotNull BufferedInputStream buffered) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new BufferedInputStream(new GZIPInputStream(buffered));
+            case ZSTD:
+                return new BufferedInputStream(new ZstdInputStream(buffered));
+            default:
+                return buffered;
+        }
+    }
+
+    /**
+     * @apiNote stream compressing what is written into the given stream. Closing it writes the end of the compressed
+     * content and leaves the given stream open
+     * @param outputStream
+     * @return OutputStream
+     */
+    public @NotNull OutputStream compressing(@NotNull OutputStream outputStream) throws IOException {
+        OutputStream shielded = CloseShieldOutputStream.wrap(outputStream);
+        switch (this) {
+            case GZIP:
+                // no sync flush, a flush by the writer must not cut the deflate stream into small blocks
+                return new GZIPOutputStream(shielded, GZIP_BUFFER_SIZE);
+            case ZSTD:
+                return new ZstdOutputStream(shielded);
+            default:
+                return shielded;
+        }
+    }
+}
@@ -9,6 +9,8 @@ public class Constant {
     }
     public static final String REL_FAILED_NAME = "Failed";
     public static final String REL_SUCCESS_NAME = "Success";
+    public static final String REL_DEBUG_NAME = "debug";
+    public static final String REL_DEBUG_DESCRIPTION = "sampled copies of processed FlowFiles, only present when DEBUG_TAP is RELATIONSHIP";
     public static final String KEY_NAMES = "KEYS";
     public static final String KEY_NAMES_DESCRIPTION = "coma separated key names";
     public static final String KEY_NAMES_PROPERTY_EXAMPLE = "AD,AF,BG";
@@ -24,6 +26,7 @@ public class Constant {
     public static final String NEW_KEY_NAMES_DISPLAY = "NEW_KEY_NAMES";
     public static final String NEW_KEY_NAMES_DESCRIPTION = "coma separated new Json field names to be created";
     public static final String NEW_KEY_NAMES_PROPERTY_EXAMPLE = "cc_newField,cc_newField2";
+    public static final String NEW_KEY_NAMES_VALIDATION_DESCRIPTION = "NEW_KEY_NAMES must have as many names as KEY_TO_CHECK";
     public static final String VALIDATION_RESULT_DESCRIPTION = "Input must be in the format: AA,AF,FG";
 
     public static final String RANGE_REGEX_NAME = "REGEX_NAME";
@@ -32,11 +35,127 @@ public class Constant {
     public static final String RANGE_FIELD_NAME = "FIELD_NAME";
     public static final String RANGE_FIELD_DESCRIPTION = "Json Field Name";
     public static final String RANGE_FIELD_PROPERTY_EXAMPLE = "cc_merch_name";
+    public static final String BUCKET_BOUNDARIES_NAME = "BUCKET_BOUNDARIES";
+    public static final String BUCKET_BOUNDARIES_DESCRIPTION = "increasing bucket boundaries, either a list such as 0,10,50,100, linear:start,end,buckets or log:start,end,buckets. Values below the first and from the last boundary get open-ended buckets. When empty values between 0 and 1 are put in ten buckets of width 10";
+    public static final String BUCKET_LABELS_NAME = "BUCKET_LABELS";
+    public static final String BUCKET_LABELS_DESCRIPTION = "coma separated bucket labels, one more than there are boundaries, by default the bounds of each bucket such as <0, 0-10 and >=100";
     public static final String JSONRegexMatcher_REGEX_NAME = "REGEX_NAME";
     public static final String JSONRegexMatcher_REGEX_NAMES_DESCRIPTION = "Regex Pattern";
     public static final String JSONRegexMatcher_REGEX_NAMES_PROPERTY_EXAMPLE = "@(.*)$";
     public static final String JSONRegexMatcher_FIELD_NAME = "FIELD_NAME";
-    public static final String JSONRegexMatcher_FIELD_DESCRIPTION = "Json Field Name";
+    public static final String JSONRegexMatcher_FIELD_DESCRIPTION = "Json Field Name, a JSON Pointer such as /user/email or a JSONPath such as $.items[*].email for nested fields";
     public static final String JSONRegexMatcher_FIELD_PROPERTY_EXAMPLE = "cc_merch_name";
+    public static final String JSONRegexMatcher_DYNAMIC_NAME = "Json Field Name";
+    public static final String JSONRegexMatcher_DYNAMIC_VALUE = "Regex Pattern";
+    public static final String JSONRegexMatcher_DYNAMIC_DESCRIPTION = "additional json field, JSON Pointer or JSONPath to normalise with the given regex pattern, applied in the same parse as FIELD_NAME";
+    public static final String JSONRegexMatcher_CACHE_SIZE_NAME = "REGEX_CACHE_SIZE";
+    public static final String JSONRegexMatcher_CACHE_SIZE_DESCRIPTION = "maximum number of input values whose regex result is kept per rule, least recently used values are dropped first, 0 runs the regex for every value";
+    public static final String JSONRegexMatcher_CACHE_SIZE_DEFAULT = "0";
+    public static final String REGEX_CACHE_HITS_COUNTER = "Regex Cache Hits";
+    public static final String REGEX_CACHE_MISSES_COUNTER = "Regex Cache Misses";
+    public static final String JSONRegexMatcher_PROCESSING_MODE_DESCRIPTION = "TREE loads the whole document into memory, STREAMING copies tokens from input to output and only looks into the subtrees the field paths lead to, AUTO takes TREE for FlowFiles up to STREAMING_THRESHOLD while the memory budget of the node has room for them and STREAMING otherwise";
+    public static final String JSON_PATH_VALIDATION_DESCRIPTION = "Input must be a field name, a JSON Pointer or a JSONPath made of .name, ['name'], [index], .* and [*] steps";
+
+    public static final String JsonTransformChain_OPERATIONS_NAME = "OPERATIONS";
+    public static final String JsonTransformChain_OPERATIONS_DESCRIPTION = "coma separated operations applied in order to a single parse of the document: REMOVE_NULLS (JsonNullRemover), KEY_MAP (KeyMapReplacer), REGEX (JSONRegexMatcher) and RANGE (RangeConverter)";
+    public static final String JsonTransformChain_OPERATIONS_PROPERTY_EXAMPLE = "REMOVE_NULLS,KEY_MAP,REGEX,RANGE";
+    public static final String JsonTransformChain_OPERATIONS_VALIDATION_DESCRIPTION = "Input must be a coma separated list of REMOVE_NULLS, KEY_MAP, REGEX and RANGE";
+    public static final String OPERATION_REMOVE_NULLS = "REMOVE_NULLS";
+    public static final String OPERATION_KEY_MAP = "KEY_MAP";
+    public static final String OPERATION_REGEX = "REGEX";
+    public static final String OPERATION_RANGE = "RANGE";
+    public static final String JsonTransformChain_REGEX_PATTERN_NAME = "REGEX_PATTERN";
+    public static final String JsonTransformChain_REGEX_PATTERN_DESCRIPTION = "Regex Pattern of the REGEX operation";
+    public static final String JsonTransformChain_REGEX_FIELD_NAME = "REGEX_FIELD";
+    public static final String JsonTransformChain_REGEX_FIELD_DESCRIPTION = "Json Field Name, JSON Pointer or JSONPath of the REGEX operation";
+    public static final String JsonTransformChain_RANGE_FIELD_NAME = "RANGE_FIELD";
+    public static final String JsonTransformChain_RANGE_FIELD_DESCRIPTION = "Json Field Name or JSON Pointer of the number or numeric array converted by the RANGE operation";
+    public static final String JsonTransformChain_RANGE_NEW_FIELD_NAME = "RANGE_NEW_FIELD";
+    public static final String JsonTransformChain_RANGE_NEW_FIELD_DESCRIPTION = "Json Field Name the RANGE operation adds";
+    public static final String JsonTransformChain_MISSING_PROPERTY_DESCRIPTION = "required by the %s operation";
+
+    public static final String XmlToJson_INCLUDE_PATHS_NAME = "INCLUDE_PATHS";
+    public static final String XmlToJson_INCLUDE_PATHS_DESCRIPTION = "coma separated element paths such as /Envelope/Body/GetOrderResponse or //Order, only the selected elements and the elements leading to them are converted, other subtrees are skipped while reading. When set the xml is always read with StAX";
+    public static final String XML_PATH_VALIDATION_DESCRIPTION = "Input must be coma separated paths starting with / made of element names, * and //";
+    public static final String XmlToJson_RECORD_ELEMENT_NAME = "RECORD_ELEMENT";
+    public static final String XmlToJson_RECORD_ELEMENT_DESCRIPTION = "coma separated element paths such as //transaction, every selected element is converted as it is read and written as one line of NDJSON, elements around the records are skipped and an element inside a record stays part of it. When set the xml is always read with StAX";
+    public static final String XmlToJson_RECORDS_PER_FLOWFILE_NAME = "RECORDS_PER_FLOWFILE";
+    public static final String XmlToJson_RECORDS_PER_FLOWFILE_DESCRIPTION = "0 writes every record into the content of the FlowFile, N splits the records into new FlowFiles of at most N lines carrying the fragment attributes, the incoming FlowFile is dropped once its records are transferred";
+    public static final String XmlToJson_RECORD_ELEMENT_VALIDATION_DESCRIPTION = "RECORD_ELEMENT and INCLUDE_PATHS cannot be used together";
+    public static final String FRAGMENT_IDENTIFIER_ATTRIBUTE = "fragment.identifier";
+    public static final String FRAGMENT_INDEX_ATTRIBUTE = "fragment.index";
+    public static final String FRAGMENT_COUNT_ATTRIBUTE = "fragment.count";
+    public static final String SEGMENT_ORIGINAL_FILENAME_ATTRIBUTE = "segment.original.filename";
+    public static final String RECORD_COUNT_ATTRIBUTE = "record.count";
+
+    public static final String PROCESSING_MODE_NAME = "PROCESSING_MODE";
+    public static final String PROCESSING_MODE_DESCRIPTION = "TREE loads the whole document into memory, STREAMING moves tokens from input to output with bounded memory, AUTO takes TREE for FlowFiles up to STREAMING_THRESHOLD while the memory budget of the node has room for them and STREAMING otherwise";
+    public static final String PROCESSING_MODE_TREE = "TREE";
+    public static final String PROCESSING_MODE_STREAMING = "STREAMING";
+    public static final String PROCESSING_MODE_NDJSON = "NDJSON";
+    public static final String PROCESSING_MODE_SPLICE = "SPLICE";
+    public static final String PROCESSING_MODE_AUTO = "AUTO";
+    public static final String STREAMING_THRESHOLD_NAME = "STREAMING_THRESHOLD";
+    public static final String STREAMING_THRESHOLD_DESCRIPTION = "in AUTO processing mode, FlowFiles larger than this are always streamed. Compressed FlowFiles are streamed whatever their size, their size once decompressed is not known before they are read. Smaller ones are loaded as trees while the memory budget of the node, the org.example.processors.generic.memoryBudget system property in bytes (256 MB by default), has room for them";
+    public static final String STREAMING_THRESHOLD_DEFAULT = "8 MB";
+    public static final String RangeConverter_PROCESSING_MODE_DESCRIPTION = "TREE loads the whole document into memory, STREAMING copies tokens from input to output and reads the numbers at the field path straight into primitive arrays, suited to large numeric arrays, AUTO takes TREE for FlowFiles up to STREAMING_THRESHOLD while the memory budget of the node has room for them and STREAMING otherwise";
+    public static final String KeyMapReplacer_PROCESSING_MODE_DESCRIPTION = "TREE loads the whole document into memory and writes it back out, SPLICE scans the raw bytes only for the lookup keys and copies them through untouched, inserting the new fields before the closing brace. Ignored when a Record Reader is set";
+    public static final String JsonNullRemover_PROCESSING_MODE_DESCRIPTION = "TREE loads the whole document into memory, STREAMING moves tokens from input to output with bounded memory, NDJSON cleans one json document per line, chunks of lines in parallel, AUTO takes TREE for FlowFiles up to STREAMING_THRESHOLD while the memory budget of the node has room for them and STREAMING otherwise";
+
+    public static final String PARALLELISM_NAME = "PARALLELISM";
+    public static final String PARALLELISM_DESCRIPTION = "number of threads cleaning NDJSON chunks of one FlowFile, 0 uses every available core";
+    public static final String PARALLELISM_DEFAULT = "0";
+    public static final String CHUNK_SIZE_NAME = "CHUNK_SIZE";
+    public static final String CHUNK_SIZE_DESCRIPTION = "NDJSON content is cut into chunks of whole lines of at least this size, each chunk is one parallel task";
+    public static final String CHUNK_SIZE_DEFAULT = "1 MB";
+
+    public static final String BATCH_SIZE_NAME = "BATCH_SIZE";
+    public static final String BATCH_SIZE_DESCRIPTION = "maximum number of FlowFiles pulled from the queue and processed per trigger";
+    public static final String BATCH_SIZE_DEFAULT = "1";
+
+    public static final String LATENCY_HISTOGRAMS_NAME = "LATENCY_HISTOGRAMS";
+    public static final String LATENCY_HISTOGRAMS_DESCRIPTION = "when true every phase of every FlowFile is also counted in a latency bucket, published as counters next to the phase totals";
+    public static final String LATENCY_HISTOGRAMS_DEFAULT = "false";
+    public static final String EMPTY_CONTENT_CAUSE = "EmptyContent";
+
+    public static final String DEBUG_TAP_NAME = "DEBUG_TAP";
+    public static final String DEBUG_TAP_DESCRIPTION = "what happens to sampled FlowFiles: NONE, RELATIONSHIP copies them to the debug relationship, PREVIEW logs the start of their input and output";
+    public static final String DEBUG_TAP_NONE = "NONE";
+    public static final String DEBUG_TAP_RELATIONSHIP = "RELATIONSHIP";
+    public static final String DEBUG_TAP_PREVIEW = "PREVIEW";
+    public static final String DEBUG_SAMPLE_RATE_NAME = "DEBUG_SAMPLE_RATE";
+    public static final String DEBUG_SAMPLE_RATE_DESCRIPTION = "share of FlowFiles tapped, from 0 (none) to 1 (all)";
+    public static final String DEBUG_SAMPLE_RATE_DEFAULT = "0.01";
+    public static final String DEBUG_SAMPLE_RATE_VALIDATION_DESCRIPTION = "Input must be a number between 0 and 1";
+    public static final String DEBUG_PREVIEW_LENGTH_NAME = "DEBUG_PREVIEW_LENGTH";
+    public static final String DEBUG_PREVIEW_LENGTH_DESCRIPTION = "number of bytes of input and output shown in a PREVIEW";
+    public static final String DEBUG_PREVIEW_LENGTH_DEFAULT = "256";
+    public static final String DEBUG_TAP_ROUTE_ATTRIBUTE = "debug.tap.route";
+    public static final String OUTPUT_FORMAT_NAME = "OUTPUT_FORMAT";
+    public static final String OUTPUT_FORMAT_DESCRIPTION = "encoding of the content written, JSON text or the binary CBOR and SMILE encodings. The input encoding is recognized from the first bytes of the content, so binary content from an earlier processor is read without text parsing";
+    public static final String MIME_TYPE_ATTRIBUTE = "mime.type";
+    public static final String OUTPUT_COMPRESSION_NAME = "OUTPUT_COMPRESSION";
+    public static final String OUTPUT_COMPRESSION_DESCRIPTION = "compression of the content written, applied while it is written. gzip and zstd input is recognized from its first bytes and decompressed while it is read, whatever this property is set to";
+
+    public static final String LOOKUP_FILE_NAME = "LOOKUP_FILE";
+    public static final String LOOKUP_FILE_DESCRIPTION = "UTF-8 file with one key,value entry per line, memory mapped and used instead of KEYS and VALUES when set";
+    public static final String LOOKUP_RELOAD_INTERVAL_NAME = "LOOKUP_RELOAD_INTERVAL";
+    public static final String LOOKUP_RELOAD_INTERVAL_DESCRIPTION = "how often the lookup file is checked for changes, a changed file is loaded in the background and swapped in atomically";
+    public static final String LOOKUP_RELOAD_INTERVAL_DEFAULT = "10 sec";
+    public static final String LOOKUP_CACHE_SERVICE_NAME = "LOOKUP_CACHE_SERVICE";
+    public static final String LOOKUP_CACHE_SERVICE_DESCRIPTION = "Distributed Map Cache Client holding the key,value entries, shared by every node and used instead of KEYS and VALUES when set";
+    public static final String NEAR_CACHE_SIZE_NAME = "NEAR_CACHE_SIZE";
+    public static final String NEAR_CACHE_SIZE_DESCRIPTION = "maximum number of entries of the LOOKUP_CACHE_SERVICE kept locally, least recently used entries are dropped first";
+    public static final String NEAR_CACHE_SIZE_DEFAULT = "10000";
+    public static final String NEAR_CACHE_TTL_NAME = "NEAR_CACHE_TTL";
+    public static final String NEAR_CACHE_TTL_DESCRIPTION = "how long a locally kept entry, or the absence of a key, is used before the LOOKUP_CACHE_SERVICE is asked again";
+    public static final String NEAR_CACHE_TTL_DEFAULT = "1 min";
+    public static final String LOOKUP_SOURCE_VALIDATION_DESCRIPTION = "LOOKUP_FILE and LOOKUP_CACHE_SERVICE cannot be used together";
+
+    public static final String RECORD_READER_NAME = "RECORD_READER";
+    public static final String RECORD_READER_DESCRIPTION = "Record Reader for the incoming records, when set every record of the FlowFile is enriched instead of a single json object";
+    public static final String RECORD_WRITER_NAME = "RECORD_WRITER";
+    public static final String RECORD_WRITER_DESCRIPTION = "Record Writer for the enriched records";
+    public static final String RECORD_READER_WRITER_VALIDATION_DESCRIPTION = "RECORD_READER and RECORD_WRITER must be set together";
 
 }
@@ -4,7 +4,10 @@ import org.apache.nifi.components.ValidationContext;
 import org.apache.nifi.components.ValidationResult;
 import org.jetbrains.annotations.NotNull;
 
+import static org.example.processors.generic.util.Constant.DEBUG_SAMPLE_RATE_VALIDATION_DESCRIPTION;
+import static org.example.processors.generic.util.Constant.JSON_PATH_VALIDATION_DESCRIPTION;
 import static org.example.processors.generic.util.Constant.VALIDATION_RESULT_DESCRIPTION;
+import static org.example.processors.generic.util.Constant.XML_PATH_VALIDATION_DESCRIPTION;
 
 public class CustomValidator {
 
@@ -31,4 +34,81 @@ public class CustomValidator {
                 .valid(true)
                 .build();
     }
+
+    /**
+     * Validation for a sample rate between 0 and 1
+     * @param subject
+     * @param input
+     * @param validationContext
+     * @return
+     */
+    public static @NotNull ValidationResult sampleRateValidator(String subject, String input, ValidationContext validationContext) {
+        boolean valid;
+        try {
+            double rate = Double.parseDouble(input);
+            valid = rate >= 0 && rate <= 1;
+        } catch (NullPointerException | NumberFormatException e) {
+            valid = false;
+        }
+        ValidationResult.Builder builder = new ValidationResult.Builder()
+                .subject(subject)
+                .input(input)
+                .valid(valid);
+        if (!valid) {
+            builder.explanation(DEBUG_SAMPLE_RATE_VALIDATION_DESCRIPTION);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Validation for a field reference supported by {@link JsonPathPlan}
+     * @param subject
+     * @param input
+     * @param validationContext
+     * @return
+     */
+    public static @NotNull ValidationResult jsonPathValidator(String subject, String input, ValidationContext validationContext) {
+        String explanation = null;
+        try {
+            JsonPathPlan.parse(input);
+        } catch (NullPointerException e) {
+            explanation = JSON_PATH_VALIDATION_DESCRIPTION;
+        } catch (IllegalArgumentException e) {
+            explanation = JSON_PATH_VALIDATION_DESCRIPTION + ", " + e.getMessage();
+        }
+        ValidationResult.Builder builder = new ValidationResult.Builder()
+                .subject(subject)
+                .input(input)
+                .valid(explanation == null);
+        if (explanation != null) {
+            builder.explanation(explanation);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Validation for element paths supported by {@link XmlPathFilter}
+     * @param subject
+     * @param input
+     * @param validationContext
+     * @return
+     */
+    public static @NotNull ValidationResult xmlPathValidator(String subject, String input, ValidationContext validationContext) {
+        String explanation = null;
+        try {
+            XmlPathFilter.compile(input);
+        } catch (NullPointerException e) {
+            explanation = XML_PATH_VALIDATION_DESCRIPTION;
+        } catch (IllegalArgumentException e) {
+            explanation = XML_PATH_VALIDATION_DESCRIPTION + ", " + e.getMessage();
+        }
+        ValidationResult.Builder builder = new ValidationResult.Builder()
+                .subject(subject)
+                .input(input)
+                .valid(explanation == null);
+        if (explanation != null) {
+            builder.explanation(explanation);
+        }
+        return builder.build();
+    }
 }
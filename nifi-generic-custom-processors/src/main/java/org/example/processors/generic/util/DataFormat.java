@@ -0,0 +1,100 @@
+package org.example.processors.generic.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Encodings of the content. CBOR and SMILE are binary encodings of the json data model, so the Jackson streaming code
+ * handles all three and only the factory differs. Binary content is recognized from its first bytes: Smile content
+ * starts with its {@code :)\n} header, CBOR written here starts with the self-describe tag {@code D9 D9 F7}, and an
+ * untagged CBOR map or array starts with a byte json text never starts with.
+ */
+public enum DataFormat {
+
+    JSON(Helper.JSON_FACTORY, "application/json", ".json"),
+    CBOR(CBORFactory.builder()
+            .enable(CBORGenerator.Feature.WRITE_TYPE_HEADER)
+            .disable(StreamReadFeature.AUTO_CLOSE_SOURCE)
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build(), "application/cbor", ".cbor"),
+    SMILE(SmileFactory.builder()
+            .disable(StreamReadFeature.AUTO_CLOSE_SOURCE)
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build(), "application/x-jackson-smile", ".smile");
+
+    private static final int HEADER_LENGTH = 3;
+
+    private final JsonFactory factory;
+    private final String mimeType;
+    private final String extension;
+
+    DataFormat(@NotNull JsonFactory factory, @NotNull String mimeType, @NotNull String extension) {
+        this.factory = factory;
+        this.mimeType = mimeType;
+        this.extension = extension;
+    }
+
+    /* shared, thread safe factory; leaves the session streams open for NiFi to close */
+    public @NotNull JsonFactory getFactory() {
+        return factory;
+    }
+
+    public @NotNull String getMimeType() {
+        return mimeType;
+    }
+
+    /* file name extension, with its dot */
+    public @NotNull String getExtension() {
+        return extension;
+    }
+
+    public boolean isBinary() {
+        return this != JSON;
+    }
+
+    /**
+     * @apiNote encoding of the content the stream is positioned on, the stream is left where it was. A stream without
+     * mark support is taken as json
+     * @param inputStream
+     * @return DataFormat
+     */
+    public static @NotNull DataFormat detect(@NotNull InputStream inputStream) throws IOException {
+        if (!inputStream.markSupported()) {
+            return JSON;
+        }
+        inputStream.mark(HEADER_LENGTH);
+        int first;
+        int second;
+        int third;
+        try {
+            first = inputStream.read();
+            second = first < 0 ? -1 : inputStream.read();
+            third = second < 0 ? -1 : inputStream.read();
+        } finally {
+            inputStream.reset();
+        }
+        return detect(first, second, third);
+    }
+
+    static @NotNull DataFormat detect(int first, int second, int third) {
+        if (first == ':' && second == ')' && third == '\n') {
+            return SMILE;
+        }
+        if (first == 0xD9 && second == 0xD9 && third == 0xF7) {
+            return CBOR;
+        }
+        // major types 4 and 5, a CBOR array or map
+        if (first >= 0x80 && first <= 0xBF) {
+            return CBOR;
+        }
+        return JSON;
+    }
+}
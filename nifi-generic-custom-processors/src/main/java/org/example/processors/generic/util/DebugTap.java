@@ -0,0 +1,65 @@
+package org.example.processors.generic.util;
+
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.processor.ProcessSession;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides which FlowFiles are tapped for debugging and builds their previews. Nothing is read or copied for
+ * FlowFiles that are not sampled, so an idle tap costs one comparison per FlowFile.
+ */
+public class DebugTap {
+
+    /** tap that never samples */
+    public static final DebugTap NONE = new DebugTap(Constant.DEBUG_TAP_NONE, 0, 0);
+
+    private final String mode;
+    private final double sampleRate;
+    private final int previewLength;
+
+    public DebugTap(@NotNull String mode, double sampleRate, int previewLength) {
+        this.mode = mode;
+        this.sampleRate = Constant.DEBUG_TAP_NONE.equals(mode) ? 0 : sampleRate;
+        this.previewLength = previewLength;
+    }
+
+    /**
+     * @apiNote draws whether the next FlowFile is tapped
+     * @return boolean
+     */
+    public boolean sample() {
+        return sampleRate > 0 && (sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    public boolean isRelationship() {
+        return Constant.DEBUG_TAP_RELATIONSHIP.equals(mode);
+    }
+
+    public boolean isPreview() {
+        return Constant.DEBUG_TAP_PREVIEW.equals(mode);
+    }
+
+    /**
+     * @apiNote first bytes of the content decoded as UTF-8, with the number of bytes left out when it was cut
+     * @param flowFile
+     * @param session
+     * @return String
+     */
+    public @NotNull String preview(@NotNull FlowFile flowFile, @NotNull ProcessSession session) {
+        final int length = (int) Math.min(previewLength, flowFile.getSize());
+        final byte[] buffer = new byte[length];
+        session.read(flowFile, in -> {
+            int offset = 0;
+            int count;
+            while (offset < length && (count = in.read(buffer, offset, length - offset)) > 0) {
+                offset += count;
+            }
+        });
+        String preview = new String(buffer, StandardCharsets.UTF_8);
+        long remaining = flowFile.getSize() - length;
+        return remaining > 0 ? preview + "... (" + remaining + " more bytes)" : preview;
+    }
+}
@@ -1,5 +1,10 @@
 package org.example.processors.generic.util;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.StreamWriteFeature;
 import com.google.gson.*;
 import org.apache.commons.io.IOUtils;
 import org.apache.nifi.flowfile.FlowFile;
@@ -9,9 +14,13 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.w3c.dom.*;
 import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
@@ -20,10 +29,30 @@ import java.util.regex.Pattern;
 
 public class Helper {
 
+    /** shared, thread safe jackson factory; leaves the session streams open for NiFi to close */
+    public static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .disable(StreamReadFeature.AUTO_CLOSE_SOURCE)
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build();
+
+    /** shared, thread safe gson instance for callers that do not bring their own */
+    public static final Gson GSON = new Gson();
+
+    /* looked up once, DocumentBuilderFactory.newInstance() runs a service loader lookup on every call */
+    private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
+
+    /** labels of {@link #convertToRange(double)} for values between 0 and 1 */
+    private static final String[] RANGE_LABELS = {
+            "0-10", "10-20", "20-30", "30-40", "40-50", "50-60", "60-70", "70-80", "80-90", "90-100"
+    };
+
     /**
      * read flow file and return contents in String
      * @return string
+     * @deprecated decodes and copies the whole content, processors extend
+     * {@link org.example.processors.generic.AbstractContentProcessor} and work on the content streams instead
      */
+    @Deprecated
     public static @NotNull String flowFileReader(FlowFile inputFlowFile, @NotNull ProcessSession session) {
         final StringBuilder content = new StringBuilder();
         session.read(inputFlowFile, in -> content.append(IOUtils.toString(in, StandardCharsets.UTF_8)));
@@ -32,17 +61,48 @@ public class Helper {
 
     /** KeyValue Replacer Methods -- starts */
     public static String addMapValueToJSON(String json, Map<String, String> map, String @NotNull [] jsonKey, String @NotNull [] newKeyArray) {
-        Gson gson = new Gson();
+        return addMapValueToJSON(json, map, jsonKey, newKeyArray, GSON);
+    }
+
+    /**
+     * same as {@link #addMapValueToJSON(String, Map, String[], String[])} with a caller owned Gson, so a batch can share one
+     */
+    public static String addMapValueToJSON(String json, @NotNull Map<String, String> map, String @NotNull [] jsonKey, String @NotNull [] newKeyArray, @NotNull Gson gson) {
+        return addMapValueToJSON(json, map::get, jsonKey, newKeyArray, gson);
+    }
+
+    /**
+     * same as {@link #addMapValueToJSON(String, Map, String[], String[], Gson)} with the values resolved through a {@link KeyLookup}
+     */
+    public static String addMapValueToJSON(String json, @NotNull KeyLookup lookup, String @NotNull [] jsonKey, String @NotNull [] newKeyArray, @NotNull Gson gson) {
         JsonObject jsonObject = JsonParser.parseString(json).getAsJsonObject();
+        addMapValueToJSON(jsonObject, lookup, jsonKey, newKeyArray);
+        return gson.toJson(jsonObject);
+    }
+
+    /**
+     * same as {@link #addMapValueToJSON(String, KeyLookup, String[], String[], Gson)} on an already parsed object, which is updated in place
+     */
+    public static void addMapValueToJSON(@NotNull JsonObject jsonObject, @NotNull KeyLookup lookup, String @NotNull [] jsonKey, String @NotNull [] newKeyArray) {
+        if (jsonKey.length > 1) {
+            // a remote lookup resolves all keys of the object in one request
+            List<String> present = new ArrayList<>(jsonKey.length);
+            for (String key : jsonKey) {
+                JsonElement element = jsonObject.get(key);
+                if (element != null && element.isJsonPrimitive()) {
+                    present.add(element.getAsString());
+                }
+            }
+            lookup.prefetch(present);
+        }
         for (int i = 0; i < jsonKey.length; i++) {
 
             if (jsonObject.has(jsonKey[i])) {
                 String replacementValue = jsonObject.get(jsonKey[i]).getAsString();
-                String mapValue = map.get(replacementValue);
+                String mapValue = lookup.lookup(replacementValue);
                 jsonObject.addProperty(newKeyArray[i], mapValue);
             }
         }
-        return gson.toJson(jsonObject);
     }
 
 
@@ -77,7 +137,16 @@ public class Helper {
      * @return String
      */
     public static String applyRegexPattern(String value, String regexPattern) {
-        Pattern pattern = Pattern.compile(regexPattern);
+        return applyRegexPattern(value, Pattern.compile(regexPattern));
+    }
+
+    /**
+     * @apiNote apply an already compiled regex pattern to input value
+     * @param value
+     * @param pattern
+     * @return String
+     */
+    public static String applyRegexPattern(String value, @NotNull Pattern pattern) {
         Matcher matcher = pattern.matcher(value);
 
         if (matcher.find()) {
@@ -93,9 +162,130 @@ public class Helper {
         int rangeMin = (int) (Math.floor(value * rangeCount) * rangeSize);
         int rangeMax = rangeMin + (int) rangeSize;
 
+        int bucket = rangeMin / (int) rangeSize;
+        if (rangeMin >= 0 && bucket < RANGE_LABELS.length) {
+            // values between 0 and 1 share precomputed labels
+            return RANGE_LABELS[bucket];
+        }
         return rangeMin + "-" + rangeMax;
     }
 
+    /**
+     * @apiNote bulk variant of {@link #convertToRange(double)}, the range of every value is computed in one loop over
+     * primitive arrays before any label is looked up
+     * @param values
+     * @param length number of values to convert
+     * @param labels receives the label of each value
+     * @param rangeMins scratch space of at least length entries, reused by the caller between calls
+     */
+    public static void convertToRanges(double @NotNull [] values, int length, String @NotNull [] labels, int @NotNull [] rangeMins) {
+        for (int i = 0; i < length; i++) {
+            rangeMins[i] = (int) (Math.floor(values[i] * 10) * 10.0);
+        }
+        for (int i = 0; i < length; i++) {
+            int bucket = rangeMins[i] / 10;
+            labels[i] = rangeMins[i] >= 0 && bucket < RANGE_LABELS.length
+                    ? RANGE_LABELS[bucket]
+                    : rangeMins[i] + "-" + (rangeMins[i] + 10);
+        }
+    }
+
+    /**
+     * @apiNote adds the range of the number at the field path next to it, or a parallel array of ranges for a numeric
+     * array. Arrays met along the path are entered element by element
+     * @param jsonElement
+     * @param fieldPath see {@link #parseFieldPath(String)}
+     * @param newKey
+     * @param bucketTable custom buckets, or null for {@link #convertToRange(double)}
+     */
+    public static void addRange(@NotNull JsonElement jsonElement, String @NotNull [] fieldPath, @NotNull String newKey, @Nullable BucketTable bucketTable) {
+        addRange(jsonElement, fieldPath, 0, newKey, bucketTable);
+    }
+
+    private static void addRange(@NotNull JsonElement jsonElement, String @NotNull [] fieldPath, int segment, @NotNull String newKey, @Nullable BucketTable bucketTable) {
+        if (jsonElement.isJsonArray()) {
+            for (JsonElement element : jsonElement.getAsJsonArray()) {
+                addRange(element, fieldPath, segment, newKey, bucketTable);
+            }
+            return;
+        }
+        JsonObject jsonObject = jsonElement.getAsJsonObject();
+        JsonElement value = jsonObject.get(fieldPath[segment]);
+        if (segment < fieldPath.length - 1) {
+            addRange(value, fieldPath, segment + 1, newKey, bucketTable);
+            return;
+        }
+
+        if (value.isJsonArray()) {
+            /* a numeric array gets a parallel array of labels */
+            JsonArray ranges = new JsonArray(value.getAsJsonArray().size());
+            for (JsonElement element : value.getAsJsonArray()) {
+                ranges.add(convertToRange(element.getAsDouble(), bucketTable));
+            }
+            jsonObject.add(newKey, ranges);
+            return;
+        }
+        jsonObject.addProperty(newKey, convertToRange(value.getAsDouble(), bucketTable));
+    }
+
+    private static @NotNull String convertToRange(double value, @Nullable BucketTable bucketTable) {
+        return bucketTable == null ? convertToRange(value) : bucketTable.label(value);
+    }
+
+    /**
+     * @apiNote applies the regex rules of the plan to the values their references lead to, every rule runs against the
+     * same parsed document and only the members the plan has a step for are visited
+     * @param jsonElement
+     * @param node position of the element in the plan
+     */
+    public static void applyRegexRules(@NotNull JsonElement jsonElement, JsonPathPlan.@NotNull Node<RegexRule> node) {
+        if (jsonElement.isJsonObject()) {
+            for (Map.Entry<String, JsonElement> member : jsonElement.getAsJsonObject().entrySet()) {
+                JsonPathPlan.Node<RegexRule> child = node.field(member.getKey());
+                if (child != null) {
+                    member.setValue(applyRegexRulesToMember(member.getValue(), child));
+                }
+            }
+        } else if (jsonElement.isJsonArray()) {
+            JsonArray jsonArray = jsonElement.getAsJsonArray();
+            for (int i = 0; i < jsonArray.size(); i++) {
+                JsonPathPlan.Node<RegexRule> child = node.index(i);
+                if (child != null) {
+                    jsonArray.set(i, applyRegexRulesToMember(jsonArray.get(i), child));
+                }
+            }
+        }
+    }
+
+    private static @NotNull JsonElement applyRegexRulesToMember(@NotNull JsonElement value, JsonPathPlan.@NotNull Node<RegexRule> child) {
+        if (child.getTargets().isEmpty()) {
+            applyRegexRules(value, child);
+            return value;
+        }
+        String newValue = value.getAsString();
+        for (RegexRule regexRule : child.getTargets()) {
+            newValue = regexRule.apply(newValue);
+        }
+        return new JsonPrimitive(newValue);
+    }
+
+    /**
+     * @apiNote splits a field reference into path segments, a reference starting with / is a JSON Pointer such as
+     * {@code /telemetry/readings} (~1 stands for / and ~0 for ~), anything else is a single top-level field name
+     * @param field
+     * @return String[]
+     */
+    public static String @NotNull [] parseFieldPath(@NotNull String field) {
+        if (!field.startsWith("/")) {
+            return new String[]{field};
+        }
+        String[] segments = field.substring(1).split("/", -1);
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = segments[i].replace("~1", "/").replace("~0", "~");
+        }
+        return segments;
+    }
+
 
     /**
      * @apiNote convert xml to json
@@ -104,8 +294,33 @@ public class Helper {
      */
     public static @Nullable JsonObject convertXmlToJson(String xml) {
         try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
+            return convertXmlToJson(xml, createDocumentBuilder());
+        } catch (ParserConfigurationException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * @apiNote document builder for {@link #convertXmlToJson(String, DocumentBuilder)}, can be reused for several documents by one thread
+     * @return DocumentBuilder
+     */
+    public static @NotNull DocumentBuilder createDocumentBuilder() throws ParserConfigurationException {
+        // the factory is not thread safe, only creating builders is serialized, they are used without locking
+        synchronized (DOCUMENT_BUILDER_FACTORY) {
+            return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+        }
+    }
+
+    /**
+     * @apiNote convert xml to json with a caller owned document builder
+     * @param xml
+     * @param builder
+     * @return JsonObject
+     */
+    public static @Nullable JsonObject convertXmlToJson(String xml, @NotNull DocumentBuilder builder) {
+        try {
+            builder.reset();
             Document document = builder.parse(new InputSource(new StringReader(xml)));
 
             JsonObject jsonObject = convertElementToJson(document.getDocumentElement());
@@ -116,6 +331,32 @@ public class Helper {
         }
     }
 
+    /**
+     * @apiNote convert xml read from the input stream with a caller owned document builder, the encoding is taken from
+     * the xml declaration
+     * @param inputStream
+     * @param builder
+     * @return JsonObject
+     */
+    public static @NotNull JsonObject convertXmlToJson(InputStream inputStream, @NotNull DocumentBuilder builder) throws IOException {
+        return convertElementToJson(parseXml(inputStream, builder).getDocumentElement());
+    }
+
+    /**
+     * @apiNote parse xml read from the input stream with a caller owned document builder
+     * @param inputStream
+     * @param builder
+     * @return Document
+     */
+    public static @NotNull Document parseXml(InputStream inputStream, @NotNull DocumentBuilder builder) throws IOException {
+        try {
+            builder.reset();
+            return builder.parse(inputStream);
+        } catch (SAXException e) {
+            throw new IOException("Unable to read xml", e);
+        }
+    }
+
     /**
      * @apiNote converts elements to a JsonObject
      * @param element
@@ -150,7 +391,9 @@ public class Helper {
     }
 
     /**
-     * @apiNote remove null and blank fields from json objects
+     * @apiNote remove null and blank fields from json objects, nested objects are cleaned too. Objects and arrays are
+     * values of their own and are kept, even when they end up empty. Elements of arrays are left as they are, only the
+     * null fields of objects inside arrays go because Gson does not write them
      * @param jsonObject
      */
     public static void removeNullEmptyAndWhitespaceFields(@NotNull JsonObject jsonObject) {
@@ -162,7 +405,7 @@ public class Helper {
             String key = entry.getKey();
             JsonElement value = entry.getValue();
 
-            if (value == null || value.isJsonNull() || value.getAsString().trim().isEmpty()) {
+            if (value == null || value.isJsonNull() || (value.isJsonPrimitive() && value.getAsString().trim().isEmpty())) {
                 keysToRemove.add(key);
             } else if (value.isJsonObject()) {
                 // Recursively remove null, empty, and whitespace fields in nested JSON objects
@@ -175,4 +418,47 @@ public class Helper {
             jsonObject.remove(key);
         }
     }
+
+    /**
+     * @apiNote streaming variant of {@link #removeNullEmptyAndWhitespaceFields(JsonObject)}, copies tokens from
+     * parser to generator and drops object fields whose value is null, empty or whitespace only.
+     * Only the pending field name is held back, so memory does not grow with the document size.
+     * Inside arrays only null fields are dropped, which is what the tree variant ends up writing through Gson, so both
+     * variants give the same output.
+     * @param parser
+     * @param generator
+     */
+    public static void removeNullEmptyAndWhitespaceFields(com.fasterxml.jackson.core.JsonParser parser, @NotNull JsonGenerator generator) throws IOException {
+        int arrayDepth = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != null) {
+            if (token == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                token = parser.nextToken();
+                if (token == JsonToken.VALUE_NULL || (arrayDepth == 0 && token == JsonToken.VALUE_STRING && isBlank(parser))) {
+                    continue;
+                }
+                generator.writeFieldName(fieldName);
+            }
+            if (token == JsonToken.START_ARRAY) {
+                arrayDepth++;
+            } else if (token == JsonToken.END_ARRAY) {
+                arrayDepth--;
+            }
+            generator.copyCurrentEvent(parser);
+        }
+        generator.flush();
+    }
+
+    /* same check as String.trim().isEmpty() without materializing the value */
+    private static boolean isBlank(com.fasterxml.jackson.core.JsonParser parser) throws IOException {
+        char[] text = parser.getTextCharacters();
+        int end = parser.getTextOffset() + parser.getTextLength();
+        for (int i = parser.getTextOffset(); i < end; i++) {
+            if (text[i] > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,501 @@
+package org.example.processors.generic.util;
+
+import com.google.gson.JsonSyntaxException;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Byte level counterpart of {@link Helper#addMapValueToJSON(com.google.gson.JsonObject, KeyLookup, String[], String[])}.
+ * The UTF-8 content of a json object is scanned only at its top level: member names are compared as bytes, values are
+ * skipped by matching brackets and quotes without being decoded, and only the values of the lookup keys are read.
+ * The original bytes are then copied to the output untouched, a new field that already exists gets its value replaced
+ * where it stands and the others are inserted after the last member, before the closing brace.
+ * Whitespace, number formats, escapes and null values of the document are kept as they are, unlike the tree transform
+ * which writes the document back out through Gson. A splicer is used by one thread at a time. Its content buffer is kept
+ * for the next document up to {@link #MAX_RETAINED_CAPACITY}, a larger document leaves a buffer of the initial size behind.
+ */
+public class JsonFieldSplicer {
+
+    private static final int INITIAL_CAPACITY = 8192;
+    /** largest content buffer a pooled splicer holds on to between documents */
+    public static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final String[] keys;
+    private final String[] newKeys;
+    /* distinct names of the lookup keys and the new keys, a member whose name is not one of them is skipped */
+    private final String[] names;
+    private final byte[][] nameBytes;
+    private final int[] keyNameIndexes;
+    private final int[] newKeyNameIndexes;
+
+    /* reused between documents */
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length;
+    private final int[] valueStart;
+    private final int[] valueEnd;
+    private final int[] memberStart;
+    private final String[] newValues;
+    private final boolean[] assigned;
+
+    /**
+     * @param keys fields whose value is looked up
+     * @param newKeys field receiving the looked up value of the key at the same index
+     */
+    public JsonFieldSplicer(String @NotNull [] keys, String @NotNull [] newKeys) {
+        if (keys.length != newKeys.length) {
+            throw new IllegalArgumentException("keyToCheck and newKeyNames not matched at length");
+        }
+        this.keys = keys.clone();
+        this.newKeys = newKeys.clone();
+        String[] distinct = new String[keys.length + newKeys.length];
+        int count = 0;
+        keyNameIndexes = new int[keys.length];
+        newKeyNameIndexes = new int[newKeys.length];
+        for (int i = 0; i < keys.length; i++) {
+            count = addName(distinct, count, keys[i]);
+            keyNameIndexes[i] = indexOf(distinct, count, keys[i]);
+        }
+        for (int i = 0; i < newKeys.length; i++) {
+            count = addName(distinct, count, newKeys[i]);
+            newKeyNameIndexes[i] = indexOf(distinct, count, newKeys[i]);
+        }
+        names = Arrays.copyOf(distinct, count);
+        nameBytes = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            nameBytes[i] = names[i].getBytes(StandardCharsets.UTF_8);
+        }
+        valueStart = new int[count];
+        valueEnd = new int[count];
+        memberStart = new int[count];
+        newValues = new String[newKeys.length];
+        assigned = new boolean[newKeys.length];
+    }
+
+    /**
+     * @apiNote reads the json object from the input, adds the looked up values and writes it to the output
+     * @param inputStream
+     * @param outputStream
+     * @param lookup
+     * @return number of lookup keys found in the document
+     */
+    public int splice(@NotNull InputStream inputStream, @NotNull OutputStream outputStream, @NotNull KeyLookup lookup) throws IOException {
+        read(inputStream);
+        PhaseTimer timer = PhaseTimer.of(inputStream);
+        ProcessorMetrics.Phase previous = timer.switchTo(ProcessorMetrics.Phase.PARSE);
+        try {
+            int[] bounds = scan();
+            timer.switchTo(ProcessorMetrics.Phase.TRANSFORM);
+            int found = lookupValues(lookup);
+            timer.switchTo(ProcessorMetrics.Phase.SERIALIZE);
+            write(outputStream, bounds[0], bounds[1]);
+            return found;
+        } finally {
+            timer.switchTo(previous);
+            if (buffer.length > MAX_RETAINED_CAPACITY) {
+                buffer = new byte[INITIAL_CAPACITY];
+            }
+        }
+    }
+
+    private void read(@NotNull InputStream inputStream) throws IOException {
+        length = 0;
+        int read;
+        while ((read = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+    }
+
+    /* records where the members of interest are, returns the end of the opening brace and the end of the last member */
+    private int @NotNull [] scan() {
+        Arrays.fill(valueStart, -1);
+        Arrays.fill(memberStart, -1);
+        int position = skipWhitespace(0);
+        if (position == length) {
+            throw new JsonSyntaxException("input json is empty");
+        }
+        if (buffer[position] != '{') {
+            throw new JsonSyntaxException("expected a json object at offset " + position);
+        }
+        int open = position + 1;
+        int lastEnd = open;
+        position = skipWhitespace(open);
+        if (position < length && buffer[position] == '}') {
+            position++;
+        } else {
+            while (true) {
+                int start = position;
+                expect(position, '"');
+                int nameEnd = skipString(position);
+                int name = matchName(position + 1, nameEnd - 1);
+                position = skipWhitespace(nameEnd);
+                expect(position, ':');
+                position = skipWhitespace(position + 1);
+                int end = skipValue(position);
+                if (name >= 0) {
+                    /* the last value of a duplicated name wins, the first one keeps its place */
+                    if (memberStart[name] < 0) {
+                        memberStart[name] = start;
+                    }
+                    valueStart[name] = position;
+                    valueEnd[name] = end;
+                }
+                lastEnd = end;
+                position = skipWhitespace(end);
+                if (position < length && buffer[position] == ',') {
+                    position = skipWhitespace(position + 1);
+                } else {
+                    expect(position, '}');
+                    position++;
+                    break;
+                }
+            }
+        }
+        if (skipWhitespace(position) != length) {
+            throw new JsonSyntaxException("JSON document was not fully consumed.");
+        }
+        return new int[]{open, lastEnd};
+    }
+
+    /* same order and semantics as the tree transform, a new key written earlier is seen by a later lookup key */
+    private int lookupValues(@NotNull KeyLookup lookup) {
+        Arrays.fill(assigned, false);
+        if (keys.length > 1) {
+            List<String> present = new ArrayList<>(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                int name = keyNameIndexes[i];
+                if (valueStart[name] >= 0 && isScalar(valueStart[name])) {
+                    present.add(readScalar(valueStart[name], valueEnd[name]));
+                }
+            }
+            lookup.prefetch(present);
+        }
+        int found = 0;
+        for (int i = 0; i < keys.length; i++) {
+            String value;
+            int earlier = lastAssigned(keys[i], i);
+            if (earlier >= 0) {
+                value = newValues[earlier];
+                if (value == null) {
+                    throw new UnsupportedOperationException("JsonNull");
+                }
+            } else if (valueStart[keyNameIndexes[i]] >= 0) {
+                value = readScalar(valueStart[keyNameIndexes[i]], valueEnd[keyNameIndexes[i]]);
+            } else {
+                continue;
+            }
+            newValues[i] = lookup.lookup(value);
+            assigned[i] = true;
+            found++;
+        }
+        return found;
+    }
+
+    private int lastAssigned(@NotNull String name, int before) {
+        for (int j = before - 1; j >= 0; j--) {
+            if (assigned[j] && newKeys[j].equals(name)) {
+                return j;
+            }
+        }
+        return -1;
+    }
+
+    private void write(@NotNull OutputStream outputStream, int open, int lastEnd) throws IOException {
+        /* members replaced or dropped, ordered by their position in the document */
+        int[] edits = new int[newKeys.length];
+        int editCount = 0;
+        for (int name = 0; name < names.length; name++) {
+            if (memberStart[name] >= 0 && finalAssignment(name) >= 0) {
+                edits[editCount++] = name;
+            }
+        }
+        sortByPosition(edits, editCount);
+
+        int copied = 0;
+        /* whether a member is written before the copy position, a dropped member then takes the comma before it */
+        boolean hasMembers = false;
+        for (int e = 0; e < editCount; e++) {
+            int name = edits[e];
+            String value = newValues[finalAssignment(name)];
+            int start = memberStart[name];
+            if (value != null) {
+                outputStream.write(buffer, copied, valueStart[name] - copied);
+                writeString(outputStream, value);
+                copied = valueEnd[name];
+                hasMembers = true;
+                continue;
+            }
+            /* a null value is not written by the tree transform, the member goes with one of its separators */
+            int end = valueEnd[name];
+            if (hasMembers || hasContent(Math.max(copied, open), start)) {
+                // a member is kept before it, the comma between them goes
+                int previous = start - 1;
+                while (isWhitespace(buffer[previous])) {
+                    previous--;
+                }
+                outputStream.write(buffer, copied, previous - copied);
+                copied = end;
+                hasMembers = true;
+                continue;
+            }
+            // no member is kept before it, the comma after it goes if another member follows
+            outputStream.write(buffer, copied, start - copied);
+            int next = skipWhitespace(end);
+            copied = buffer[next] == ',' ? skipWhitespace(next + 1) : end;
+        }
+        hasMembers = hasMembers || hasContent(Math.max(copied, open), lastEnd);
+        outputStream.write(buffer, copied, lastEnd - copied);
+        for (int i = 0; i < newKeys.length; i++) {
+            if (!assigned[i] || newValues[i] == null || memberStart[newKeyNameIndexes[i]] >= 0 || finalAssignment(newKeyNameIndexes[i]) != i) {
+                continue;
+            }
+            if (hasMembers) {
+                outputStream.write(',');
+            }
+            writeString(outputStream, newKeys[i]);
+            outputStream.write(':');
+            writeString(outputStream, newValues[i]);
+            hasMembers = true;
+        }
+        outputStream.write(buffer, lastEnd, length - lastEnd);
+    }
+
+    /* whether anything but whitespace lies between the positions */
+    private boolean hasContent(int start, int end) {
+        return skipWhitespace(start) < end;
+    }
+
+    /* index of the last new key assignment to the name, -1 when the name is not assigned */
+    private int finalAssignment(int name) {
+        for (int i = newKeys.length - 1; i >= 0; i--) {
+            if (assigned[i] && newKeyNameIndexes[i] == name) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void sortByPosition(int @NotNull [] edits, int count) {
+        for (int i = 1; i < count; i++) {
+            int edit = edits[i];
+            int j = i - 1;
+            while (j >= 0 && memberStart[edits[j]] > memberStart[edit]) {
+                edits[j + 1] = edits[j];
+                j--;
+            }
+            edits[j + 1] = edit;
+        }
+    }
+
+    /* index in names of the member name between the quotes, -1 when it is not a name of interest */
+    private int matchName(int start, int end) {
+        int size = end - start;
+        boolean escaped = false;
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == '\\') {
+                escaped = true;
+                break;
+            }
+        }
+        if (escaped) {
+            String name = decodeString(start, end);
+            for (int n = 0; n < names.length; n++) {
+                if (names[n].equals(name)) {
+                    return n;
+                }
+            }
+            return -1;
+        }
+        for (int n = 0; n < nameBytes.length; n++) {
+            byte[] candidate = nameBytes[n];
+            if (candidate.length != size) {
+                continue;
+            }
+            int i = 0;
+            while (i < size && candidate[i] == buffer[start + i]) {
+                i++;
+            }
+            if (i == size) {
+                return n;
+            }
+        }
+        return -1;
+    }
+
+    /* false for a null, an object or an array, which have no string value */
+    private boolean isScalar(int start) {
+        return buffer[start] != 'n' && buffer[start] != '{' && buffer[start] != '[';
+    }
+
+    /* same values as JsonElement.getAsString, a null, object or array has none */
+    private @NotNull String readScalar(int start, int end) {
+        byte first = buffer[start];
+        if (first == '"') {
+            return decodeString(start + 1, end - 1);
+        }
+        if (!isScalar(start)) {
+            throw new UnsupportedOperationException("expected a scalar value at offset " + start);
+        }
+        return new String(buffer, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private @NotNull String decodeString(int start, int end) {
+        StringBuilder value = new StringBuilder(end - start);
+        int run = start;
+        int i = start;
+        while (i < end) {
+            if (buffer[i] != '\\') {
+                i++;
+                continue;
+            }
+            value.append(new String(buffer, run, i - run, StandardCharsets.UTF_8));
+            byte escape = buffer[i + 1];
+            switch (escape) {
+                case 'b': value.append('\b'); break;
+                case 'f': value.append('\f'); break;
+                case 'n': value.append('\n'); break;
+                case 'r': value.append('\r'); break;
+                case 't': value.append('\t'); break;
+                case 'u':
+                    if (i + 6 > end) {
+                        throw new JsonSyntaxException("unterminated escape at offset " + i);
+                    }
+                    value.append((char) Integer.parseInt(new String(buffer, i + 2, 4, StandardCharsets.US_ASCII), 16));
+                    i += 4;
+                    break;
+                default: value.append((char) escape);
+            }
+            i += 2;
+            run = i;
+        }
+        value.append(new String(buffer, run, end - run, StandardCharsets.UTF_8));
+        return value.toString();
+    }
+
+    /* position after the closing quote of the string starting at the position */
+    private int skipString(int position) {
+        int i = position + 1;
+        while (i < length) {
+            byte b = buffer[i];
+            if (b == '"') {
+                return i + 1;
+            }
+            i += b == '\\' ? 2 : 1;
+        }
+        throw new JsonSyntaxException("unterminated string at offset " + position);
+    }
+
+    /* position after the value starting at the position, nested values are skipped by counting brackets */
+    private int skipValue(int position) {
+        if (position >= length) {
+            throw new JsonSyntaxException("expected a value at the end of the input");
+        }
+        byte first = buffer[position];
+        if (first == '"') {
+            return skipString(position);
+        }
+        if (first == '{' || first == '[') {
+            int depth = 0;
+            int i = position;
+            while (i < length) {
+                byte b = buffer[i];
+                if (b == '"') {
+                    i = skipString(i);
+                    continue;
+                }
+                if (b == '{' || b == '[') {
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    if (--depth == 0) {
+                        return i + 1;
+                    }
+                }
+                i++;
+            }
+            throw new JsonSyntaxException("unterminated value at offset " + position);
+        }
+        int i = position;
+        while (i < length && buffer[i] != ',' && buffer[i] != '}' && !isWhitespace(buffer[i])) {
+            i++;
+        }
+        if (i == position) {
+            throw new JsonSyntaxException("expected a value at offset " + position);
+        }
+        return i;
+    }
+
+    private void expect(int position, char expected) {
+        if (position >= length || buffer[position] != expected) {
+            throw new JsonSyntaxException("expected " + expected + " at offset " + position);
+        }
+    }
+
+    private int skipWhitespace(int position) {
+        while (position < length && isWhitespace(buffer[position])) {
+            position++;
+        }
+        return position;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    /* quoted and escaped as json, characters outside ASCII are written as UTF-8 */
+    private static void writeString(@NotNull OutputStream outputStream, @NotNull String value) throws IOException {
+        outputStream.write('"');
+        int run = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            outputStream.write(value.substring(run, i).getBytes(StandardCharsets.UTF_8));
+            outputStream.write('\\');
+            if (c == '"' || c == '\\') {
+                outputStream.write(c);
+            } else if (c == '\n') {
+                outputStream.write('n');
+            } else if (c == '\r') {
+                outputStream.write('r');
+            } else if (c == '\t') {
+                outputStream.write('t');
+            } else {
+                outputStream.write('u');
+                outputStream.write('0');
+                outputStream.write('0');
+                outputStream.write(HEX[c >> 4]);
+                outputStream.write(HEX[c & 0xF]);
+            }
+            run = i + 1;
+        }
+        outputStream.write(value.substring(run).getBytes(StandardCharsets.UTF_8));
+        outputStream.write('"');
+    }
+
+    private static int addName(String @NotNull [] names, int count, @NotNull String name) {
+        if (indexOf(names, count, name) < 0) {
+            names[count++] = name;
+        }
+        return count;
+    }
+
+    private static int indexOf(String @NotNull [] names, int count, @NotNull String name) {
+        for (int i = 0; i < count; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,281 @@
+package org.example.processors.generic.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Field references compiled once into a single tree of steps shared by all of them. A reference is a plain top-level
+ * field name, a JSON Pointer such as {@code /user/contact/email} or a JSONPath such as {@code $.items[*].email} using
+ * {@code .name}, {@code ['name']}, {@code [index]}, {@code .*} and {@code [*]}; recursive descent and filters are not
+ * supported because they would need every subtree to be looked into.
+ * Wildcards are merged into the named steps when the plan is built, so a walk over a document asks each node for the
+ * child of a field or index and skips the whole subtree when there is none.
+ * @param <T> what is attached to a reference, handed back in declaration order where references end
+ */
+public final class JsonPathPlan<T> {
+
+    private final Node<T> root;
+
+    private JsonPathPlan(@NotNull Node<T> root) {
+        this.root = root;
+    }
+
+    public @NotNull Node<T> getRoot() {
+        return root;
+    }
+
+    public static <T> @NotNull Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * @apiNote splits a reference into steps, a step is a field name, an index or null for a wildcard
+     * @param expression
+     * @return List
+     */
+    public static @NotNull List<Step> parse(@NotNull String expression) {
+        List<Step> steps = new ArrayList<>();
+        if (expression.startsWith("/")) {
+            /* a JSON Pointer segment that is a number can address an object field as well as an array element */
+            for (String segment : Helper.parseFieldPath(expression)) {
+                steps.add(new Step(segment, isIndex(segment) ? Integer.parseInt(segment) : -1));
+            }
+            return steps;
+        }
+        if (!expression.startsWith("$.") && !expression.startsWith("$[") && !"$".equals(expression)) {
+            steps.add(new Step(expression, -1));
+            return steps;
+        }
+
+        int position = 1;
+        while (position < expression.length()) {
+            char c = expression.charAt(position);
+            if (c == '.') {
+                if (position + 1 < expression.length() && expression.charAt(position + 1) == '.') {
+                    throw new IllegalArgumentException("recursive descent .. is not supported in " + expression);
+                }
+                int end = position + 1;
+                while (end < expression.length() && expression.charAt(end) != '.' && expression.charAt(end) != '[') {
+                    end++;
+                }
+                String name = expression.substring(position + 1, end);
+                if (name.isEmpty()) {
+                    throw new IllegalArgumentException("empty field name at " + position + " in " + expression);
+                }
+                steps.add("*".equals(name) ? Step.WILDCARD : new Step(name, -1));
+                position = end;
+            } else if (c == '[') {
+                int end = expression.indexOf(']', position);
+                if (end < 0) {
+                    throw new IllegalArgumentException("unclosed [ at " + position + " in " + expression);
+                }
+                String selector = expression.substring(position + 1, end).trim();
+                if ("*".equals(selector)) {
+                    steps.add(Step.WILDCARD);
+                } else if (selector.length() >= 2 && (selector.charAt(0) == '\'' || selector.charAt(0) == '"')
+                        && selector.charAt(selector.length() - 1) == selector.charAt(0)) {
+                    steps.add(new Step(selector.substring(1, selector.length() - 1), -1));
+                } else if (isIndex(selector)) {
+                    steps.add(new Step(null, Integer.parseInt(selector)));
+                } else {
+                    throw new IllegalArgumentException("unsupported selector [" + selector + "] in " + expression);
+                }
+                position = end + 1;
+            } else {
+                throw new IllegalArgumentException("unexpected " + c + " at " + position + " in " + expression);
+            }
+        }
+        if (steps.isEmpty()) {
+            throw new IllegalArgumentException("the document root itself cannot be matched: " + expression);
+        }
+        return steps;
+    }
+
+    private static boolean isIndex(@NotNull String value) {
+        if (value.isEmpty() || value.length() > 9) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * one step of a reference: a field name, an array index, both for a numeric JSON Pointer segment, or any
+     * field or element for a wildcard
+     */
+    public static final class Step {
+        static final Step WILDCARD = new Step(null, -1);
+
+        private final String name;
+        private final int index;
+
+        private Step(@Nullable String name, int index) {
+            this.name = name;
+            this.index = index;
+        }
+
+        private boolean isWildcard() {
+            return name == null && index < 0;
+        }
+    }
+
+    /**
+     * position in the plan, the targets of the references ending here and the children reachable from here
+     */
+    public static final class Node<T> {
+        private final List<T> targets;
+        private final Map<String, Node<T>> fields = new HashMap<>();
+        private final Map<Integer, Node<T>> indexes = new HashMap<>();
+        private Node<T> anyField;
+        private Node<T> anyIndex;
+
+        private Node(@NotNull List<T> targets) {
+            this.targets = targets;
+        }
+
+        /**
+         * @apiNote child for an object field, null when no reference goes through it
+         * @param name
+         * @return Node
+         */
+        public @Nullable Node<T> field(@NotNull String name) {
+            Node<T> child = fields.get(name);
+            return child != null ? child : anyField;
+        }
+
+        /**
+         * @apiNote child for an array element, null when no reference goes through it
+         * @param index
+         * @return Node
+         */
+        public @Nullable Node<T> index(int index) {
+            Node<T> child = indexes.get(index);
+            return child != null ? child : anyIndex;
+        }
+
+        /* targets of the references ending at this node, in declaration order */
+        public @NotNull List<T> getTargets() {
+            return targets;
+        }
+
+        public boolean hasChildren() {
+            return anyField != null || anyIndex != null || !fields.isEmpty() || !indexes.isEmpty();
+        }
+    }
+
+    /**
+     * collects references with their targets, {@link #build()} compiles them into the plan
+     */
+    public static final class Builder<T> {
+        private final BuilderNode root = new BuilderNode();
+        private final List<T> targets = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * @apiNote adds a reference, see {@link JsonPathPlan} for the syntax
+         * @param expression
+         * @param target
+         * @return Builder
+         */
+        public @NotNull Builder<T> add(@NotNull String expression, @NotNull T target) {
+            BuilderNode node = root;
+            for (Step step : parse(expression)) {
+                if (step.isWildcard()) {
+                    node = node.wildcard != null ? node.wildcard : (node.wildcard = new BuilderNode());
+                    continue;
+                }
+                if (step.name == null) {
+                    node = node.indexes.computeIfAbsent(step.index, index -> new BuilderNode());
+                    continue;
+                }
+                if (step.index >= 0) {
+                    /* numeric pointer segment, the field node is also reached through the element */
+                    node.pointerIndexes.put(step.index, step.name);
+                }
+                node = node.fields.computeIfAbsent(step.name, name -> new BuilderNode());
+            }
+            node.targets.add(targets.size());
+            targets.add(target);
+            return this;
+        }
+
+        public @NotNull JsonPathPlan<T> build() {
+            Map<Set<BuilderNode>, Node<T>> compiled = new HashMap<>();
+            return new JsonPathPlan<>(compile(Collections.singleton(root), compiled));
+        }
+
+        /* one plan node per set of builder nodes that a document position can be reached through */
+        private @NotNull Node<T> compile(@NotNull Set<BuilderNode> sources, @NotNull Map<Set<BuilderNode>, Node<T>> compiled) {
+            Node<T> existing = compiled.get(sources);
+            if (existing != null) {
+                return existing;
+            }
+            List<Integer> ordinals = new ArrayList<>();
+            Set<BuilderNode> wildcards = new LinkedHashSet<>();
+            Map<String, Set<BuilderNode>> fields = new LinkedHashMap<>();
+            Map<Integer, Set<BuilderNode>> indexes = new LinkedHashMap<>();
+            for (BuilderNode source : sources) {
+                ordinals.addAll(source.targets);
+                if (source.wildcard != null) {
+                    wildcards.add(source.wildcard);
+                }
+                source.fields.forEach((name, child) -> fields.computeIfAbsent(name, key -> identitySet()).add(child));
+                source.indexes.forEach((index, child) -> indexes.computeIfAbsent(index, key -> identitySet()).add(child));
+                source.pointerIndexes.forEach((index, name) -> indexes.computeIfAbsent(index, key -> identitySet()).add(source.fields.get(name)));
+            }
+            ordinals.sort(Comparator.naturalOrder());
+            List<T> nodeTargets = new ArrayList<>(ordinals.size());
+            for (Integer ordinal : ordinals) {
+                nodeTargets.add(targets.get(ordinal));
+            }
+
+            Node<T> node = new Node<>(Collections.unmodifiableList(nodeTargets));
+            compiled.put(sources, node);
+            if (!wildcards.isEmpty()) {
+                node.anyField = compile(wildcards, compiled);
+                node.anyIndex = node.anyField;
+            }
+            /* a named step also takes every wildcard step at the same position */
+            for (Map.Entry<String, Set<BuilderNode>> field : fields.entrySet()) {
+                field.getValue().addAll(wildcards);
+                node.fields.put(field.getKey(), compile(field.getValue(), compiled));
+            }
+            for (Map.Entry<Integer, Set<BuilderNode>> index : indexes.entrySet()) {
+                index.getValue().addAll(wildcards);
+                node.indexes.put(index.getKey(), compile(index.getValue(), compiled));
+            }
+            return node;
+        }
+
+        private static @NotNull Set<BuilderNode> identitySet() {
+            return Collections.newSetFromMap(new IdentityHashMap<>());
+        }
+    }
+
+    /* node of the reference tree before wildcards are merged */
+    private static final class BuilderNode {
+        private final List<Integer> targets = new ArrayList<>();
+        private final Map<String, BuilderNode> fields = new HashMap<>();
+        private final Map<Integer, BuilderNode> indexes = new HashMap<>();
+        /* numeric JSON Pointer segments, element index to the field holding the rest of the reference */
+        private final Map<Integer, String> pointerIndexes = new HashMap<>();
+        private BuilderNode wildcard;
+    }
+}
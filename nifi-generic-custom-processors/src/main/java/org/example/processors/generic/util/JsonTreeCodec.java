@@ -0,0 +1,140 @@
+package org.example.processors.generic.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Moves Gson trees to and from Jackson token streams, so the tree based processors read and write the binary
+ * {@link DataFormat}s without going through json text. Binary values, which json has no type for, become base64 strings.
+ */
+public class JsonTreeCodec {
+
+    private JsonTreeCodec() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * @apiNote builds the value the parser is positioned on, the parser is left on its last token
+     * @param parser
+     * @return JsonElement
+     */
+    public static @NotNull JsonElement read(@NotNull JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == null) {
+            throw new JsonSyntaxException("expected a value at " + parser.currentLocation());
+        }
+        switch (token) {
+            case START_OBJECT:
+                JsonObject jsonObject = new JsonObject();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    parser.nextToken();
+                    jsonObject.add(name, read(parser));
+                }
+                return jsonObject;
+            case START_ARRAY:
+                JsonArray jsonArray = new JsonArray();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    jsonArray.add(read(parser));
+                }
+                return jsonArray;
+            case VALUE_STRING:
+                return new JsonPrimitive(parser.getText());
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return new JsonPrimitive(parser.getNumberValue());
+            case VALUE_TRUE:
+                return new JsonPrimitive(true);
+            case VALUE_FALSE:
+                return new JsonPrimitive(false);
+            case VALUE_NULL:
+                return JsonNull.INSTANCE;
+            case VALUE_EMBEDDED_OBJECT:
+                return new JsonPrimitive(Base64.getEncoder().encodeToString(parser.getBinaryValue()));
+            default:
+                throw new JsonSyntaxException("unexpected " + token + " at " + parser.currentLocation());
+        }
+    }
+
+    /**
+     * @apiNote writes the element as tokens
+     * @param jsonElement
+     * @param generator
+     */
+    public static void write(@NotNull JsonElement jsonElement, @NotNull JsonGenerator generator) throws IOException {
+        if (jsonElement.isJsonObject()) {
+            generator.writeStartObject();
+            for (Map.Entry<String, JsonElement> entry : jsonElement.getAsJsonObject().entrySet()) {
+                generator.writeFieldName(entry.getKey());
+                write(entry.getValue(), generator);
+            }
+            generator.writeEndObject();
+        } else if (jsonElement.isJsonArray()) {
+            generator.writeStartArray();
+            for (JsonElement element : jsonElement.getAsJsonArray()) {
+                write(element, generator);
+            }
+            generator.writeEndArray();
+        } else if (jsonElement.isJsonNull()) {
+            generator.writeNull();
+        } else {
+            JsonPrimitive primitive = jsonElement.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                generator.writeBoolean(primitive.getAsBoolean());
+            } else if (primitive.isNumber()) {
+                writeNumber(primitive.getAsNumber(), generator);
+            } else {
+                generator.writeString(primitive.getAsString());
+            }
+        }
+    }
+
+    /* numbers parsed by Gson keep their text, integers stay integers and anything else is written as a double */
+    private static void writeNumber(@NotNull Number number, @NotNull JsonGenerator generator) throws IOException {
+        if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) {
+            generator.writeNumber(number.longValue());
+        } else if (number instanceof Double || number instanceof Float) {
+            generator.writeNumber(number.doubleValue());
+        } else if (number instanceof BigInteger) {
+            generator.writeNumber((BigInteger) number);
+        } else if (number instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) number);
+        } else {
+            String text = number.toString();
+            if (isInteger(text)) {
+                BigInteger value = new BigInteger(text);
+                if (value.bitLength() < Long.SIZE) {
+                    generator.writeNumber(value.longValue());
+                } else {
+                    generator.writeNumber(value);
+                }
+            } else {
+                generator.writeNumber(number.doubleValue());
+            }
+        }
+    }
+
+    private static boolean isInteger(@NotNull String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c < '0' || c > '9') && !(i == 0 && c == '-')) {
+                return false;
+            }
+        }
+        return !text.isEmpty();
+    }
+}
@@ -0,0 +1,23 @@
+package org.example.processors.generic.util;
+
+import java.util.Collection;
+
+/**
+ * Source of the replacement values used by KeyMapReplacer.
+ */
+@FunctionalInterface
+public interface KeyLookup {
+
+    /**
+     * @param key
+     * @return the mapped value, or null when the key is unknown
+     */
+    String lookup(String key);
+
+    /**
+     * @apiNote announces the keys about to be looked up, so a remote source can fetch them in one request
+     * @param keys
+     */
+    default void prefetch(Collection<String> keys) {
+    }
+}
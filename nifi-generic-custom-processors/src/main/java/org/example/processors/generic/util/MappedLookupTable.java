@@ -0,0 +1,296 @@
+package org.example.processors.generic.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read only lookup table over a memory mapped UTF-8 file with one {@code key,value} entry per line.
+ * The file content stays in the page cache and the open addressing hash index lives in a direct buffer,
+ * so neither grows the java heap. Lookups hash and compare the key against the mapped bytes directly, and the values
+ * of recent hits are kept in a small cache so a hot key allocates nothing. Files are limited to 2GB, one mapping.
+ * A private copy of the file is mapped, not the file itself: lookup exports are usually refreshed by rewriting the file
+ * in place, which would change or cut short the bytes under the index of a live mapping.
+ */
+public class MappedLookupTable implements KeyLookup {
+
+    private static final int FNV_OFFSET = 0x811c9dc5;
+    private static final int FNV_PRIME = 0x01000193;
+    private static final ThreadLocal<byte[]> VALUE_BUFFER = ThreadLocal.withInitial(() -> new byte[256]);
+    private static final int VALUE_CACHE_SIZE = 4096;
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    private final MappedByteBuffer content;
+    /* slot = (line offset + 1) << 32 | key hash, 0 marks an empty slot */
+    private final LongBuffer index;
+    private final int mask;
+    /* entries, counted while the index is built */
+    private int size;
+    /* values of recent hits by index slot, racy writes are safe since a CachedValue is immutable */
+    private final CachedValue[] valueCache;
+    private final int valueCacheMask;
+
+    private MappedLookupTable(MappedByteBuffer content, LongBuffer index) {
+        this.content = content;
+        this.index = index;
+        this.mask = index.capacity() - 1;
+        this.valueCache = new CachedValue[Math.min(VALUE_CACHE_SIZE, index.capacity())];
+        this.valueCacheMask = valueCache.length - 1;
+    }
+
+    /**
+     * @apiNote copies the file, maps the copy and builds the index, later entries win over earlier entries with the
+     * same key. The copy is unlinked once mapped, the mapping keeps it readable until the table is collected
+     * @param file
+     * @return MappedLookupTable
+     */
+    public static @NotNull MappedLookupTable load(@NotNull Path file) throws IOException {
+        MappedByteBuffer content;
+        Path snapshot = snapshot(file);
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Lookup file " + file + " is larger than 2GB");
+            }
+            content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            delete(snapshot);
+        }
+
+        int lines = 0;
+        for (int i = 0; i < content.limit(); i++) {
+            if (content.get(i) == '\n') {
+                lines++;
+            }
+        }
+        // load factor below 0.75
+        int capacity = Integer.highestOneBit(Math.max(16, lines + lines / 3 + 1)) << 1;
+        LongBuffer index = ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        MappedLookupTable table = new MappedLookupTable(content, index);
+
+        int lineStart = 0;
+        while (lineStart < content.limit()) {
+            int lineEnd = lineStart;
+            int separator = -1;
+            while (lineEnd < content.limit() && content.get(lineEnd) != '\n') {
+                if (separator < 0 && content.get(lineEnd) == ',') {
+                    separator = lineEnd;
+                }
+                lineEnd++;
+            }
+            if (separator > lineStart) {
+                if (table.insert(lineStart, hash(content, lineStart, separator))) {
+                    table.size++;
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return table;
+    }
+
+    /* private copy next to the file, in the temporary directory when that directory is not writable */
+    private static @NotNull Path snapshot(@NotNull Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        String prefix = "." + file.getFileName() + "-";
+        Path snapshot;
+        try {
+            snapshot = Files.createTempFile(directory, prefix, SNAPSHOT_SUFFIX);
+        } catch (IOException e) {
+            snapshot = Files.createTempFile(prefix, SNAPSHOT_SUFFIX);
+        }
+        try {
+            Files.copy(file, snapshot, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            delete(snapshot);
+            throw e;
+        }
+        return snapshot;
+    }
+
+    /* a mapped file cannot be deleted on every platform, it is then deleted when the JVM exits */
+    private static void delete(@NotNull Path snapshot) {
+        try {
+            Files.deleteIfExists(snapshot);
+        } catch (IOException e) {
+            snapshot.toFile().deleteOnExit();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String lookup(String key) {
+        if (key == null) {
+            return null;
+        }
+        int hash = hash(key);
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            long entry = index.get(slot);
+            if (entry == 0) {
+                return null;
+            }
+            int offset = (int) (entry >>> 32) - 1;
+            if ((int) entry == hash && keyEquals(offset, key)) {
+                return cachedValue(slot, offset);
+            }
+        }
+    }
+
+    private boolean insert(int offset, int hash) {
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            long entry = index.get(slot);
+            if (entry == 0) {
+                index.put(slot, ((long) (offset + 1) << 32) | (hash & 0xffffffffL));
+                return true;
+            }
+            int existing = (int) (entry >>> 32) - 1;
+            if ((int) entry == hash && sameKey(existing, offset)) {
+                index.put(slot, ((long) (offset + 1) << 32) | (hash & 0xffffffffL));
+                return false;
+            }
+        }
+    }
+
+    private boolean sameKey(int left, int right) {
+        while (true) {
+            byte a = content.get(left++);
+            byte b = content.get(right++);
+            if (a != b) {
+                return false;
+            }
+            if (a == ',') {
+                return true;
+            }
+        }
+    }
+
+    /* compares the UTF-8 encoding of the key with the mapped bytes up to the separator, without encoding into an array */
+    private boolean keyEquals(int offset, @NotNull String key) {
+        int position = offset;
+        int limit = content.limit();
+        for (int i = 0; i < key.length(); i++) {
+            int codePoint = key.codePointAt(i);
+            if (Character.isSupplementaryCodePoint(codePoint)) {
+                i++;
+            }
+            int count = utf8Length(codePoint);
+            if (position + count > limit) {
+                return false;
+            }
+            for (int b = 0; b < count; b++) {
+                if (content.get(position++) != utf8Byte(codePoint, count, b)) {
+                    return false;
+                }
+            }
+        }
+        return position < limit && content.get(position) == ',';
+    }
+
+    private @NotNull String cachedValue(int slot, int offset) {
+        int cacheSlot = slot & valueCacheMask;
+        CachedValue cached = valueCache[cacheSlot];
+        if (cached != null && cached.offset == offset) {
+            return cached.value;
+        }
+        String value = value(offset);
+        valueCache[cacheSlot] = new CachedValue(offset, value);
+        return value;
+    }
+
+    private @NotNull String value(int offset) {
+        int start = offset;
+        while (content.get(start) != ',') {
+            start++;
+        }
+        start++;
+        int end = start;
+        while (end < content.limit() && content.get(end) != '\n') {
+            end++;
+        }
+        if (end > start && content.get(end - 1) == '\r') {
+            end--;
+        }
+        int length = end - start;
+        byte[] buffer = VALUE_BUFFER.get();
+        if (buffer.length < length) {
+            buffer = new byte[Integer.highestOneBit(length) << 1];
+            VALUE_BUFFER.set(buffer);
+        }
+        for (int i = 0; i < length; i++) {
+            buffer[i] = content.get(start + i);
+        }
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static final class CachedValue {
+        private final int offset;
+        private final String value;
+
+        private CachedValue(int offset, @NotNull String value) {
+            this.offset = offset;
+            this.value = value;
+        }
+    }
+
+    private static int hash(@NotNull ByteBuffer content, int start, int end) {
+        int hash = FNV_OFFSET;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ (content.get(i) & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /* same FNV-1a hash as above, over the UTF-8 bytes of the key */
+    private static int hash(@NotNull String key) {
+        int hash = FNV_OFFSET;
+        for (int i = 0; i < key.length(); i++) {
+            int codePoint = key.codePointAt(i);
+            if (Character.isSupplementaryCodePoint(codePoint)) {
+                i++;
+            }
+            int count = utf8Length(codePoint);
+            for (int b = 0; b < count; b++) {
+                hash = (hash ^ (utf8Byte(codePoint, count, b) & 0xff)) * FNV_PRIME;
+            }
+        }
+        return hash;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int utf8Length(int codePoint) {
+        if (codePoint < 0x80) {
+            return 1;
+        } else if (codePoint < 0x800) {
+            return 2;
+        } else if (codePoint < 0x10000) {
+            return 3;
+        }
+        return 4;
+    }
+
+    private static byte utf8Byte(int codePoint, int count, int position) {
+        if (count == 1) {
+            return (byte) codePoint;
+        }
+        int shift = 6 * (count - 1 - position);
+        if (position == 0) {
+            int lead = count == 2 ? 0xc0 : count == 3 ? 0xe0 : 0xf0;
+            return (byte) (lead | (codePoint >> shift));
+        }
+        return (byte) (0x80 | ((codePoint >> shift) & 0x3f));
+    }
+}
@@ -0,0 +1,138 @@
+package org.example.processors.generic.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Caps the heap taken by content loaded as trees at the same time. A task reserves the memory of a FlowFile's tree
+ * before loading it and releases it once the FlowFile is written. Reserving never waits: when the budget is spent the
+ * caller takes a streaming path instead, so a burst of large FlowFiles slows down to streaming speed rather than
+ * filling the heap. Paths that have no streaming alternative {@link #reserve(long)} their memory all the same, beyond
+ * the budget if need be, so the others see it taken. One {@link #shared()} budget serves every processor of the JVM,
+ * since they all draw on the same heap, and is sized once by the {@link #BUDGET_PROPERTY} system property. Sizes are
+ * counted in KiB so budgets beyond 2 GB fit the permits of a {@link Semaphore}.
+ */
+public class MemoryBudget {
+
+    /**
+     * heap per byte of UTF-8 content once it is a Gson tree or a DOM: strings double as UTF-16 and every value,
+     * member and node is an object of its own
+     */
+    public static final int TREE_OVERHEAD = 8;
+
+    /**
+     * system property with the size of the {@link #shared()} budget in bytes, read once when the class is loaded
+     */
+    public static final String BUDGET_PROPERTY = "org.example.processors.generic.memoryBudget";
+    public static final long DEFAULT_BUDGET = 256L * 1024 * 1024;
+
+    private static final long PERMIT_BYTES = 1024L;
+    private static final MemoryBudget SHARED = new MemoryBudget(Long.getLong(BUDGET_PROPERTY, DEFAULT_BUDGET));
+
+    private final Permits permits;
+    private final int capacity;
+
+    /**
+     * @param bytes largest amount of memory reserved at the same time
+     */
+    public MemoryBudget(long bytes) {
+        this.capacity = permitsOf(bytes);
+        this.permits = new Permits(capacity);
+    }
+
+    /**
+     * @apiNote the budget shared by the processors of the JVM
+     * @return MemoryBudget
+     */
+    public static @NotNull MemoryBudget shared() {
+        return SHARED;
+    }
+
+    private static int permitsOf(long bytes) {
+        if (bytes < PERMIT_BYTES) {
+            throw new IllegalArgumentException("memory budget must be at least 1 KB, got " + bytes + " bytes");
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes / PERMIT_BYTES);
+    }
+
+    /**
+     * @apiNote memory a tree of the content takes, {@link #TREE_OVERHEAD} times its size
+     * @param contentBytes size of the uncompressed content
+     * @return bytes
+     */
+    public static long treeBytes(long contentBytes) {
+        return Math.min(contentBytes, Long.MAX_VALUE / TREE_OVERHEAD) * TREE_OVERHEAD;
+    }
+
+    /**
+     * @apiNote reserves the bytes if the budget has room for them, to be released by closing the reservation
+     * @param bytes
+     * @return Reservation, null when the budget is spent or smaller than the bytes
+     */
+    public @Nullable Reservation tryReserve(long bytes) {
+        long needed = (bytes + PERMIT_BYTES - 1) / PERMIT_BYTES;
+        if (needed > capacity) {
+            return null;
+        }
+        int count = (int) Math.max(1, needed);
+        return permits.tryAcquire(count) ? new Reservation(this, count) : null;
+    }
+
+    /**
+     * @apiNote reserves the bytes whether the budget has room for them or not, for memory a task takes anyway. Until
+     * the reservation is closed {@link #tryReserve(long)} only succeeds for what is left, if anything
+     * @param bytes
+     * @return Reservation
+     */
+    public @NotNull Reservation reserve(long bytes) {
+        long needed = (Math.max(0, bytes) + PERMIT_BYTES - 1) / PERMIT_BYTES;
+        int count = (int) Math.min(Integer.MAX_VALUE, needed);
+        permits.reduce(count);
+        return new Reservation(this, count);
+    }
+
+    /* budget in bytes */
+    public long getCapacity() {
+        return capacity * PERMIT_BYTES;
+    }
+
+    /* bytes currently reserved, rounded up to whole KiB per reservation, more than the capacity when it is overdrawn */
+    public long getReserved() {
+        return Math.max(0, capacity - (long) permits.availablePermits()) * PERMIT_BYTES;
+    }
+
+    /* semaphore whose permits can be taken without waiting, even beyond the ones available */
+    private static final class Permits extends Semaphore {
+        private Permits(int count) {
+            super(count);
+        }
+
+        private void reduce(int count) {
+            reducePermits(count);
+        }
+    }
+
+    /**
+     * bytes reserved until the reservation is closed, closing it again has no effect
+     */
+    public static final class Reservation implements AutoCloseable {
+        private final MemoryBudget budget;
+        private final int count;
+        private boolean released;
+
+        private Reservation(@NotNull MemoryBudget budget, int count) {
+            this.budget = budget;
+            this.count = count;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                budget.permits.release(count);
+            }
+        }
+    }
+}
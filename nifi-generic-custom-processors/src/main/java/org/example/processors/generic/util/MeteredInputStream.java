@@ -0,0 +1,49 @@
+package org.example.processors.generic.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Charges the time spent reading to {@link ProcessorMetrics.Phase#READ}.
+ */
+public class MeteredInputStream extends FilterInputStream {
+
+    private final PhaseTimer timer;
+
+    public MeteredInputStream(@NotNull InputStream in, @NotNull PhaseTimer timer) {
+        super(in);
+        this.timer = timer;
+    }
+
+    @Override
+    public int read() throws IOException {
+        ProcessorMetrics.Phase previous = timer.switchTo(ProcessorMetrics.Phase.READ);
+        try {
+            return in.read();
+        } finally {
+            timer.switchTo(previous);
+        }
+    }
+
+    @Override
+    public int read(byte @NotNull [] buffer, int offset, int length) throws IOException {
+        ProcessorMetrics.Phase previous = timer.switchTo(ProcessorMetrics.Phase.READ);
+        try {
+            return in.read(buffer, offset, length);
+        } finally {
+            timer.switchTo(previous);
+        }
+    }
+
+    /* the session owns the underlying stream, parsers that close their input must not close it */
+    @Override
+    public void close() {
+    }
+
+    public PhaseTimer getTimer() {
+        return timer;
+    }
+}
@@ -0,0 +1,61 @@
+package org.example.processors.generic.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Charges the time spent writing to {@link ProcessorMetrics.Phase#WRITE}.
+ */
+public class MeteredOutputStream extends FilterOutputStream {
+
+    private final PhaseTimer timer;
+
+    public MeteredOutputStream(@NotNull OutputStream out, @NotNull PhaseTimer timer) {
+        super(out);
+        this.timer = timer;
+    }
+
+    @Override
+    public void write(int value) throws IOException {
+        ProcessorMetrics.Phase previous = timer.switchTo(ProcessorMetrics.Phase.WRITE);
+        try {
+            out.write(value);
+        } finally {
+            timer.switchTo(previous);
+        }
+    }
+
+    /* FilterOutputStream would write byte by byte */
+    @Override
+    public void write(byte @NotNull [] buffer, int offset, int length) throws IOException {
+        ProcessorMetrics.Phase previous = timer.switchTo(ProcessorMetrics.Phase.WRITE);
+        try {
+            out.write(buffer, offset, length);
+        } finally {
+            timer.switchTo(previous);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ProcessorMetrics.Phase previous = timer.switchTo(ProcessorMetrics.Phase.WRITE);
+        try {
+            out.flush();
+        } finally {
+            timer.switchTo(previous);
+        }
+    }
+
+    /* the session owns the underlying stream */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    public PhaseTimer getTimer() {
+        return timer;
+    }
+}
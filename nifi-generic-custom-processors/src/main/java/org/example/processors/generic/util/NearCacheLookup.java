@@ -0,0 +1,104 @@
+package org.example.processors.generic.util;
+
+import org.apache.nifi.distributed.cache.client.Deserializer;
+import org.apache.nifi.distributed.cache.client.DistributedMapCacheClient;
+import org.apache.nifi.distributed.cache.client.Serializer;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link KeyLookup} resolving keys through a {@link DistributedMapCacheClient}, so every node and every processor
+ * shares one map that is updated without touching the flow. A bounded local near-cache sits in front of the service:
+ * values, and keys the service does not know, are kept for the time to live and then asked for again.
+ * {@link #prefetch(Collection)} resolves the keys of a whole FlowFile missing from the near-cache in a single request.
+ */
+public class NearCacheLookup implements KeyLookup {
+
+    private static final Serializer<String> KEY_SERIALIZER = (value, output) -> output.write(value.getBytes(StandardCharsets.UTF_8));
+    /* the service hands back null or no bytes for a key it does not hold */
+    private static final Deserializer<String> VALUE_DESERIALIZER = input -> input == null || input.length == 0 ? null : new String(input, StandardCharsets.UTF_8);
+
+    private final DistributedMapCacheClient client;
+    private final BoundedLruCache<String, Entry> nearCache;
+    private final long ttlNanos;
+    private final LongAdder requests = new LongAdder();
+
+    /**
+     * @param client
+     * @param maxSize entries kept locally
+     * @param ttlMillis how long a local entry is used before the service is asked again
+     */
+    public NearCacheLookup(@NotNull DistributedMapCacheClient client, int maxSize, long ttlMillis) {
+        this.client = client;
+        this.nearCache = new BoundedLruCache<>(maxSize);
+        this.ttlNanos = ttlMillis * 1_000_000L;
+    }
+
+    @Override
+    public String lookup(String key) {
+        Entry entry = fresh(key);
+        if (entry != null) {
+            return entry.value;
+        }
+        try {
+            requests.increment();
+            String value = client.get(key, KEY_SERIALIZER, VALUE_DESERIALIZER);
+            nearCache.put(key, new Entry(value, System.nanoTime() + ttlNanos));
+            return value;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to look up " + key, e);
+        }
+    }
+
+    @Override
+    public void prefetch(@NotNull Collection<String> keys) {
+        Set<String> missing = new HashSet<>();
+        for (String key : keys) {
+            if (key != null && fresh(key) == null) {
+                missing.add(key);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        try {
+            requests.increment();
+            Map<String, String> values = client.subMap(missing, KEY_SERIALIZER, VALUE_DESERIALIZER);
+            long expiresAt = System.nanoTime() + ttlNanos;
+            for (String key : missing) {
+                nearCache.put(key, new Entry(values.get(key), expiresAt));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to look up " + missing.size() + " keys", e);
+        }
+    }
+
+    /* requests sent to the service since the lookup was created */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    private Entry fresh(@NotNull String key) {
+        Entry entry = nearCache.get(key);
+        return entry != null && entry.expiresAt - System.nanoTime() > 0 ? entry : null;
+    }
+
+    /* value of a key, null when the service does not hold the key */
+    private static final class Entry {
+        private final String value;
+        private final long expiresAt;
+
+        private Entry(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.example.processors.generic.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of objects that are expensive to create and not thread safe, such as document builders, streaming
+ * converters and byte buffers. A borrowed object belongs to the borrowing thread until it is released, so it never
+ * needs locking while in use. Borrowing never waits: an empty pool creates a new object, and an object released
+ * into a full pool is left to the garbage collector, so the pool holds at most its capacity whatever the load.
+ * Unlike a {@link ThreadLocal} nothing stays attached to the threads of the shared NiFi thread pool once the
+ * processor is stopped.
+ * @param <T> pooled object
+ */
+public class ObjectPool<T> {
+
+    private final BlockingQueue<T> idle;
+    private final Supplier<? extends T> factory;
+    private final Consumer<? super T> reset;
+    private final int capacity;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity largest number of idle objects kept, usually the number of concurrent tasks
+     * @param factory creates an object when the pool is empty
+     * @param reset clears an object when it is released, null when objects need no clearing
+     */
+    public ObjectPool(int capacity, @NotNull Supplier<? extends T> factory, @Nullable Consumer<? super T> reset) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("pool capacity must be at least 1, got " + capacity);
+        }
+        this.idle = new ArrayBlockingQueue<>(capacity);
+        this.factory = factory;
+        this.reset = reset;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @apiNote an idle object, or a new one when none is idle. It must be given back with {@link #release(Object)}
+     * @return T
+     */
+    public @NotNull T borrow() {
+        T object = idle.poll();
+        if (object != null) {
+            hits.increment();
+            return object;
+        }
+        misses.increment();
+        return factory.get();
+    }
+
+    /**
+     * @apiNote gives a borrowed object back, it must not be used by the caller afterwards
+     * @param object
+     */
+    public void release(@NotNull T object) {
+        if (reset != null) {
+            reset.accept(object);
+        }
+        idle.offer(object);
+    }
+
+    /**
+     * @apiNote borrows an object for a try with resources block
+     * @return Lease
+     */
+    public @NotNull Lease<T> lease() {
+        return new Lease<>(this, borrow());
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /* objects waiting to be borrowed */
+    public int getIdle() {
+        return idle.size();
+    }
+
+    /* borrows answered with an idle object since the pool was created */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /* borrows that had to create an object since the pool was created */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * borrowed object released when the lease is closed
+     * @param <T> pooled object
+     */
+    public static final class Lease<T> implements AutoCloseable {
+        private final ObjectPool<T> pool;
+        private final T object;
+
+        private Lease(@NotNull ObjectPool<T> pool, @NotNull T object) {
+            this.pool = pool;
+            this.object = object;
+        }
+
+        public @NotNull T get() {
+            return object;
+        }
+
+        @Override
+        public void close() {
+            pool.release(object);
+        }
+    }
+}
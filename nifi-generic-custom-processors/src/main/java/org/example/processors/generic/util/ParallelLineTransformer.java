@@ -0,0 +1,241 @@
+package org.example.processors.generic.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Transforms line delimited content on a {@link ForkJoinPool}. The input is cut into chunks of whole lines, the
+ * chunks are transformed in parallel and written in their original order. At most a window of
+ * chunks is in flight, so memory stays bounded by roughly {@code window * chunkSize} whatever the content size.
+ * Chunk and output buffers are pooled, so after the first FlowFiles a chunk costs no allocation of its size.
+ */
+public class ParallelLineTransformer {
+
+    /**
+     * transforms a single line, given without its line terminator, and writes the result without a terminator
+     */
+    @FunctionalInterface
+    public interface LineTransform {
+        void transform(byte[] buffer, int offset, int length, @NotNull OutputStream outputStream) throws IOException;
+    }
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final int window;
+    private final LineTransform lineTransform;
+    private final ObjectPool<byte[]> chunkBuffers;
+    private final ObjectPool<ByteArrayOutputStream> outputBuffers;
+
+    /**
+     * @param pool
+     * @param chunkSize
+     * @param lineTransform
+     * @param concurrentTransforms number of contents transformed at the same time, sizes the buffer pools
+     */
+    public ParallelLineTransformer(@NotNull ForkJoinPool pool, int chunkSize, @NotNull LineTransform lineTransform, int concurrentTransforms) {
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        /* enough chunks to keep every worker busy while the oldest one is written */
+        this.window = pool.getParallelism() * 2;
+        this.lineTransform = lineTransform;
+        int transforms = Math.max(1, concurrentTransforms);
+        /* one more chunk than the window, the one being read while the window is full */
+        this.chunkBuffers = new ObjectPool<>((window + 1) * transforms, () -> new byte[chunkSize], null);
+        this.outputBuffers = new ObjectPool<>(window * transforms, () -> new ByteArrayOutputStream(chunkSize), ByteArrayOutputStream::reset);
+    }
+
+    public @NotNull ObjectPool<byte[]> getChunkBuffers() {
+        return chunkBuffers;
+    }
+
+    public @NotNull ObjectPool<ByteArrayOutputStream> getOutputBuffers() {
+        return outputBuffers;
+    }
+
+    /**
+     * @apiNote transforms every non blank line of the input, output lines end with a line feed
+     * @param inputStream
+     * @param outputStream
+     * @return number of lines transformed
+     */
+    public long transform(@NotNull InputStream inputStream, @NotNull OutputStream outputStream) throws IOException {
+        Deque<ForkJoinTask<ChunkResult>> inFlight = new ArrayDeque<>();
+        long lines = 0;
+        try {
+            ChunkReader reader = new ChunkReader(inputStream, chunkSize, chunkBuffers);
+            byte[] chunk;
+            while ((chunk = reader.next()) != null) {
+                final byte[] lineChunk = chunk;
+                final int chunkLength = reader.length;
+                inFlight.addLast(pool.submit(() -> {
+                    try {
+                        return transformChunk(lineChunk, chunkLength);
+                    } finally {
+                        releaseChunk(lineChunk);
+                    }
+                }));
+                if (inFlight.size() >= window) {
+                    lines += writeOldest(inFlight, outputStream);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                lines += writeOldest(inFlight, outputStream);
+            }
+            return lines;
+        } finally {
+            /* a failed chunk fails the content, the rest is not needed anymore */
+            for (ForkJoinTask<ChunkResult> task : inFlight) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    /* gives a chunk back to the pool, a chunk grown past the chunk size is not pooled, its pooled buffer went back when it was replaced */
+    private void releaseChunk(byte @NotNull [] chunk) {
+        if (chunk.length == chunkSize) {
+            chunkBuffers.release(chunk);
+        }
+    }
+
+    private long writeOldest(@NotNull Deque<ForkJoinTask<ChunkResult>> inFlight, @NotNull OutputStream outputStream) throws IOException {
+        ChunkResult result;
+        try {
+            result = inFlight.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while transforming lines", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Unable to transform lines", e.getCause());
+        }
+        result.output.writeTo(outputStream);
+        outputBuffers.release(result.output);
+        return result.lines;
+    }
+
+    private @NotNull ChunkResult transformChunk(byte @NotNull [] chunk, int length) throws IOException {
+        ChunkResult result = new ChunkResult(outputBuffers.borrow());
+        int start = 0;
+        while (start < length) {
+            int end = start;
+            while (end < length && chunk[end] != '\n') {
+                end++;
+            }
+            int lineEnd = end > start && chunk[end - 1] == '\r' ? end - 1 : end;
+            if (!isBlank(chunk, start, lineEnd)) {
+                lineTransform.transform(chunk, start, lineEnd - start, result.output);
+                result.output.write('\n');
+                result.lines++;
+            }
+            start = end + 1;
+        }
+        return result;
+    }
+
+    private static boolean isBlank(byte @NotNull [] buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if ((buffer[i] & 0xFF) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class ChunkResult {
+        private final ByteArrayOutputStream output;
+        private long lines;
+
+        private ChunkResult(@NotNull ByteArrayOutputStream output) {
+            this.output = output;
+        }
+    }
+
+    /**
+     * cuts the input into chunks of at least chunkSize bytes that end after a line feed or at the end of the input,
+     * so no line is ever split between chunks
+     */
+    private static final class ChunkReader {
+        private final InputStream inputStream;
+        private final int chunkSize;
+        private final ObjectPool<byte[]> buffers;
+        /* bytes read past the end of the previous chunk, valid up to carryLength */
+        private byte[] carry = new byte[0];
+        private int carryLength;
+        private boolean eof;
+        private int length;
+
+        private ChunkReader(InputStream inputStream, int chunkSize, @NotNull ObjectPool<byte[]> buffers) {
+            this.inputStream = inputStream;
+            this.chunkSize = chunkSize;
+            this.buffers = buffers;
+        }
+
+        /* larger copy of the buffer, the pooled buffer it replaces goes back to the pool */
+        private byte @NotNull [] grow(byte @NotNull [] buffer, int size) {
+            byte[] grown = Arrays.copyOf(buffer, size);
+            if (buffer.length == chunkSize) {
+                buffers.release(buffer);
+            }
+            return grown;
+        }
+
+        /* next chunk, valid up to length, or null at the end of the input. The chunk is borrowed from the pool */
+        private byte[] next() throws IOException {
+            byte[] buffer = buffers.borrow();
+            if (buffer.length < carryLength) {
+                buffer = grow(buffer, carryLength);
+            }
+            System.arraycopy(carry, 0, buffer, 0, carryLength);
+            int read = carryLength;
+            int lineFeed = lastLineFeed(buffer, 0, read);
+            while (!eof && (lineFeed < 0 || read < chunkSize)) {
+                if (read == buffer.length) {
+                    /* a line longer than the chunk, grow until it ends */
+                    buffer = grow(buffer, buffer.length * 2);
+                }
+                int count = inputStream.read(buffer, read, buffer.length - read);
+                if (count < 0) {
+                    eof = true;
+                } else {
+                    int found = lastLineFeed(buffer, read, read + count);
+                    lineFeed = found >= 0 ? found : lineFeed;
+                    read += count;
+                }
+            }
+            if (read == 0) {
+                if (buffer.length == chunkSize) {
+                    buffers.release(buffer);
+                }
+                return null;
+            }
+            length = eof ? read : lineFeed + 1;
+            carryLength = read - length;
+            if (carry.length < carryLength) {
+                carry = new byte[Math.max(carryLength, carry.length * 2)];
+            }
+            System.arraycopy(buffer, length, carry, 0, carryLength);
+            return buffer;
+        }
+
+        private static int lastLineFeed(byte @NotNull [] buffer, int from, int to) {
+            for (int i = to - 1; i >= from; i--) {
+                if (buffer[i] == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.processors.generic.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Splits the time spent on one FlowFile into {@link ProcessorMetrics.Phase}s. Exactly one phase is active at a time,
+ * switching phases charges the time since the last switch to the phase that was active, so nested phases such as a
+ * read inside a parse are never counted twice. Used by a single thread.
+ */
+public class PhaseTimer {
+
+    /** timer that records nothing, for streams that are not metered */
+    public static final PhaseTimer NONE = new PhaseTimer() {
+        @Override
+        public ProcessorMetrics.Phase switchTo(ProcessorMetrics.Phase phase) {
+            return phase;
+        }
+    };
+
+    private final long[] nanos = new long[ProcessorMetrics.Phase.values().length];
+    private ProcessorMetrics.Phase current = ProcessorMetrics.Phase.TRANSFORM;
+    private long since = System.nanoTime();
+    private long records = 1;
+
+    /**
+     * @apiNote makes the given phase the active one
+     * @param phase
+     * @return the phase that was active before, to switch back to
+     */
+    public ProcessorMetrics.Phase switchTo(@NotNull ProcessorMetrics.Phase phase) {
+        long now = System.nanoTime();
+        nanos[current.ordinal()] += now - since;
+        since = now;
+        ProcessorMetrics.Phase previous = current;
+        current = phase;
+        return previous;
+    }
+
+    /**
+     * @apiNote stops the timer, the active phase is charged up to now
+     */
+    public void stop() {
+        switchTo(current);
+    }
+
+    public long getNanos(@NotNull ProcessorMetrics.Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * @apiNote number of records the FlowFile held, one unless the transform says otherwise
+     * @param records
+     */
+    public void setRecords(long records) {
+        this.records = records;
+    }
+
+    /**
+     * @apiNote timer of a metered stream, {@link #NONE} for any other stream
+     * @param inputStream
+     * @return PhaseTimer
+     */
+    public static @NotNull PhaseTimer of(InputStream inputStream) {
+        return inputStream instanceof MeteredInputStream ? ((MeteredInputStream) inputStream).getTimer() : NONE;
+    }
+
+    /**
+     * @apiNote timer of a metered stream, {@link #NONE} for any other stream
+     * @param outputStream
+     * @return PhaseTimer
+     */
+    public static @NotNull PhaseTimer of(OutputStream outputStream) {
+        return outputStream instanceof MeteredOutputStream ? ((MeteredOutputStream) outputStream).getTimer() : NONE;
+    }
+}
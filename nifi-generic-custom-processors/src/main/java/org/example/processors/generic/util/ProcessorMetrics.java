@@ -0,0 +1,273 @@
+package org.example.processors.generic.util;
+
+import org.apache.nifi.processor.ProcessSession;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals of one processor instance: time per {@link Phase}, bytes in and out, records and failures by cause.
+ * Every FlowFile is also reported through {@link ProcessSession#adjustCounter(String, long, boolean)} so the numbers
+ * show up in the NiFi counters, optionally together with a latency histogram per phase.
+ * Safe for concurrent tasks.
+ */
+public class ProcessorMetrics {
+
+    public enum Phase {
+        /* waiting on the content repository for input */
+        READ("Read"),
+        /* turning the content into a tree or tokens */
+        PARSE("Parse"),
+        /* the processor's own work, everything not charged to another phase */
+        TRANSFORM("Transform"),
+        /* turning the result back into bytes */
+        SERIALIZE("Serialize"),
+        /* waiting on the content repository for output */
+        WRITE("Write");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    public static final String COUNTER_FLOWFILES = "FlowFiles";
+    public static final String COUNTER_BYTES_IN = "Bytes In";
+    public static final String COUNTER_BYTES_OUT = "Bytes Out";
+    public static final String COUNTER_RECORDS = "Records";
+    public static final String COUNTER_FAILURES = "Failures";
+    public static final String COUNTER_POOL_HITS = "Pool Hits";
+    public static final String COUNTER_POOL_MISSES = "Pool Misses";
+    public static final String COUNTER_ENGINE = "Engine";
+    public static final String COUNTER_BUDGET_FALLBACKS = "Memory Budget Fallbacks";
+
+    /* upper bounds of the histogram buckets in nanos, the last bucket takes everything slower */
+    private static final long[] BUCKET_BOUNDS = {10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L};
+    private static final String[] BUCKET_LABELS = {"<= 10 us", "<= 100 us", "<= 1 ms", "<= 10 ms", "<= 100 ms", "<= 1 s", "> 1 s"};
+
+    private static final String[] TIME_COUNTERS = new String[Phase.values().length];
+    private static final String[][] LATENCY_COUNTERS = new String[Phase.values().length][BUCKET_LABELS.length];
+
+    static {
+        /* counter names are built once, not for every FlowFile */
+        for (Phase phase : Phase.values()) {
+            TIME_COUNTERS[phase.ordinal()] = phase.getLabel() + " Time (ns)";
+            for (int bucket = 0; bucket < BUCKET_LABELS.length; bucket++) {
+                LATENCY_COUNTERS[phase.ordinal()][bucket] = phase.getLabel() + " Latency " + BUCKET_LABELS[bucket];
+            }
+        }
+    }
+
+    private final boolean histograms;
+    private final LongAdder flowFiles = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder records = new LongAdder();
+    private final LongAdder[] phaseNanos = newAdders(Phase.values().length);
+    private final LongAdder[][] phaseBuckets;
+    private final ConcurrentMap<String, LongAdder> failures = new ConcurrentHashMap<>();
+    /* hits and misses by pool name */
+    private final ConcurrentMap<String, LongAdder[]> pools = new ConcurrentHashMap<>();
+    /* FlowFiles by the engine chosen for them in AUTO processing mode */
+    private final ConcurrentMap<String, LongAdder> engines = new ConcurrentHashMap<>();
+    private final LongAdder budgetFallbacks = new LongAdder();
+
+    public ProcessorMetrics(boolean histograms) {
+        this.histograms = histograms;
+        this.phaseBuckets = new LongAdder[Phase.values().length][];
+        if (histograms) {
+            for (int i = 0; i < phaseBuckets.length; i++) {
+                phaseBuckets[i] = newAdders(BUCKET_LABELS.length);
+            }
+        }
+    }
+
+    private static LongAdder @NotNull [] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * @apiNote records a FlowFile that was written successfully
+     * @param session
+     * @param timer stopped timer of the FlowFile
+     * @param in bytes read
+     * @param out bytes written
+     */
+    public void recordSuccess(@NotNull ProcessSession session, @NotNull PhaseTimer timer, long in, long out) {
+        flowFiles.increment();
+        bytesIn.add(in);
+        bytesOut.add(out);
+        records.add(timer.getRecords());
+        session.adjustCounter(COUNTER_FLOWFILES, 1, false);
+        session.adjustCounter(COUNTER_BYTES_IN, in, false);
+        session.adjustCounter(COUNTER_BYTES_OUT, out, false);
+        session.adjustCounter(COUNTER_RECORDS, timer.getRecords(), false);
+        for (Phase phase : Phase.values()) {
+            long nanos = timer.getNanos(phase);
+            phaseNanos[phase.ordinal()].add(nanos);
+            session.adjustCounter(TIME_COUNTERS[phase.ordinal()], nanos, false);
+            if (histograms) {
+                int bucket = bucket(nanos);
+                phaseBuckets[phase.ordinal()][bucket].increment();
+                session.adjustCounter(LATENCY_COUNTERS[phase.ordinal()][bucket], 1, false);
+            }
+        }
+    }
+
+    /**
+     * @apiNote records a FlowFile routed to failure, the cause is the simple class name of the innermost exception
+     * @param session
+     * @param exception
+     */
+    public void recordFailure(@NotNull ProcessSession session, @NotNull Throwable exception) {
+        recordFailure(session, causeOf(exception));
+    }
+
+    /**
+     * @apiNote records a FlowFile routed to failure for the given cause
+     * @param session
+     * @param cause
+     */
+    public void recordFailure(@NotNull ProcessSession session, @NotNull String cause) {
+        failures.computeIfAbsent(cause, key -> new LongAdder()).increment();
+        session.adjustCounter(COUNTER_FAILURES, 1, false);
+        session.adjustCounter(COUNTER_FAILURES + ": " + cause, 1, false);
+    }
+
+    /**
+     * @apiNote records borrows from a pool since it was last recorded, a miss created a new object
+     * @param session
+     * @param pool name of the pool
+     * @param hits
+     * @param misses
+     */
+    public void recordPool(@NotNull ProcessSession session, @NotNull String pool, long hits, long misses) {
+        LongAdder[] counts = pools.computeIfAbsent(pool, key -> newAdders(2));
+        counts[0].add(hits);
+        counts[1].add(misses);
+        session.adjustCounter(COUNTER_POOL_HITS, hits, false);
+        session.adjustCounter(COUNTER_POOL_MISSES, misses, false);
+        session.adjustCounter(COUNTER_POOL_HITS + ": " + pool, hits, false);
+        session.adjustCounter(COUNTER_POOL_MISSES + ": " + pool, misses, false);
+    }
+
+    /**
+     * @apiNote records the engine chosen for a FlowFile in AUTO processing mode
+     * @param session
+     * @param engine name of the engine
+     * @param budgetFallback whether the FlowFile was small enough for the tree but the memory budget was spent
+     */
+    public void recordEngine(@NotNull ProcessSession session, @NotNull String engine, boolean budgetFallback) {
+        engines.computeIfAbsent(engine, key -> new LongAdder()).increment();
+        session.adjustCounter(COUNTER_ENGINE + ": " + engine, 1, false);
+        if (budgetFallback) {
+            budgetFallbacks.increment();
+            session.adjustCounter(COUNTER_BUDGET_FALLBACKS, 1, false);
+        }
+    }
+
+    static @NotNull String causeOf(@NotNull Throwable exception) {
+        Throwable cause = exception;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause.getClass().getSimpleName();
+    }
+
+    private static int bucket(long nanos) {
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS.length && nanos > BUCKET_BOUNDS[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    /**
+     * @apiNote totals since the processor was scheduled, keyed like the counters, for reporting or status output
+     * @return Map
+     */
+    public @NotNull Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        snapshot.put(COUNTER_FLOWFILES, flowFiles.sum());
+        snapshot.put(COUNTER_BYTES_IN, bytesIn.sum());
+        snapshot.put(COUNTER_BYTES_OUT, bytesOut.sum());
+        snapshot.put(COUNTER_RECORDS, records.sum());
+        for (Phase phase : Phase.values()) {
+            snapshot.put(TIME_COUNTERS[phase.ordinal()], phaseNanos[phase.ordinal()].sum());
+            if (histograms) {
+                for (int bucket = 0; bucket < BUCKET_LABELS.length; bucket++) {
+                    snapshot.put(LATENCY_COUNTERS[phase.ordinal()][bucket], phaseBuckets[phase.ordinal()][bucket].sum());
+                }
+            }
+        }
+        long failed = 0;
+        for (Map.Entry<String, LongAdder> failure : failures.entrySet()) {
+            failed += failure.getValue().sum();
+            snapshot.put(COUNTER_FAILURES + ": " + failure.getKey(), failure.getValue().sum());
+        }
+        snapshot.put(COUNTER_FAILURES, failed);
+        if (!pools.isEmpty()) {
+            long hits = 0;
+            long misses = 0;
+            for (Map.Entry<String, LongAdder[]> pool : pools.entrySet()) {
+                hits += pool.getValue()[0].sum();
+                misses += pool.getValue()[1].sum();
+                snapshot.put(COUNTER_POOL_HITS + ": " + pool.getKey(), pool.getValue()[0].sum());
+                snapshot.put(COUNTER_POOL_MISSES + ": " + pool.getKey(), pool.getValue()[1].sum());
+            }
+            snapshot.put(COUNTER_POOL_HITS, hits);
+            snapshot.put(COUNTER_POOL_MISSES, misses);
+        }
+        if (!engines.isEmpty()) {
+            for (Map.Entry<String, LongAdder> engine : engines.entrySet()) {
+                snapshot.put(COUNTER_ENGINE + ": " + engine.getKey(), engine.getValue().sum());
+            }
+            snapshot.put(COUNTER_BUDGET_FALLBACKS, budgetFallbacks.sum());
+        }
+        return snapshot;
+    }
+
+    /**
+     * @apiNote one line summary, share of time per phase and throughput figures
+     * @return String
+     */
+    public @NotNull String summary() {
+        long total = 0;
+        for (LongAdder nanos : phaseNanos) {
+            total += nanos.sum();
+        }
+        StringBuilder summary = new StringBuilder();
+        summary.append(flowFiles.sum()).append(" FlowFiles, ")
+                .append(records.sum()).append(" records, ")
+                .append(bytesIn.sum()).append(" bytes in, ")
+                .append(bytesOut.sum()).append(" bytes out");
+        for (Phase phase : Phase.values()) {
+            long nanos = phaseNanos[phase.ordinal()].sum();
+            summary.append(", ").append(phase.getLabel()).append(' ')
+                    .append(nanos / 1_000_000).append(" ms (")
+                    .append(total == 0 ? 0 : nanos * 100 / total).append("%)");
+        }
+        for (Map.Entry<String, LongAdder> failure : failures.entrySet()) {
+            summary.append(", ").append(failure.getKey()).append(' ').append(failure.getValue().sum());
+        }
+        for (Map.Entry<String, LongAdder[]> pool : pools.entrySet()) {
+            summary.append(", pool ").append(pool.getKey()).append(' ')
+                    .append(pool.getValue()[0].sum()).append(" hits ")
+                    .append(pool.getValue()[1].sum()).append(" misses");
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,109 @@
+package org.example.processors.generic.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A json field bound to a regex pattern compiled once when the processor is scheduled.
+ * Patterns that are plain literals never reach the regex engine, and patterns starting with a
+ * literal prefix skip it for every value that does not contain that prefix. With a result cache a value seen before
+ * is answered without running the pattern again, values longer than {@link #MAX_CACHED_VALUE_LENGTH} are not cached.
+ */
+public class RegexRule {
+
+    private static final String META_CHARACTERS = "\\^$.|?*+()[]{}";
+    private static final String QUANTIFIERS = "?*+{";
+    /* keeps the heap of a full cache bounded by the entry count, long values rarely repeat anyway */
+    public static final int MAX_CACHED_VALUE_LENGTH = 256;
+
+    private final String fieldName;
+    private final Pattern pattern;
+    private final String literalPrefix;
+    private final boolean literal;
+    private final BoundedLruCache<String, String> resultCache;
+
+    public RegexRule(@NotNull String fieldName, @NotNull String regexPattern) {
+        this(fieldName, regexPattern, null);
+    }
+
+    /**
+     * @param fieldName
+     * @param regexPattern
+     * @param resultCache input value to result, or null to run the pattern for every value
+     */
+    public RegexRule(@NotNull String fieldName, @NotNull String regexPattern, @Nullable BoundedLruCache<String, String> resultCache) {
+        this.fieldName = fieldName;
+        this.pattern = Pattern.compile(regexPattern);
+        this.literalPrefix = literalPrefix(regexPattern);
+        this.literal = literalPrefix.length() == regexPattern.length();
+        this.resultCache = resultCache;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    public @Nullable BoundedLruCache<String, String> getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * @apiNote same result as {@link Helper#applyRegexPattern(String, Pattern)}
+     * @param value
+     * @return String
+     */
+    public String apply(@NotNull String value) {
+        if (literalPrefix.isEmpty()) {
+            if (resultCache != null && value.length() <= MAX_CACHED_VALUE_LENGTH) {
+                return resultCache.computeIfAbsent(value, key -> Helper.applyRegexPattern(key, pattern));
+            }
+            return Helper.applyRegexPattern(value, pattern);
+        }
+        int index = value.indexOf(literalPrefix);
+        if (index < 0) {
+            // every match starts with the prefix, so there is nothing to find
+            return value;
+        }
+        if (literal) {
+            return literalPrefix;
+        }
+        if (resultCache != null && value.length() <= MAX_CACHED_VALUE_LENGTH) {
+            return resultCache.computeIfAbsent(value, key -> find(key, index));
+        }
+        return find(value, index);
+    }
+
+    private String find(@NotNull String value, int index) {
+        // no match can start before the first occurrence of the prefix
+        Matcher matcher = pattern.matcher(value);
+        return matcher.find(index) ? matcher.group() : value;
+    }
+
+    /**
+     * @apiNote leading characters every match has to start with, empty when the pattern has no such prefix
+     * @param regexPattern
+     * @return String
+     */
+    static @NotNull String literalPrefix(@NotNull String regexPattern) {
+        if (regexPattern.indexOf('|') >= 0) {
+            // an alternative branch can match without the prefix
+            return "";
+        }
+        int end = 0;
+        while (end < regexPattern.length() && META_CHARACTERS.indexOf(regexPattern.charAt(end)) < 0) {
+            end++;
+        }
+        if (end < regexPattern.length() && QUANTIFIERS.indexOf(regexPattern.charAt(end)) >= 0) {
+            // the last literal character is optional or repeated
+            end--;
+        }
+        return end <= 0 ? "" : regexPattern.substring(0, end);
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.processors.generic.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link MappedLookupTable} that is swapped for a freshly loaded one when its file changes.
+ * Readers always see a complete table; the old mapping is released once no thread uses it anymore.
+ * Loading copies the whole file, so {@link #reloadIfModified()} is meant to be called from a background thread and
+ * never holds up a lookup. The table maps a private copy of the file, so rewriting the file in place is safe. Should a
+ * mapping still fail under a lookup, the previous table takes over again until the next reload.
+ */
+public class ReloadableLookupTable implements KeyLookup {
+
+    private final Path file;
+    private final AtomicReference<MappedLookupTable> table = new AtomicReference<>();
+    /* table the current one replaced, kept to fall back on */
+    private volatile MappedLookupTable previous;
+    private volatile long lastModified;
+    private volatile long lastSize;
+
+    public ReloadableLookupTable(@NotNull Path file) throws IOException {
+        this.file = file;
+        reload(Files.readAttributes(file, BasicFileAttributes.class));
+    }
+
+    @Override
+    public String lookup(String key) {
+        MappedLookupTable current = table.get();
+        try {
+            return current.lookup(key);
+        } catch (InternalError e) {
+            // the JVM reports a fault on a mapped page this way, such as a mapped file cut short
+            MappedLookupTable fallback = previous;
+            if (fallback == null || fallback == current) {
+                throw new IllegalStateException("Unable to read the mapped lookup file " + file, e);
+            }
+            table.compareAndSet(current, fallback);
+            // the file is loaded again at the next check
+            lastSize = -1;
+            return fallback.lookup(key);
+        }
+    }
+
+    public int size() {
+        return table.get().size();
+    }
+
+    /**
+     * @apiNote reloads the table when the file was modified, lookups keep using the loaded table meanwhile
+     * @return true when a new table was swapped in
+     */
+    public synchronized boolean reloadIfModified() throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (attributes.lastModifiedTime().toMillis() == lastModified && attributes.size() == lastSize) {
+            return false;
+        }
+        reload(attributes);
+        return true;
+    }
+
+    private void reload(@NotNull BasicFileAttributes attributes) throws IOException {
+        MappedLookupTable loaded = MappedLookupTable.load(file);
+        previous = table.getAndSet(loaded);
+        lastModified = attributes.lastModifiedTime().toMillis();
+        lastSize = attributes.size();
+    }
+}
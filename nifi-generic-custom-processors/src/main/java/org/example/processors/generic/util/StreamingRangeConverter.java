@@ -0,0 +1,201 @@
+package org.example.processors.generic.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Token stream counterpart of the RangeConverter tree transform. Tokens are copied from parser to generator, only the
+ * objects along the field path are looked into and every other subtree is copied as is. The value at the end of the path,
+ * a number or an array of numbers, is read into a primitive array, bucketed in bulk and the labels are written under the
+ * new key, as a single label or a parallel array of labels. Arrays met along the path are entered element by element, so
+ * the same path applies to every object of a top-level array or of a nested array.
+ * <p>
+ * The new key goes where {@link Helper#addRange} puts it: in place of the value when it is the converted field itself, in
+ * place of an existing member of that name that follows the field, and at the end of the object otherwise. Only a member
+ * of that name placed before the field differs, the tree replaces it where it is while the labels are not known yet when
+ * the stream passes it, so it is dropped and the labels go to the end of the object.
+ */
+public class StreamingRangeConverter {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final String[] fieldPath;
+    private final String newKey;
+    private final BucketTable bucketTable;
+
+    /* reused between the arrays of one document, a converter is used by one thread at a time */
+    private double[] values = new double[INITIAL_CAPACITY];
+    private int[] indexes = new int[INITIAL_CAPACITY];
+    private String[] labels = new String[INITIAL_CAPACITY];
+    /* labels of the last value converted, held until the new key is written */
+    private int labelCount;
+    private boolean labelArray;
+
+    /**
+     * @param fieldPath path segments, see {@link Helper#parseFieldPath(String)}
+     * @param newKey field that receives the labels
+     * @param bucketTable custom buckets, or null for the ranges of {@link Helper#convertToRange(double)}
+     */
+    public StreamingRangeConverter(String @NotNull [] fieldPath, @NotNull String newKey, @Nullable BucketTable bucketTable) {
+        this.fieldPath = fieldPath;
+        this.newKey = newKey;
+        this.bucketTable = bucketTable;
+    }
+
+    /**
+     * @apiNote converts the document read from the parser and writes it to the generator
+     * @param parser
+     * @param generator
+     * @return number of values converted
+     */
+    public long convert(@NotNull JsonParser parser, @NotNull JsonGenerator generator) throws IOException {
+        if (parser.nextToken() == null) {
+            throw new JsonParseException(parser, "input json is empty");
+        }
+        long converted = copyAlongPath(parser, generator, 0);
+        generator.flush();
+        return converted;
+    }
+
+    /* copies the object or array the parser is on, the first segments of the path are already matched by its parents */
+    private long copyAlongPath(@NotNull JsonParser parser, @NotNull JsonGenerator generator, int segment) throws IOException {
+        long converted = 0;
+        if (parser.currentToken() == JsonToken.START_ARRAY) {
+            generator.writeStartArray();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                converted += copyAlongPath(parser, generator, segment);
+            }
+            generator.writeEndArray();
+            return converted;
+        }
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "expected an object holding " + fieldPath[segment]);
+        }
+
+        boolean last = segment == fieldPath.length - 1;
+        boolean found = false;
+        boolean pending = false;
+        generator.writeStartObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            boolean field = name.equals(fieldPath[segment]);
+            if (last && field) {
+                generator.writeFieldName(name);
+                // a new key naming the field itself replaces the value in place
+                boolean inPlace = name.equals(newKey);
+                converted += convertValue(parser, generator, !inPlace);
+                if (inPlace) {
+                    writeLabels(generator);
+                } else {
+                    pending = true;
+                }
+                found = true;
+            } else if (last && name.equals(newKey)) {
+                // the existing member is replaced by the labels, in place once they are known
+                parser.skipChildren();
+                if (pending) {
+                    generator.writeFieldName(newKey);
+                    writeLabels(generator);
+                    pending = false;
+                }
+            } else if (field) {
+                generator.writeFieldName(name);
+                converted += copyAlongPath(parser, generator, segment + 1);
+                found = true;
+            } else {
+                generator.writeFieldName(name);
+                generator.copyCurrentStructure(parser);
+            }
+        }
+        if (!found) {
+            throw new JsonParseException(parser, "field " + fieldPath[segment] + " not found");
+        }
+        if (pending) {
+            generator.writeFieldName(newKey);
+            writeLabels(generator);
+        }
+        generator.writeEndObject();
+        return converted;
+    }
+
+    /* collects the number or array of numbers the parser is on, copying it when asked, and computes its labels */
+    private int convertValue(@NotNull JsonParser parser, @NotNull JsonGenerator generator, boolean copy) throws IOException {
+        boolean array = parser.currentToken() == JsonToken.START_ARRAY;
+        int length = 0;
+        if (array) {
+            if (copy) {
+                generator.writeStartArray();
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (length == values.length) {
+                    values = Arrays.copyOf(values, length * 2);
+                }
+                values[length++] = readNumber(parser);
+                if (copy) {
+                    generator.copyCurrentEvent(parser);
+                }
+            }
+            if (copy) {
+                generator.writeEndArray();
+            }
+        } else {
+            values[length++] = readNumber(parser);
+            if (copy) {
+                generator.copyCurrentEvent(parser);
+            }
+        }
+
+        if (labels.length < length) {
+            labels = new String[values.length];
+            indexes = new int[values.length];
+        }
+        if (bucketTable == null) {
+            Helper.convertToRanges(values, length, labels, indexes);
+        } else {
+            bucketTable.indexes(values, length, indexes);
+            for (int i = 0; i < length; i++) {
+                labels[i] = bucketTable.label(indexes[i]);
+            }
+        }
+        labelCount = length;
+        labelArray = array;
+        return length;
+    }
+
+    /* writes the labels of the last value converted, the field name is written by the caller */
+    private void writeLabels(@NotNull JsonGenerator generator) throws IOException {
+        if (labelArray) {
+            generator.writeStartArray();
+            for (int i = 0; i < labelCount; i++) {
+                generator.writeString(labels[i]);
+            }
+            generator.writeEndArray();
+        } else {
+            generator.writeString(labels[0]);
+        }
+    }
+
+    /* numbers and numeric strings, as JsonElement.getAsDouble accepts both */
+    private static double readNumber(@NotNull JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getDoubleValue();
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            double value = Double.parseDouble(parser.getText().trim());
+            if (Double.isNaN(value)) {
+                throw new NumberFormatException("NaN has no bucket");
+            }
+            return value;
+        }
+        throw new JsonParseException(parser, "expected a number but was " + token);
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.processors.generic.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Token stream counterpart of the JSONRegexMatcher tree transform. Tokens are copied from parser to generator while
+ * the {@link JsonPathPlan} is followed: a field or element the plan has no step for is copied as a whole subtree without
+ * being looked into, and a scalar where references end is replaced by the result of their regex rules.
+ * A top-level array is handled element by element, each element being a document of its own.
+ */
+public class StreamingRegexMatcher {
+
+    private StreamingRegexMatcher() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * @apiNote applies the rules of the plan to the document read from the parser and writes it to the generator
+     * @param plan
+     * @param parser
+     * @param generator
+     * @return number of values replaced
+     */
+    public static long apply(@NotNull JsonPathPlan<RegexRule> plan, @NotNull JsonParser parser, @NotNull JsonGenerator generator) throws IOException {
+        if (parser.nextToken() == null) {
+            throw new JsonParseException(parser, "input json is empty");
+        }
+        long replaced = 0;
+        if (parser.currentToken() == JsonToken.START_ARRAY) {
+            generator.writeStartArray();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                replaced += copy(plan.getRoot(), parser, generator);
+            }
+            generator.writeEndArray();
+        } else {
+            replaced = copy(plan.getRoot(), parser, generator);
+        }
+        generator.flush();
+        return replaced;
+    }
+
+    /* copies the value the parser is on, the node is its position in the plan */
+    private static long copy(@NotNull JsonPathPlan.Node<RegexRule> node, @NotNull JsonParser parser, @NotNull JsonGenerator generator) throws IOException {
+        long replaced = 0;
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            generator.writeStartObject();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                parser.nextToken();
+                generator.writeFieldName(name);
+                replaced += copyChild(node.field(name), parser, generator);
+            }
+            generator.writeEndObject();
+        } else if (token == JsonToken.START_ARRAY) {
+            generator.writeStartArray();
+            int index = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                replaced += copyChild(node.index(index++), parser, generator);
+            }
+            generator.writeEndArray();
+        } else {
+            generator.copyCurrentEvent(parser);
+        }
+        return replaced;
+    }
+
+    private static long copyChild(JsonPathPlan.Node<RegexRule> child, @NotNull JsonParser parser, @NotNull JsonGenerator generator) throws IOException {
+        if (child == null) {
+            // no reference goes through this value
+            generator.copyCurrentStructure(parser);
+            return 0;
+        }
+        if (child.getTargets().isEmpty()) {
+            return copy(child, parser, generator);
+        }
+        generator.writeString(apply(child.getTargets(), parser));
+        return 1;
+    }
+
+    /* same values as JsonElement.getAsString, a null, object or array cannot be matched */
+    private static @NotNull String apply(@NotNull List<RegexRule> regexRules, @NotNull JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (!token.isScalarValue() || token == JsonToken.VALUE_NULL) {
+            throw new JsonParseException(parser, "expected a string for " + regexRules.get(0).getFieldName() + " but was " + token);
+        }
+        String value = parser.getText();
+        for (RegexRule regexRule : regexRules) {
+            value = regexRule.apply(value);
+        }
+        return value;
+    }
+}
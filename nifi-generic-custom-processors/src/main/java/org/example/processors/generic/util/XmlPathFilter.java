@@ -0,0 +1,157 @@
+package org.example.processors.generic.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Element paths compiled once into step arrays, used to decide while the xml streams past whether an element is
+ * selected, may contain a selected element or can be skipped as a whole. A path starts at the document element:
+ * {@code /Envelope/Body/GetOrderResponse} selects one subtree, {@code *} matches any element name and {@code //}
+ * lets the next step match at any depth, as in {@code //Order}. A step without a prefix also matches prefixed names,
+ * so {@code /Envelope/Body} matches {@code soap:Envelope/soap:Body}. Predicates, attributes and functions are not
+ * supported because they would need an element to be read before knowing whether it is wanted.
+ * The state of a position is one bit mask per path, bit k telling that the first k steps are matched.
+ */
+public final class XmlPathFilter {
+
+    private static final int MAX_STEPS = 62;
+
+    private final Step[][] paths;
+
+    private XmlPathFilter(Step[] @NotNull [] paths) {
+        this.paths = paths;
+    }
+
+    /**
+     * @apiNote compiles a coma separated list of element paths
+     * @param spec
+     * @return XmlPathFilter
+     */
+    public static @NotNull XmlPathFilter compile(@NotNull String spec) {
+        List<Step[]> paths = new ArrayList<>();
+        for (String path : spec.split(",")) {
+            paths.add(parse(path.trim()));
+        }
+        return new XmlPathFilter(paths.toArray(new Step[0][]));
+    }
+
+    private static Step @NotNull [] parse(@NotNull String path) {
+        if (!path.startsWith("/")) {
+            throw new IllegalArgumentException("path must start with / : " + path);
+        }
+        List<Step> steps = new ArrayList<>();
+        int position = 0;
+        while (position < path.length()) {
+            /* position is on the / before a step */
+            boolean anyDepth = path.startsWith("//", position);
+            int start = position + (anyDepth ? 2 : 1);
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            String name = path.substring(start, end).trim();
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("empty step at " + start + " in " + path);
+            }
+            for (int i = 0; i < name.length(); i++) {
+                if ("[]@()=\"'".indexOf(name.charAt(i)) >= 0) {
+                    throw new IllegalArgumentException("only element names and * are supported, got " + name + " in " + path);
+                }
+            }
+            steps.add(new Step(name, anyDepth));
+            position = end;
+        }
+        if (steps.size() > MAX_STEPS) {
+            throw new IllegalArgumentException("at most " + MAX_STEPS + " steps are supported in " + path);
+        }
+        return steps.toArray(new Step[0]);
+    }
+
+    /* state before the document element, nothing matched yet */
+    public long @NotNull [] initialState() {
+        long[] state = new long[paths.length];
+        for (int p = 0; p < paths.length; p++) {
+            state[p] = 1L;
+        }
+        return state;
+    }
+
+    /**
+     * @apiNote state of a child element of the given name, computed from the state of its parent
+     * @param parentState
+     * @param name
+     * @return state of the child
+     */
+    public long @NotNull [] enter(long @NotNull [] parentState, @NotNull String name) {
+        long[] state = new long[paths.length];
+        for (int p = 0; p < paths.length; p++) {
+            Step[] steps = paths[p];
+            long matched = parentState[p];
+            long next = 0;
+            while (matched != 0) {
+                int k = Long.numberOfTrailingZeros(matched);
+                matched &= matched - 1;
+                if (k == steps.length) {
+                    continue;
+                }
+                if (steps[k].anyDepth) {
+                    // the step can still match deeper down
+                    next |= 1L << k;
+                }
+                if (steps[k].matches(name)) {
+                    next |= 1L << (k + 1);
+                }
+            }
+            state[p] = next;
+        }
+        return state;
+    }
+
+    /* true when a path ends at the element, the whole subtree is selected */
+    public boolean isSelected(long @NotNull [] state) {
+        for (int p = 0; p < paths.length; p++) {
+            if ((state[p] & (1L << paths[p].length)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* true when no path can match the element or any element below it */
+    public boolean isExcluded(long @NotNull [] state) {
+        for (long mask : state) {
+            if (mask != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* one element name, * or a name, matched at the next level or at any depth */
+    private static final class Step {
+        private final String name;
+        private final boolean wildcard;
+        private final boolean prefixed;
+        private final boolean anyDepth;
+
+        private Step(@NotNull String name, boolean anyDepth) {
+            this.name = name;
+            this.wildcard = "*".equals(name);
+            this.prefixed = name.indexOf(':') >= 0;
+            this.anyDepth = anyDepth;
+        }
+
+        private boolean matches(@NotNull String elementName) {
+            if (wildcard || name.equals(elementName)) {
+                return true;
+            }
+            if (prefixed) {
+                return false;
+            }
+            int colon = elementName.indexOf(':');
+            return colon >= 0 && elementName.length() - colon - 1 == name.length() && elementName.endsWith(name);
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package org.example.processors.generic.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * StAX based counterpart of {@link Helper#convertXmlToJson(String)}.
+ * No DOM of the input is built and json is written while the xml is read: open elements are kept on an explicit stack
+ * so deep documents do not recurse, and only the text of the element being read is held until the element ends.
+ * Memory therefore follows the depth of the document, not its size.
+ * The DOM conversion keeps the last of repeated sibling elements in the place of the first one, which can only be known
+ * once the parent ends. Here every repeated sibling is written as it is read, under the same name, and an attribute
+ * and a child element of the same name are both written. Gson and Jackson keep the last value of a repeated name in
+ * the place of the first, so they read the output as the object of the DOM conversion. Documents of many repeated
+ * records are better read with a {@link RecordReader}.
+ * With an {@link XmlPathFilter} only the selected elements and the elements leading to them are written, every other
+ * subtree is read past without anything being built for it.
+ * A {@link RecordReader} converts the selected elements one at a time as separate json objects, for documents made
+ * of many repeated records.
+ */
+public class XmlStreamingConverter {
+
+    private static final String REPORT_CDATA_EVENT = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    private XmlStreamingConverter() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    private static @NotNull XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // element and attribute names keep their prefixes, same as the non namespace aware DocumentBuilder
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        if (factory.isPropertySupported(REPORT_CDATA_EVENT)) {
+            factory.setProperty(REPORT_CDATA_EVENT, true);
+        }
+        return factory;
+    }
+
+    /**
+     * @apiNote convert xml read from the input stream into json written to the generator
+     * @param inputStream
+     * @param generator
+     */
+    public static void convertXmlToJson(InputStream inputStream, @NotNull JsonGenerator generator) throws IOException {
+        convertXmlToJson(inputStream, generator, null);
+    }
+
+    /**
+     * @apiNote convert the elements the filter selects from the xml read from the input stream, the whole document
+     * when the filter is null
+     * @param inputStream
+     * @param generator
+     * @param filter
+     */
+    public static void convertXmlToJson(InputStream inputStream, @NotNull JsonGenerator generator, @Nullable XmlPathFilter filter) throws IOException {
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+            if (filter == null) {
+                convertXmlToJson(reader, generator);
+            } else {
+                convertSelected(reader, generator, filter);
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to read xml", e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // nothing left to release
+                }
+            }
+        }
+    }
+
+    /**
+     * @apiNote convert the document element the reader is positioned before, see {@link Helper#convertElementToJson}
+     * for the shape of the output
+     * @param reader
+     * @param generator
+     */
+    public static void convertXmlToJson(@NotNull XMLStreamReader reader, @NotNull JsonGenerator generator) throws XMLStreamException, IOException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                convertElement(reader, generator, false);
+                break;
+            }
+        }
+        generator.flush();
+    }
+
+    /**
+     * @apiNote convert the selected elements of the document the reader is positioned before. The document element is
+     * always written, an element on the way to a selected one is written with its attributes once a selected element
+     * is found below it, and a selected element is converted as a whole. Only the attributes of the elements on the
+     * way are held until then
+     * @param reader
+     * @param generator
+     * @param filter
+     */
+    public static void convertSelected(@NotNull XMLStreamReader reader, @NotNull JsonGenerator generator, @NotNull XmlPathFilter filter) throws XMLStreamException, IOException {
+        while (reader.hasNext() && reader.next() != XMLStreamConstants.START_ELEMENT) {
+            // prolog
+        }
+        if (!reader.isStartElement()) {
+            generator.flush();
+            return;
+        }
+        long[] rootState = filter.enter(filter.initialState(), reader.getLocalName());
+        if (filter.isSelected(rootState)) {
+            convertElement(reader, generator, false);
+            generator.flush();
+            return;
+        }
+        generator.writeStartObject();
+        writeAttributes(reader, generator);
+        if (filter.isExcluded(rootState)) {
+            skipElement(reader);
+            generator.writeEndObject();
+            generator.flush();
+            return;
+        }
+
+        /* elements that may lead to a selected one, bottom is the document element */
+        Deque<PathFrame> path = new ArrayDeque<>();
+        PathFrame rootFrame = new PathFrame(reader.getLocalName(), null, rootState);
+        rootFrame.opened = true;
+        path.push(rootFrame);
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                long[] state = filter.enter(path.peek().state, name);
+                if (filter.isSelected(state)) {
+                    openPath(path, generator);
+                    convertElement(reader, generator, true);
+                } else if (filter.isExcluded(state)) {
+                    skipElement(reader);
+                } else {
+                    path.push(new PathFrame(name, readAttributes(reader), state));
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (path.pop().opened) {
+                    generator.writeEndObject();
+                }
+                if (path.isEmpty()) {
+                    break;
+                }
+            }
+        }
+        generator.flush();
+    }
+
+    /**
+     * @apiNote reader of the elements the filter selects, each one converted on its own
+     * @param inputStream
+     * @param filter
+     * @return RecordReader
+     */
+    public static @NotNull RecordReader openRecords(InputStream inputStream, @NotNull XmlPathFilter filter) throws IOException {
+        try {
+            return new RecordReader(XML_INPUT_FACTORY.createXMLStreamReader(inputStream), filter);
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to read xml", e);
+        }
+    }
+
+    /* writes the start of the elements on the path that are not in the output yet, with their attributes */
+    private static void openPath(@NotNull Deque<PathFrame> path, @NotNull JsonGenerator generator) throws IOException {
+        Iterator<PathFrame> frames = path.descendingIterator();
+        while (frames.hasNext()) {
+            PathFrame frame = frames.next();
+            if (!frame.opened) {
+                generator.writeFieldName(frame.name);
+                generator.writeStartObject();
+                for (int i = 0; i < frame.attributes.length; i += 2) {
+                    generator.writeStringField(frame.attributes[i], frame.attributes[i + 1]);
+                }
+                frame.opened = true;
+            }
+        }
+    }
+
+    /* reads past the element the reader is on, up to and including its end */
+    private static void skipElement(@NotNull XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /* converts the element the reader is on, up to and including its end */
+    private static void convertElement(@NotNull XMLStreamReader reader, @NotNull JsonGenerator generator, boolean named) throws XMLStreamException, IOException {
+        Deque<ElementFrame> stack = new ArrayDeque<>();
+        if (named) {
+            generator.writeFieldName(reader.getLocalName());
+        }
+        generator.writeStartObject();
+        writeAttributes(reader, generator);
+        stack.push(new ElementFrame(reader.getLocalName()));
+        while (reader.hasNext()) {
+            int event = reader.next();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    stack.peek().addNode();
+                    generator.writeFieldName(reader.getLocalName());
+                    generator.writeStartObject();
+                    writeAttributes(reader, generator);
+                    stack.push(new ElementFrame(reader.getLocalName()));
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    stack.peek().addText(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    break;
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.COMMENT:
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    stack.peek().addNode();
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    ElementFrame frame = stack.pop();
+                    if (frame.isTextOnly()) {
+                        generator.writeStringField(frame.name, frame.text.toString());
+                    }
+                    generator.writeEndObject();
+                    if (stack.isEmpty()) {
+                        return;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static void writeAttributes(@NotNull XMLStreamReader reader, @NotNull JsonGenerator generator) throws IOException {
+        if (reader.getAttributeCount() == 0) {
+            return;
+        }
+        for (Integer index : sortedAttributes(reader)) {
+            generator.writeStringField(attributeName(reader, index), reader.getAttributeValue(index));
+        }
+    }
+
+    /* names and values of the attributes, one after the other */
+    private static String @NotNull [] readAttributes(@NotNull XMLStreamReader reader) {
+        int count = reader.getAttributeCount();
+        String[] attributes = new String[count * 2];
+        if (count > 0) {
+            int i = 0;
+            for (Integer index : sortedAttributes(reader)) {
+                attributes[i++] = attributeName(reader, index);
+                attributes[i++] = reader.getAttributeValue(index);
+            }
+        }
+        return attributes;
+    }
+
+    /* the DOM keeps attributes sorted by name, so the same order is used here */
+    private static Integer @NotNull [] sortedAttributes(@NotNull XMLStreamReader reader) {
+        int count = reader.getAttributeCount();
+        String[] names = new String[count];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = attributeName(reader, i);
+            order[i] = i;
+        }
+        Arrays.sort(order, (left, right) -> names[left].compareTo(names[right]));
+        return order;
+    }
+
+    private static @NotNull String attributeName(@NotNull XMLStreamReader reader, int index) {
+        String prefix = reader.getAttributePrefix(index);
+        String localName = reader.getAttributeLocalName(index);
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    /**
+     * Converts the selected elements of a document one after the other, each as a json object of its own with the
+     * shape {@link #convertXmlToJson(XMLStreamReader, JsonGenerator)} gives a document element. Only the filter states
+     * of the open elements are kept between records, so memory does not grow with the number of records.
+     * Used by a single thread.
+     */
+    public static final class RecordReader implements Closeable {
+        private final XMLStreamReader reader;
+        private final XmlPathFilter filter;
+        /* filter states of the open elements, the innermost on top */
+        private final Deque<long[]> states = new ArrayDeque<>();
+
+        private RecordReader(@NotNull XMLStreamReader reader, @NotNull XmlPathFilter filter) {
+            this.reader = reader;
+            this.filter = filter;
+            states.push(filter.initialState());
+        }
+
+        /**
+         * @apiNote converts the next selected element into the generator
+         * @param generator
+         * @return false once the document has no more selected elements, nothing is written then
+         */
+        public boolean next(@NotNull JsonGenerator generator) throws IOException {
+            try {
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        long[] state = filter.enter(states.peek(), reader.getLocalName());
+                        if (filter.isSelected(state)) {
+                            convertElement(reader, generator, false);
+                            return true;
+                        } else if (filter.isExcluded(state)) {
+                            skipElement(reader);
+                        } else {
+                            states.push(state);
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        states.pop();
+                    }
+                }
+                return false;
+            } catch (XMLStreamException e) {
+                throw new IOException("Unable to read xml", e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                // nothing left to release
+            }
+        }
+    }
+
+    /**
+     * element that may lead to a selected one, with its attributes, written to the output once a selected element is
+     * found below it
+     */
+    private static final class PathFrame {
+        private final String name;
+        private final String[] attributes;
+        private final long[] state;
+        private boolean opened;
+
+        private PathFrame(@NotNull String name, String[] attributes, long[] state) {
+            this.name = name;
+            this.attributes = attributes;
+            this.state = state;
+        }
+    }
+
+    /**
+     * open element being converted. Tracks the child node count the way the DOM would see it so text only elements
+     * can be given their text property once the element ends
+     */
+    private static final class ElementFrame {
+        private final String name;
+        private int childNodes;
+        private boolean lastNodeIsText;
+        private StringBuilder text;
+
+        private ElementFrame(@NotNull String name) {
+            this.name = name;
+        }
+
+        private void addNode() {
+            childNodes++;
+            lastNodeIsText = false;
+            text = null;
+        }
+
+        /* adjacent character events belong to the same DOM text node */
+        private void addText(char[] characters, int start, int length) {
+            if (!lastNodeIsText) {
+                childNodes++;
+                lastNodeIsText = true;
+                text = childNodes == 1 ? new StringBuilder() : null;
+            }
+            if (text != null) {
+                text.append(characters, start, length);
+            }
+        }
+
+        private boolean isTextOnly() {
+            return childNodes == 1 && text != null;
+        }
+    }
+}
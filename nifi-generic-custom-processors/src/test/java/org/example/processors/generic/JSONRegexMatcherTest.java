@@ -76,4 +76,125 @@ public class JSONRegexMatcherTest {
         fjonj.close();*/
     }
 
+    @Test
+    public void outputTesterJsonRegexMatcherBatch() {
+        /* Adding properties */
+        testRunner.setProperty(JSONRegexMatcher.REGEX, "\\w+");
+        testRunner.setProperty(JSONRegexMatcher.JSON_FIELD, "email");
+        testRunner.setProperty(JSONRegexMatcher.BATCH_SIZE, "3");
+        // Add the content to the runner
+        testRunner.enqueue("{\"email\": \"first@example.org\"}");
+        testRunner.enqueue("{\"email\": \"second@example.org\"}");
+        testRunner.enqueue("{\"email\": \"third@example.org\"}");
+
+        /* a single trigger handles the whole batch */
+        testRunner.run(1);
+
+        /* All results were processed without failure */
+        testRunner.assertQueueEmpty();
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(JSONRegexMatcher.REL_SUCCESS);
+        assertTrue("3 matches", mockFlowFileList.size() == 3);
+        mockFlowFileList.get(0).assertContentEquals("{\"email\":\"first\"}");
+        mockFlowFileList.get(2).assertContentEquals("{\"email\":\"third\"}");
+    }
+
+    @Test
+    public void outputTesterJsonRegexMatcherCache() {
+        /* repeated values are answered by the result cache */
+        testRunner.setProperty(JSONRegexMatcher.REGEX, "\\w+");
+        testRunner.setProperty(JSONRegexMatcher.JSON_FIELD, "cc_merch_name");
+        testRunner.setProperty(JSONRegexMatcher.REGEX_CACHE_SIZE, "2");
+        testRunner.setProperty(JSONRegexMatcher.BATCH_SIZE, "4");
+        testRunner.enqueue("[{\"cc_merch_name\": \"AMAZON MKTP\"}, {\"cc_merch_name\": \"AMAZON MKTP\"}]");
+        testRunner.enqueue("{\"cc_merch_name\": \"AMAZON MKTP\"}");
+        testRunner.enqueue("{\"cc_merch_name\": \"PAYPAL *SHOP\"}");
+        testRunner.enqueue("{\"cc_merch_name\": \"PAYPAL *SHOP\"}");
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(JSONRegexMatcher.REL_SUCCESS);
+        assertTrue("4 matches", mockFlowFileList.size() == 4);
+        mockFlowFileList.get(0).assertContentEquals("[{\"cc_merch_name\":\"AMAZON\"},{\"cc_merch_name\":\"AMAZON\"}]");
+        mockFlowFileList.get(3).assertContentEquals("{\"cc_merch_name\":\"PAYPAL\"}");
+        assertTrue("3 hits", testRunner.getCounterValue("Regex Cache Hits") == 3);
+        assertTrue("2 misses", testRunner.getCounterValue("Regex Cache Misses") == 2);
+    }
+
+    @Test
+    public void outputTesterJsonRegexMatcherMultipleRules() {
+        /* Adding properties, dynamic properties map more fields to their own pattern */
+        testRunner.setProperty(JSONRegexMatcher.REGEX, "@(.*)$");
+        testRunner.setProperty(JSONRegexMatcher.JSON_FIELD, "email");
+        testRunner.setProperty("cc_merch_name", "SHOP");
+        testRunner.setProperty("name", "^\\w+");
+        // Add the content to the runner
+        testRunner.enqueue("{\"name\": \"John Doe\", \"email\": \"john@example.org\", \"cc_merch_name\": \"PAYPAL *SHOP 42\"}");
+
+        /* Run the enqueued content, it also takes an int = number of contents queued */
+        testRunner.run(1);
+
+        /* All results were processed without failure */
+        testRunner.assertQueueEmpty();
+
+        /* all three rules are applied in one pass */
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(JSONRegexMatcher.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("{\"name\":\"John\",\"email\":\"@example.org\",\"cc_merch_name\":\"SHOP\"}");
+    }
+
+    @Test
+    public void outputTesterJsonRegexMatcherArray() {
+        String jsonString = "[{\"email\": \"first@example.org\"}, {\"name\": \"none\"}, {\"email\": \"third@example.org\"}]";
+
+        testRunner.setProperty(JSONRegexMatcher.REGEX, "\\w+");
+        testRunner.setProperty(JSONRegexMatcher.JSON_FIELD, "email");
+        testRunner.enqueue(jsonString);
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        /* every element of the top-level array is matched, the array is kept */
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(JSONRegexMatcher.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("[{\"email\":\"first\"},{\"name\":\"none\"},{\"email\":\"third\"}]");
+    }
+
+    @Test
+    public void outputTesterJsonRegexMatcherJsonPath() {
+        /* JSONPath and JSON Pointer reach nested fields, the top-level email is left alone */
+        testRunner.setProperty(JSONRegexMatcher.REGEX, "@(.*)$");
+        testRunner.setProperty(JSONRegexMatcher.JSON_FIELD, "$.items[*].email");
+        testRunner.setProperty("/user/name", "^\\w+");
+        testRunner.enqueue("{\"email\": \"a@example.org\", \"user\": {\"name\": \"John Doe\"}, "
+                + "\"items\": [{\"email\": \"b@example.org\"}, {\"email\": \"c@example.com\"}]}");
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(JSONRegexMatcher.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("{\"email\":\"a@example.org\",\"user\":{\"name\":\"John\"},"
+                + "\"items\":[{\"email\":\"@example.org\"},{\"email\":\"@example.com\"}]}");
+    }
+
+    @Test
+    public void outputTesterJsonRegexMatcherStreaming() {
+        testRunner.setProperty(JSONRegexMatcher.REGEX, "@(.*)$");
+        testRunner.setProperty(JSONRegexMatcher.JSON_FIELD, "$.items[1].email");
+        testRunner.setProperty(JSONRegexMatcher.PROCESSING_MODE, "STREAMING");
+        testRunner.enqueue("{\"email\": \"a@example.org\", \"items\": [{\"email\": \"b@example.org\"}, {\"email\": \"c@example.com\"}]}");
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        /* only the second item is matched, everything else is copied through */
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(JSONRegexMatcher.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("{\"email\":\"a@example.org\",\"items\":[{\"email\":\"b@example.org\"},{\"email\":\"@example.com\"}]}");
+    }
+
+    @Test
+    public void outputTesterJsonRegexMatcherInvalidPath() {
+        testRunner.setProperty(JSONRegexMatcher.JSON_FIELD, "$..email");
+        testRunner.assertNotValid();
+    }
+
 }
@@ -16,14 +16,26 @@
  */
 package org.example.processors.generic;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
 import org.apache.commons.io.IOUtils;
 import org.apache.nifi.util.MockFlowFile;
 import org.apache.nifi.util.TestRunner;
 import org.apache.nifi.util.TestRunners;
+import org.example.processors.generic.util.DataFormat;
+import org.example.processors.generic.util.JsonTreeCodec;
+import org.example.processors.generic.util.MemoryBudget;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.Assert.assertTrue;
 
@@ -35,10 +47,14 @@ import static org.junit.Assert.assertTrue;
 public class JsonNullRemoverTest {
 
     private TestRunner testRunner;
+    private MemoryBudget budget;
 
     @BeforeEach
     public void init() {
         testRunner = TestRunners.newTestRunner(JsonNullRemover.class );
+        /* a budget of its own per test, nothing held by another test of the JVM changes the engine chosen */
+        budget = new MemoryBudget(MemoryBudget.DEFAULT_BUDGET);
+        ((JsonNullRemover) testRunner.getProcessor()).setMemoryBudget(budget);
     }
 
     @Test
@@ -71,4 +87,320 @@ public class JsonNullRemoverTest {
         fjonj.close();*/
     }
 
+    @Test
+    public void outputTesterJsonNullRemoverStreaming() {
+        /* Read the content of a sample JSON file */
+        String jsonString = "{\"name\":\"John\",\"age\":30,\"address\":null,\"phone\":\"  \", \"email\":\" \", \"contact\":{\"fax\":null,\"city\":\"Kochi\"}}";
+
+        /* Adding properties */
+        testRunner.setProperty(JsonNullRemover.PROCESSING_MODE, "STREAMING");
+        // Add the content to the runner
+        testRunner.enqueue(jsonString);
+
+        /* Run the enqueued content, it also takes an int = number of contents queued */
+        testRunner.run(1);
+
+        /* All results were processed without failure */
+        testRunner.assertQueueEmpty();
+
+        /* streamed output drops the same fields as the tree mode */
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(JsonNullRemover.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("{\"name\":\"John\",\"age\":30,\"contact\":{\"city\":\"Kochi\"}}");
+    }
+
+    @Test
+    public void outputTesterJsonNullRemoverNestedValues() {
+        /* objects and arrays are kept, blank strings go only from objects outside arrays, in both modes */
+        String jsonString = "{\"id\":1,\"tags\":[\"a\",\" \",null],\"items\":[{\"sku\":\" \",\"qty\":null,\"n\":2}],"
+                + "\"contact\":{\"fax\":\" \",\"city\":\"Kochi\",\"geo\":{\"lat\":null}}}";
+        String expected = "{\"id\":1,\"tags\":[\"a\",\" \",null],\"items\":[{\"sku\":\" \",\"n\":2}],"
+                + "\"contact\":{\"city\":\"Kochi\",\"geo\":{}}}";
+
+        for (String mode : new String[]{"TREE", "STREAMING"}) {
+            init();
+            testRunner.setProperty(JsonNullRemover.PROCESSING_MODE, mode);
+            testRunner.enqueue(jsonString);
+            testRunner.run(1);
+            testRunner.assertQueueEmpty();
+
+            List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(JsonNullRemover.REL_SUCCESS);
+            assertTrue(mode + " 1 match", mockFlowFileList.size() == 1);
+            mockFlowFileList.get(0).assertContentEquals(expected);
+        }
+    }
+
+    @Test
+    public void outputTesterJsonNullRemoverUtf8() {
+        /* content is decoded and encoded as UTF-8 whatever the platform charset is */
+        String jsonString = "{\"name\":\"Jürgen Ødegård\",\"city\":\"東京\",\"phone\":\" \"}";
+
+        testRunner.enqueue(jsonString);
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(JsonNullRemover.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("{\"name\":\"Jürgen Ødegård\",\"city\":\"東京\"}");
+    }
+
+    @Test
+    public void outputTesterJsonNullRemoverInvalidJson() {
+        /* a failing transform keeps the original content and routes to failure */
+        String jsonString = "{\"name\":\"John\",";
+
+        testRunner.enqueue(jsonString);
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(JsonNullRemover.REL_FAILURE);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals(jsonString);
+    }
+
+    @Test
+    public void outputTesterJsonNullRemoverDebugTap() {
+        String jsonString = "{\"name\":\"John\",\"address\":null}";
+
+        /* every FlowFile is copied to the debug relationship */
+        testRunner.setProperty(JsonNullRemover.DEBUG_TAP, "RELATIONSHIP");
+        testRunner.setProperty(JsonNullRemover.DEBUG_SAMPLE_RATE, "1");
+        testRunner.enqueue(jsonString);
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(JsonNullRemover.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        List<MockFlowFile> debugFlowFileList = testRunner.getFlowFilesForRelationship(JsonNullRemover.REL_DEBUG);
+        assertTrue("1 copy", debugFlowFileList.size() == 1);
+        debugFlowFileList.get(0).assertContentEquals("{\"name\":\"John\"}");
+        debugFlowFileList.get(0).assertAttributeEquals("debug.tap.route", "Success");
+    }
+
+    @Test
+    public void outputTesterJsonNullRemoverNdjson() {
+        StringBuilder content = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            content.append("{\"id\":").append(i).append(",\"address\":null,\"name\":\" \"}\r\n");
+            expected.append("{\"id\":").append(i).append("}\n");
+        }
+
+        /* chunks of a few lines, cleaned by several threads, must come back in order */
+        testRunner.setProperty(JsonNullRemover.PROCESSING_MODE, "NDJSON");
+        testRunner.setProperty(JsonNullRemover.PARALLELISM, "4");
+        testRunner.setProperty(JsonNullRemover.CHUNK_SIZE, "100 B");
+        testRunner.enqueue(content.toString());
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(JsonNullRemover.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals(expected.toString());
+        assertTrue("50 records", testRunner.getCounterValue("Records") == 50);
+    }
+
+    @Test
+    public void outputTesterJsonNullRemoverNdjsonLongLine() {
+        StringBuilder note = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            note.append('x');
+        }
+        String content = "{\"note\":\"" + note + "\",\"address\":null}\n";
+
+        /* a line longer than the chunk grows past the pooled buffer, which goes back to the pool */
+        testRunner.setProperty(JsonNullRemover.PROCESSING_MODE, "NDJSON");
+        testRunner.setProperty(JsonNullRemover.PARALLELISM, "1");
+        testRunner.setProperty(JsonNullRemover.CHUNK_SIZE, "100 B");
+        testRunner.enqueue(content);
+        testRunner.enqueue(content);
+        testRunner.run(2);
+        testRunner.assertQueueEmpty();
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(JsonNullRemover.REL_SUCCESS);
+        assertTrue("2 matches", mockFlowFileList.size() == 2);
+        mockFlowFileList.get(1).assertContentEquals("{\"note\":\"" + note + "\"}\n");
+        assertTrue("1 miss", testRunner.getCounterValue("Pool Misses: NDJSON chunk buffers") == 1);
+        assertTrue("3 hits", testRunner.getCounterValue("Pool Hits: NDJSON chunk buffers") == 3);
+    }
+
+    @Test
+    public void outputTesterJsonNullRemoverCborOutput() throws IOException {
+        testRunner.setProperty(JsonNullRemover.OUTPUT_FORMAT, "CBOR");
+        testRunner.enqueue("{\"name\":\"John\",\"age\":30,\"address\":null,\"phone\":\"  \"}");
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(JsonNullRemover.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        MockFlowFile mockFlowFile = mockFlowFileList.get(0);
+        mockFlowFile.assertAttributeEquals("mime.type", "application/cbor");
+        assertTrue("cbor content", decode(DataFormat.CBOR, testRunner.getContentAsByteArray(mockFlowFile)).equals("{\"name\":\"John\",\"age\":30}"));
+    }
+
+    @Test
+    public void outputTesterJsonNullRemoverSmileInput() throws IOException {
+        /* binary content of an earlier processor is detected and read as tokens, in every processing mode */
+        for (String mode : new String[]{"TREE", "STREAMING", "NDJSON"}) {
+            init();
+            testRunner.setProperty(JsonNullRemover.PROCESSING_MODE, mode);
+            testRunner.enqueue(encode(DataFormat.SMILE, "{\"name\":\"John\",\"address\":null,\"contact\":{\"fax\":null,\"city\":\"Kochi\"}}"));
+            testRunner.run(1);
+            testRunner.assertQueueEmpty();
+
+            List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(JsonNullRemover.REL_SUCCESS);
+            assertTrue(mode + " 1 match", mockFlowFileList.size() == 1);
+            mockFlowFileList.get(0).assertContentEquals("{\"name\":\"John\",\"contact\":{\"city\":\"Kochi\"}}");
+        }
+    }
+
+    @Test
+    public void outputTesterJsonNullRemoverZstdInput() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (ZstdOutputStream zstdOutputStream = new ZstdOutputStream(compressed)) {
+            zstdOutputStream.write("{\"name\":\"John\",\"address\":null}".getBytes(StandardCharsets.UTF_8));
+        }
+        testRunner.setProperty(JsonNullRemover.PROCESSING_MODE, "STREAMING");
+        testRunner.enqueue(compressed.toByteArray());
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        /* no CompressContent needed in front, the output is plain json */
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(JsonNullRemover.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("{\"name\":\"John\"}");
+    }
+
+    @Test
+    public void outputTesterJsonNullRemoverAutoEngine() {
+        testRunner.setProperty(JsonNullRemover.PROCESSING_MODE, "AUTO");
+        testRunner.setProperty(JsonNullRemover.STREAMING_THRESHOLD, "40 B");
+        testRunner.setProperty(JsonNullRemover.BATCH_SIZE, "2");
+        testRunner.enqueue("{\"name\":\"John\",\"address\":null}");
+        testRunner.enqueue("{\"name\":\"John\",\"address\":null,\"contact\":{\"city\":\"Kochi\",\"zip\":\"  \"}}");
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        /* the small FlowFile is loaded as a tree, the one above the threshold is streamed */
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(JsonNullRemover.REL_SUCCESS);
+        assertTrue("2 match", mockFlowFileList.size() == 2);
+        mockFlowFileList.get(0).assertContentEquals("{\"name\":\"John\"}");
+        mockFlowFileList.get(1).assertContentEquals("{\"name\":\"John\",\"contact\":{\"city\":\"Kochi\"}}");
+        assertTrue("1 tree", testRunner.getCounterValue("Engine: TREE") == 1);
+        assertTrue("1 streamed", testRunner.getCounterValue("Engine: STREAMING") == 1);
+    }
+
+    @Test
+    public void outputTesterJsonNullRemoverAutoEngineMemoryBudget() {
+        StringBuilder json = new StringBuilder("{\"address\":null");
+        for (int i = 0; i < 200; i++) {
+            json.append(",\"field").append(i).append("\":\"value\"");
+        }
+        json.append('}');
+        testRunner.setProperty(JsonNullRemover.PROCESSING_MODE, "AUTO");
+        ((JsonNullRemover) testRunner.getProcessor()).setMemoryBudget(new MemoryBudget(1024));
+        testRunner.enqueue(json.toString());
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        /* below the threshold but larger than the whole budget, so it is streamed instead */
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(JsonNullRemover.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        assertTrue("null removed", !mockFlowFileList.get(0).getContent().contains("address"));
+        assertTrue("1 streamed", testRunner.getCounterValue("Engine: STREAMING") == 1);
+        assertTrue("1 fallback", testRunner.getCounterValue("Memory Budget Fallbacks") == 1);
+    }
+
+    @Test
+    public void outputTesterJsonNullRemoverAutoEngineSharedBudget() {
+        TestRunner otherRunner = TestRunners.newTestRunner(JsonNullRemover.class);
+        ((JsonNullRemover) otherRunner.getProcessor()).setMemoryBudget(budget);
+        for (TestRunner runner : new TestRunner[]{testRunner, otherRunner}) {
+            runner.setProperty(JsonNullRemover.PROCESSING_MODE, "AUTO");
+        }
+        testRunner.enqueue("{\"name\":\"John\",\"address\":null}");
+        testRunner.run(1);
+        assertTrue("1 tree", testRunner.getCounterValue("Engine: TREE") == 1);
+        assertTrue("released", budget.getReserved() == 0);
+
+        /* a task of the first processor holding the whole budget leaves none for the second one */
+        MemoryBudget.Reservation held = budget.tryReserve(budget.getCapacity());
+        assertTrue("budget reserved", held != null);
+        try {
+            otherRunner.enqueue("{\"name\":\"John\",\"address\":null}");
+            otherRunner.run(1);
+            assertTrue("1 streamed", otherRunner.getCounterValue("Engine: STREAMING") == 1);
+            assertTrue("1 fallback", otherRunner.getCounterValue("Memory Budget Fallbacks") == 1);
+        } finally {
+            held.close();
+        }
+        otherRunner.enqueue("{\"name\":\"John\",\"address\":null}");
+        otherRunner.run(1);
+        assertTrue("1 tree once released", otherRunner.getCounterValue("Engine: TREE") == 1);
+        List<MockFlowFile> mockFlowFileList = otherRunner.getFlowFilesForRelationship(JsonNullRemover.REL_SUCCESS);
+        assertTrue("2 match", mockFlowFileList.size() == 2);
+        for (MockFlowFile mockFlowFile : mockFlowFileList) {
+            mockFlowFile.assertContentEquals("{\"name\":\"John\"}");
+        }
+    }
+
+    @Test
+    public void outputTesterJsonNullRemoverTreeModeCountsAgainstBudget() {
+        TestRunner autoRunner = TestRunners.newTestRunner(JsonNullRemover.class);
+        autoRunner.setProperty(JsonNullRemover.PROCESSING_MODE, "AUTO");
+        ((JsonNullRemover) autoRunner.getProcessor()).setMemoryBudget(budget);
+
+        /* a tree that cannot stream instead is reserved even beyond the budget, and released once written */
+        testRunner.enqueue("{\"name\":\"John\",\"address\":null}");
+        testRunner.run(1);
+        assertTrue("released", budget.getReserved() == 0);
+        MemoryBudget.Reservation held = budget.reserve(2 * budget.getCapacity());
+        try {
+            assertTrue("overdrawn", budget.getReserved() == 2 * budget.getCapacity());
+            autoRunner.enqueue("{\"name\":\"John\",\"address\":null}");
+            autoRunner.run(1);
+            assertTrue("1 streamed", autoRunner.getCounterValue("Engine: STREAMING") == 1);
+            assertTrue("1 fallback", autoRunner.getCounterValue("Memory Budget Fallbacks") == 1);
+        } finally {
+            held.close();
+        }
+        autoRunner.enqueue("{\"name\":\"John\",\"address\":null}");
+        autoRunner.run(1);
+        assertTrue("1 tree once released", autoRunner.getCounterValue("Engine: TREE") == 1);
+    }
+
+    @Test
+    public void outputTesterJsonNullRemoverAutoEngineCompressed() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressed)) {
+            gzipOutputStream.write("{\"name\":\"John\",\"address\":null}".getBytes(StandardCharsets.UTF_8));
+        }
+        testRunner.setProperty(JsonNullRemover.PROCESSING_MODE, "AUTO");
+        testRunner.enqueue(compressed.toByteArray());
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        /* small as stored, but its decompressed size is unknown up front */
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(JsonNullRemover.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("{\"name\":\"John\"}");
+        assertTrue("1 streamed", testRunner.getCounterValue("Engine: STREAMING") == 1);
+        assertTrue("no tree", testRunner.getCounterValue("Engine: TREE") == null);
+    }
+
+    private static byte[] encode(DataFormat format, String json) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (JsonGenerator generator = format.getFactory().createGenerator(outputStream)) {
+            JsonTreeCodec.write(new Gson().fromJson(json, JsonObject.class), generator);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static String decode(DataFormat format, byte[] content) throws IOException {
+        try (JsonParser parser = format.getFactory().createParser(content)) {
+            parser.nextToken();
+            return JsonTreeCodec.read(parser).toString();
+        }
+    }
+
 }
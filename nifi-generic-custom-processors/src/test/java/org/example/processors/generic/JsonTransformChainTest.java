@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.example.processors.generic;
+
+import org.apache.nifi.util.MockFlowFile;
+import org.apache.nifi.util.TestRunner;
+import org.apache.nifi.util.TestRunners;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * @implNote check to verify processors output
+ */
+public class JsonTransformChainTest {
+
+    private TestRunner testRunner;
+
+    @BeforeEach
+    public void init() {
+        testRunner = TestRunners.newTestRunner(JsonTransformChain.class);
+    }
+
+    @Test
+    public void outputTesterJsonTransformChain() {
+        String jsonString = "{\"name\": \"John Doe\", \"address\": null, \"note\": \" \", \"key1\": \"six\", "
+                + "\"email\": \"john@example.org\", \"AA\": \"0.705342\"}";
+
+        /* the four processors of the flow as one chain */
+        testRunner.setProperty(JsonTransformChain.OPERATIONS, "REMOVE_NULLS,KEY_MAP,REGEX,RANGE");
+        testRunner.setProperty(JsonTransformChain.CONST_MAP_KEYS, "six,2012");
+        testRunner.setProperty(JsonTransformChain.CONST_MAP_VALUES, "red,yellow");
+        testRunner.setProperty(JsonTransformChain.KEY_TO_CHECK, "key1");
+        testRunner.setProperty(JsonTransformChain.NEW_KEY_NAMES, "cc_newField");
+        testRunner.setProperty(JsonTransformChain.REGEX_PATTERN, "@(.*)$");
+        testRunner.setProperty(JsonTransformChain.REGEX_FIELD, "email");
+        testRunner.setProperty(JsonTransformChain.RANGE_FIELD, "AA");
+        testRunner.setProperty(JsonTransformChain.RANGE_NEW_FIELD, "icc_key");
+        testRunner.enqueue(jsonString);
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        /* same result as the four processors back to back */
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(JsonTransformChain.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("{\"name\":\"John Doe\",\"key1\":\"six\",\"email\":\"@example.org\","
+                + "\"AA\":\"0.705342\",\"cc_newField\":\"red\",\"icc_key\":\"70-80\"}");
+    }
+
+    @Test
+    public void outputTesterJsonTransformChainOrder() {
+        /* the range is computed before the regex keeps only the leading digit */
+        testRunner.setProperty(JsonTransformChain.OPERATIONS, "RANGE,REGEX");
+        testRunner.setProperty(JsonTransformChain.RANGE_FIELD, "AA");
+        testRunner.setProperty(JsonTransformChain.RANGE_NEW_FIELD, "icc_key");
+        testRunner.setProperty(JsonTransformChain.REGEX_PATTERN, "^\\d");
+        testRunner.setProperty(JsonTransformChain.REGEX_FIELD, "icc_key");
+        testRunner.enqueue("{\"AA\": 0.25}");
+        testRunner.run(1);
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(JsonTransformChain.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("{\"AA\":0.25,\"icc_key\":\"2\"}");
+    }
+
+    @Test
+    public void outputTesterJsonTransformChainMissingProperty() {
+        /* KEY_MAP needs its keys, values and field names */
+        testRunner.setProperty(JsonTransformChain.OPERATIONS, "REMOVE_NULLS,KEY_MAP");
+        testRunner.assertNotValid();
+
+        testRunner.setProperty(JsonTransformChain.OPERATIONS, "REMOVE_NULLS,UPPERCASE");
+        testRunner.assertNotValid();
+
+        testRunner.setProperty(JsonTransformChain.OPERATIONS, "REMOVE_NULLS");
+        testRunner.assertValid();
+    }
+
+}
@@ -16,15 +16,41 @@
  */
 package org.example.processors.generic;
 
+import com.google.gson.JsonParser;
 import org.apache.commons.io.IOUtils;
+import org.apache.nifi.controller.AbstractControllerService;
+import org.apache.nifi.distributed.cache.client.Deserializer;
+import org.apache.nifi.distributed.cache.client.DistributedMapCacheClient;
+import org.apache.nifi.distributed.cache.client.Serializer;
+import org.apache.nifi.logging.ComponentLog;
+import org.apache.nifi.reporting.InitializationException;
+import org.apache.nifi.serialization.RecordReader;
+import org.apache.nifi.serialization.record.MockRecordParser;
+import org.apache.nifi.serialization.record.MockRecordWriter;
+import org.apache.nifi.serialization.record.RecordFieldType;
 import org.apache.nifi.util.MockFlowFile;
 import org.apache.nifi.util.TestRunner;
 import org.apache.nifi.util.TestRunners;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -79,4 +105,480 @@ public class KeyMapReplacerTest {
         fjonj.close();*/
     }
 
+    @Test
+    public void outputTesterTwoInstances() {
+        TestRunner otherRunner = TestRunners.newTestRunner(KeyMapReplacer.class);
+        testRunner.setProperty(KeyMapReplacer.CONST_MAP_KEYS, "six");
+        testRunner.setProperty(KeyMapReplacer.CONST_MAP_VALUES, "red");
+        testRunner.setProperty(KeyMapReplacer.KEY_TO_CHECK, "key3");
+        testRunner.setProperty(KeyMapReplacer.NEW_KEY_NAMES, "color");
+        otherRunner.setProperty(KeyMapReplacer.CONST_MAP_KEYS, "2012");
+        otherRunner.setProperty(KeyMapReplacer.CONST_MAP_VALUES, "yellow");
+        otherRunner.setProperty(KeyMapReplacer.KEY_TO_CHECK, "key2");
+        otherRunner.setProperty(KeyMapReplacer.NEW_KEY_NAMES, "year");
+        testRunner.enqueue("{\"key2\": \"2012\", \"key3\": \"six\"}");
+        otherRunner.enqueue("{\"key2\": \"2012\", \"key3\": \"six\"}");
+
+        /* both are scheduled before either runs, neither may see the settings of the other */
+        testRunner.run(1, false, true);
+        otherRunner.run(1, false, true);
+        testRunner.enqueue("{\"key2\": \"2012\", \"key3\": \"six\"}");
+        testRunner.run(1, true, false);
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(KeyMapReplacer.REL_SUCCESS);
+        assertTrue("2 match", mockFlowFileList.size() == 2);
+        for (MockFlowFile mockFlowFile : mockFlowFileList) {
+            mockFlowFile.assertContentEquals("{\"key2\":\"2012\",\"key3\":\"six\",\"color\":\"red\"}");
+        }
+        mockFlowFileList = otherRunner.getFlowFilesForRelationship(KeyMapReplacer.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("{\"key2\":\"2012\",\"key3\":\"six\",\"year\":\"yellow\"}");
+    }
+
+    @Test
+    public void outputTesterKeyNamesMismatch() {
+        /* every key to check needs a new key name, the processor cannot be started otherwise */
+        testRunner.setProperty(KeyMapReplacer.KEY_TO_CHECK, "key1,key2");
+        testRunner.setProperty(KeyMapReplacer.NEW_KEY_NAMES, "cc_newField");
+        testRunner.assertNotValid();
+        testRunner.setProperty(KeyMapReplacer.NEW_KEY_NAMES, "cc_newField,cc_newField2");
+        testRunner.assertValid();
+    }
+
+    @Test
+    public void outputTesterRecords() throws InitializationException {
+        /* record reader with two records, writer prints the enriched records as csv */
+        MockRecordParser recordReader = new MockRecordParser();
+        recordReader.addSchemaField("key1", RecordFieldType.STRING);
+        recordReader.addSchemaField("key2", RecordFieldType.STRING);
+        recordReader.addRecord("value1", "2012");
+        recordReader.addRecord("six", "2012");
+        MockRecordWriter recordWriter = new MockRecordWriter(null, false);
+        testRunner.addControllerService("reader", recordReader);
+        testRunner.addControllerService("writer", recordWriter);
+        testRunner.enableControllerService(recordReader);
+        testRunner.enableControllerService(recordWriter);
+
+        /* Adding properties */
+        testRunner.setProperty(KeyMapReplacer.CONST_MAP_KEYS, "six,2012,value1");
+        testRunner.setProperty(KeyMapReplacer.CONST_MAP_VALUES, "red,yellow,set");
+        testRunner.setProperty(KeyMapReplacer.KEY_TO_CHECK, "key1,key2");
+        testRunner.setProperty(KeyMapReplacer.NEW_KEY_NAMES, "cc_newField,cc_newField2");
+        testRunner.setProperty(KeyMapReplacer.RECORD_READER, "reader");
+        testRunner.setProperty(KeyMapReplacer.RECORD_WRITER, "writer");
+        /* the mock reader ignores the content, it only has to be non empty */
+        testRunner.enqueue("records");
+
+        /* Run the enqueued content, it also takes an int = number of contents queued */
+        testRunner.run(1);
+
+        /* All results were processed without failure */
+        testRunner.assertQueueEmpty();
+
+        /* every record of the FlowFile is enriched in one pass */
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(KeyMapReplacer.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        MockFlowFile MockFileREL_SUCCESS = mockFlowFileList.get(0);
+        MockFileREL_SUCCESS.assertAttributeEquals("record.count", "2");
+        String resultRecords = IOUtils.toString(testRunner.getContentAsByteArray(MockFileREL_SUCCESS));
+        assertTrue("first record enriched", resultRecords.contains("value1,2012,set,yellow"));
+        assertTrue("second record enriched", resultRecords.contains("six,2012,red,yellow"));
+    }
+
+    @Test
+    public void outputTesterRecordsGzip() throws InitializationException, IOException {
+        /* the reader is handed the decompressed content and the writer output is compressed */
+        ContentCapturingRecordParser recordReader = new ContentCapturingRecordParser();
+        recordReader.addSchemaField("key1", RecordFieldType.STRING);
+        recordReader.addRecord("six");
+        MockRecordWriter recordWriter = new MockRecordWriter(null, false);
+        testRunner.addControllerService("reader", recordReader);
+        testRunner.addControllerService("writer", recordWriter);
+        testRunner.enableControllerService(recordReader);
+        testRunner.enableControllerService(recordWriter);
+        testRunner.setProperty(KeyMapReplacer.CONST_MAP_KEYS, "six");
+        testRunner.setProperty(KeyMapReplacer.CONST_MAP_VALUES, "red");
+        testRunner.setProperty(KeyMapReplacer.KEY_TO_CHECK, "key1");
+        testRunner.setProperty(KeyMapReplacer.NEW_KEY_NAMES, "color");
+        testRunner.setProperty(KeyMapReplacer.RECORD_READER, "reader");
+        testRunner.setProperty(KeyMapReplacer.RECORD_WRITER, "writer");
+        testRunner.setProperty(KeyMapReplacer.OUTPUT_COMPRESSION, "GZIP");
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressed)) {
+            gzipOutputStream.write("key1\nsix\n".getBytes(StandardCharsets.UTF_8));
+        }
+        testRunner.enqueue(compressed.toByteArray());
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        assertTrue("reader got plain content", "key1\nsix\n".equals(recordReader.content));
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(KeyMapReplacer.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        MockFlowFile mockFlowFile = mockFlowFileList.get(0);
+        mockFlowFile.assertAttributeEquals("mime.type", "application/gzip");
+        assertTrue("gz file name", mockFlowFile.getAttribute("filename").endsWith(".gz"));
+        try (GZIPInputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(testRunner.getContentAsByteArray(mockFlowFile)))) {
+            assertTrue("record enriched", IOUtils.toString(gzipInputStream, StandardCharsets.UTF_8).contains("six,red"));
+        }
+    }
+
+    @Test
+    public void outputTesterRecordsReaderFailure() throws InitializationException {
+        /* an unchecked exception of the record services routes to failure instead of rolling the session back */
+        FailingRecordParser recordReader = new FailingRecordParser();
+        MockRecordWriter recordWriter = new MockRecordWriter(null, false);
+        testRunner.addControllerService("reader", recordReader);
+        testRunner.addControllerService("writer", recordWriter);
+        testRunner.enableControllerService(recordReader);
+        testRunner.enableControllerService(recordWriter);
+        testRunner.setProperty(KeyMapReplacer.KEY_TO_CHECK, "key1");
+        testRunner.setProperty(KeyMapReplacer.NEW_KEY_NAMES, "color");
+        testRunner.setProperty(KeyMapReplacer.RECORD_READER, "reader");
+        testRunner.setProperty(KeyMapReplacer.RECORD_WRITER, "writer");
+        testRunner.enqueue("records");
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(KeyMapReplacer.REL_FAILURE);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("records");
+    }
+
+    @Test
+    public void outputTesterLookupFile(@TempDir Path tempDir) throws IOException {
+        /* lookup table file replaces the KEYS and VALUES properties */
+        Path lookupFile = tempDir.resolve("merchant-codes.csv");
+        Files.write(lookupFile, "six,red\n2012,yellow\nvalue1,set\n".getBytes(StandardCharsets.UTF_8));
+
+        /* Adding properties */
+        testRunner.setProperty(KeyMapReplacer.KEY_TO_CHECK, "key1,key2");
+        testRunner.setProperty(KeyMapReplacer.NEW_KEY_NAMES, "cc_newField,cc_newField2");
+        testRunner.setProperty(KeyMapReplacer.LOOKUP_FILE, lookupFile.toString());
+        // Add the content to the runner
+        testRunner.enqueue("{\"key1\": \"value1\", \"key2\": \"2012\", \"key3\": \"six\"}");
+
+        /* Run the enqueued content, it also takes an int = number of contents queued */
+        testRunner.run(1);
+
+        /* All results were processed without failure */
+        testRunner.assertQueueEmpty();
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(KeyMapReplacer.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("{\"key1\":\"value1\",\"key2\":\"2012\",\"key3\":\"six\",\"cc_newField\":\"set\",\"cc_newField2\":\"yellow\"}");
+    }
+
+    @Test
+    public void outputTesterLookupFileReloaded(@TempDir Path tempDir) throws IOException, InterruptedException {
+        Path lookupFile = tempDir.resolve("merchant-codes.csv");
+        Files.write(lookupFile, "value1,set\n".getBytes(StandardCharsets.UTF_8));
+        testRunner.setProperty(KeyMapReplacer.KEY_TO_CHECK, "key1");
+        testRunner.setProperty(KeyMapReplacer.NEW_KEY_NAMES, "cc_newField");
+        testRunner.setProperty(KeyMapReplacer.LOOKUP_FILE, lookupFile.toString());
+        testRunner.setProperty(KeyMapReplacer.LOOKUP_RELOAD_INTERVAL, "50 millis");
+        testRunner.enqueue("{\"key1\": \"value1\"}");
+        testRunner.run(1, false, true);
+
+        /* the changed file is loaded by the reload thread, FlowFiles use the loaded table until it is swapped */
+        Files.write(lookupFile, "value1,changed\n".getBytes(StandardCharsets.UTF_8));
+        long deadline = System.currentTimeMillis() + 10000;
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(KeyMapReplacer.REL_SUCCESS);
+        while (!mockFlowFileList.get(mockFlowFileList.size() - 1).isContentEqual("{\"key1\":\"value1\",\"cc_newField\":\"changed\"}")
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            testRunner.enqueue("{\"key1\": \"value1\"}");
+            testRunner.run(1, false, false);
+            mockFlowFileList = testRunner.getFlowFilesForRelationship(KeyMapReplacer.REL_SUCCESS);
+        }
+        testRunner.enqueue("{\"key1\": \"value1\"}");
+        testRunner.run(1, true, false);
+        testRunner.assertQueueEmpty();
+
+        mockFlowFileList = testRunner.getFlowFilesForRelationship(KeyMapReplacer.REL_SUCCESS);
+        mockFlowFileList.get(0).assertContentEquals("{\"key1\":\"value1\",\"cc_newField\":\"set\"}");
+        mockFlowFileList.get(mockFlowFileList.size() - 1).assertContentEquals("{\"key1\":\"value1\",\"cc_newField\":\"changed\"}");
+    }
+
+    @Test
+    public void outputTesterLookupFileRewrittenInPlace(@TempDir Path tempDir) throws IOException {
+        Path lookupFile = tempDir.resolve("merchant-codes.csv");
+        Files.write(lookupFile, "six,red\n2012,yellow\nvalue1,set\n".getBytes(StandardCharsets.UTF_8));
+        testRunner.setProperty(KeyMapReplacer.KEY_TO_CHECK, "key1,key2");
+        testRunner.setProperty(KeyMapReplacer.NEW_KEY_NAMES, "cc_newField,cc_newField2");
+        testRunner.setProperty(KeyMapReplacer.LOOKUP_FILE, lookupFile.toString());
+        testRunner.setProperty(KeyMapReplacer.LOOKUP_RELOAD_INTERVAL, "1 hour");
+        testRunner.enqueue("{\"key1\": \"value1\", \"key2\": \"2012\"}");
+        testRunner.run(1, false, true);
+
+        /* truncated and rewritten under the loaded table, before the next reload check */
+        Files.write(lookupFile, "x,y\n".getBytes(StandardCharsets.UTF_8));
+        testRunner.enqueue("{\"key1\": \"value1\", \"key2\": \"2012\"}");
+        testRunner.run(1, true, false);
+        testRunner.assertQueueEmpty();
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(KeyMapReplacer.REL_SUCCESS);
+        assertTrue("2 match", mockFlowFileList.size() == 2);
+        for (MockFlowFile mockFlowFile : mockFlowFileList) {
+            mockFlowFile.assertContentEquals("{\"key1\":\"value1\",\"key2\":\"2012\",\"cc_newField\":\"set\",\"cc_newField2\":\"yellow\"}");
+        }
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertTrue("no snapshot left behind", files.count() == 1);
+        }
+    }
+
+    @Test
+    public void outputTesterSplice() {
+        /* the original bytes are kept, an existing new key is replaced in place and the others go before the brace */
+        String jsonString = "{ \"key1\": \"value1\", \"cc_newField2\": null, \"key2\": 2012, \"nested\": {\"key1\": \"six\"} }";
+
+        testRunner.setProperty(KeyMapReplacer.CONST_MAP_KEYS, "six,2012,value1");
+        testRunner.setProperty(KeyMapReplacer.CONST_MAP_VALUES, "red,yellow,set");
+        testRunner.setProperty(KeyMapReplacer.KEY_TO_CHECK, "key1,key2");
+        testRunner.setProperty(KeyMapReplacer.NEW_KEY_NAMES, "cc_newField,cc_newField2");
+        testRunner.setProperty(KeyMapReplacer.PROCESSING_MODE, "SPLICE");
+        testRunner.enqueue(jsonString);
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(KeyMapReplacer.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("{ \"key1\": \"value1\", \"cc_newField2\": \"yellow\", \"key2\": 2012, "
+                + "\"nested\": {\"key1\": \"six\"},\"cc_newField\":\"set\" }");
+    }
+
+    @Test
+    public void outputTesterSpliceMembersRemoved() {
+        String[][] cases = {
+                /* new key names, input */
+                {"cc_newField,cc_newField2", "{\"a\":1,\"key1\":\"ZZ\",\"key3\":\"QQ\",\"cc_newField\":\"x\",\"cc_newField2\":\"y\"}"},
+                {"key1,key3", "{\"key1\":\"ZZ\", \"key3\":\"QQ\"}"},
+                {"key1,key3", "{\"a\":1, \"key1\":\"ZZ\" , \"key3\":\"QQ\" }"},
+                {"key1,key3", "{\"key1\":\"ZZ\",\"a\":1,\"key3\":\"QQ\"}"},
+                {"cc_newField,cc_newField2", "{\"cc_newField\":\"x\",\"cc_newField2\":\"y\",\"key1\":\"ZZ\",\"key3\":\"QQ\"}"}
+        };
+        for (String[] testCase : cases) {
+            String[] outputs = new String[2];
+            String[] modes = {"SPLICE", "TREE"};
+            for (int m = 0; m < modes.length; m++) {
+                init();
+                testRunner.setProperty(KeyMapReplacer.CONST_MAP_KEYS, "six");
+                testRunner.setProperty(KeyMapReplacer.CONST_MAP_VALUES, "red");
+                testRunner.setProperty(KeyMapReplacer.KEY_TO_CHECK, "key1,key3");
+                testRunner.setProperty(KeyMapReplacer.NEW_KEY_NAMES, testCase[0]);
+                testRunner.setProperty(KeyMapReplacer.PROCESSING_MODE, modes[m]);
+                testRunner.enqueue(testCase[1]);
+                testRunner.run(1);
+                List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(KeyMapReplacer.REL_SUCCESS);
+                assertTrue(modes[m] + " 1 match", mockFlowFileList.size() == 1);
+                outputs[m] = mockFlowFileList.get(0).getContent();
+            }
+
+            /* every member the lookup misses goes with one separator, the rest still parses as the tree output */
+            assertTrue(outputs[0], JsonParser.parseString(outputs[0]).equals(JsonParser.parseString(outputs[1])));
+        }
+        testRunner.assertQueueEmpty();
+    }
+
+    @Test
+    public void outputTesterSpliceTrailingMembersRemoved() {
+        testRunner.setProperty(KeyMapReplacer.CONST_MAP_KEYS, "six");
+        testRunner.setProperty(KeyMapReplacer.CONST_MAP_VALUES, "red");
+        testRunner.setProperty(KeyMapReplacer.KEY_TO_CHECK, "key1,key3");
+        testRunner.setProperty(KeyMapReplacer.NEW_KEY_NAMES, "cc_newField,cc_newField2");
+        testRunner.setProperty(KeyMapReplacer.PROCESSING_MODE, "SPLICE");
+        testRunner.enqueue("{\"a\":1,\"key1\":\"ZZ\",\"key3\":\"QQ\",\"cc_newField\":\"x\",\"cc_newField2\":\"y\"}");
+        testRunner.run(1);
+
+        /* both trailing members are dropped together with the commas before them */
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(KeyMapReplacer.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("{\"a\":1,\"key1\":\"ZZ\",\"key3\":\"QQ\"}");
+    }
+
+    @Test
+    public void outputTesterSpliceMalformed() {
+        /* the scan still rejects content that is not a single json object */
+        testRunner.setProperty(KeyMapReplacer.KEY_TO_CHECK, "key1");
+        testRunner.setProperty(KeyMapReplacer.NEW_KEY_NAMES, "cc_newField");
+        testRunner.setProperty(KeyMapReplacer.PROCESSING_MODE, "SPLICE");
+        String jsonString = "{\"key1\": \"six\"";
+        testRunner.enqueue(jsonString);
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(KeyMapReplacer.REL_FAILURE);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals(jsonString);
+    }
+
+    @Test
+    public void outputTesterCacheServiceRecords() throws InitializationException {
+        /* keys of every record go to the cache service in one request */
+        StandaloneMapCacheClient cacheClient = new StandaloneMapCacheClient();
+        cacheClient.entries.put("six", "red");
+        cacheClient.entries.put("2012", "yellow");
+        cacheClient.entries.put("value1", "set");
+        MockRecordParser recordReader = new MockRecordParser();
+        recordReader.addSchemaField("key1", RecordFieldType.STRING);
+        recordReader.addSchemaField("key2", RecordFieldType.STRING);
+        recordReader.addRecord("value1", "2012");
+        recordReader.addRecord("six", "2012");
+        recordReader.addRecord("six", "unknown");
+        MockRecordWriter recordWriter = new MockRecordWriter(null, false);
+        testRunner.addControllerService("cache", cacheClient);
+        testRunner.addControllerService("reader", recordReader);
+        testRunner.addControllerService("writer", recordWriter);
+        testRunner.enableControllerService(cacheClient);
+        testRunner.enableControllerService(recordReader);
+        testRunner.enableControllerService(recordWriter);
+
+        testRunner.setProperty(KeyMapReplacer.KEY_TO_CHECK, "key1,key2");
+        testRunner.setProperty(KeyMapReplacer.NEW_KEY_NAMES, "cc_newField,cc_newField2");
+        testRunner.setProperty(KeyMapReplacer.LOOKUP_CACHE_SERVICE, "cache");
+        testRunner.setProperty(KeyMapReplacer.RECORD_READER, "reader");
+        testRunner.setProperty(KeyMapReplacer.RECORD_WRITER, "writer");
+        testRunner.enqueue("records");
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(KeyMapReplacer.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        String resultRecords = IOUtils.toString(testRunner.getContentAsByteArray(mockFlowFileList.get(0)));
+        assertTrue("first record enriched", resultRecords.contains("value1,2012,set,yellow"));
+        assertTrue("third record enriched", resultRecords.contains("six,unknown,red,"));
+        assertEquals("one batched request", 1, cacheClient.subMapCalls.get());
+        assertEquals("no single key request", 0, cacheClient.getCalls.get());
+    }
+
+    @Test
+    public void outputTesterCacheServiceNearCache() throws InitializationException {
+        /* the second FlowFile is answered by the near-cache, an unknown key is remembered as well */
+        StandaloneMapCacheClient cacheClient = new StandaloneMapCacheClient();
+        cacheClient.entries.put("six", "red");
+        testRunner.addControllerService("cache", cacheClient);
+        testRunner.enableControllerService(cacheClient);
+
+        testRunner.setProperty(KeyMapReplacer.KEY_TO_CHECK, "key1,key2");
+        testRunner.setProperty(KeyMapReplacer.NEW_KEY_NAMES, "cc_newField,cc_newField2");
+        testRunner.setProperty(KeyMapReplacer.LOOKUP_CACHE_SERVICE, "cache");
+        testRunner.setProperty(KeyMapReplacer.BATCH_SIZE, "2");
+        testRunner.enqueue("{\"key1\": \"six\", \"key2\": \"unknown\"}");
+        testRunner.enqueue("{\"key1\": \"six\", \"key2\": \"unknown\"}");
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(KeyMapReplacer.REL_SUCCESS);
+        assertTrue("2 matches", mockFlowFileList.size() == 2);
+        mockFlowFileList.get(1).assertContentEquals("{\"key1\":\"six\",\"key2\":\"unknown\",\"cc_newField\":\"red\"}");
+        assertEquals("one request for both FlowFiles", 1, cacheClient.subMapCalls.get() + cacheClient.getCalls.get());
+    }
+
+    @Test
+    public void outputTesterCacheServiceWithLookupFile(@TempDir Path tempDir) throws IOException, InitializationException {
+        /* only one lookup source can be set */
+        Path lookupFile = tempDir.resolve("merchant-codes.csv");
+        Files.write(lookupFile, "six,red\n".getBytes(StandardCharsets.UTF_8));
+        StandaloneMapCacheClient cacheClient = new StandaloneMapCacheClient();
+        testRunner.addControllerService("cache", cacheClient);
+        testRunner.enableControllerService(cacheClient);
+
+        testRunner.setProperty(KeyMapReplacer.LOOKUP_FILE, lookupFile.toString());
+        testRunner.setProperty(KeyMapReplacer.LOOKUP_CACHE_SERVICE, "cache");
+        testRunner.assertNotValid();
+    }
+
+    /**
+     * in memory stand-in for a DistributedMapCacheServer and its client, counting the requests it receives
+     */
+    private static class StandaloneMapCacheClient extends AbstractControllerService implements DistributedMapCacheClient {
+        private final Map<String, String> entries = new ConcurrentHashMap<>();
+        private final AtomicInteger getCalls = new AtomicInteger();
+        private final AtomicInteger subMapCalls = new AtomicInteger();
+
+        @Override
+        public <K, V> boolean putIfAbsent(K key, V value, Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException {
+            return entries.putIfAbsent(serialize(key, keySerializer), serialize(value, valueSerializer)) == null;
+        }
+
+        @Override
+        public <K, V> V getAndPutIfAbsent(K key, V value, Serializer<K> keySerializer, Serializer<V> valueSerializer, Deserializer<V> valueDeserializer) throws IOException {
+            String previous = entries.putIfAbsent(serialize(key, keySerializer), serialize(value, valueSerializer));
+            return previous == null ? null : valueDeserializer.deserialize(previous.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public <K> boolean containsKey(K key, Serializer<K> keySerializer) throws IOException {
+            return entries.containsKey(serialize(key, keySerializer));
+        }
+
+        @Override
+        public <K, V> void put(K key, V value, Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException {
+            entries.put(serialize(key, keySerializer), serialize(value, valueSerializer));
+        }
+
+        @Override
+        public <K, V> V get(K key, Serializer<K> keySerializer, Deserializer<V> valueDeserializer) throws IOException {
+            getCalls.incrementAndGet();
+            String value = entries.get(serialize(key, keySerializer));
+            return valueDeserializer.deserialize(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public <K, V> Map<K, V> subMap(Set<K> keys, Serializer<K> keySerializer, Deserializer<V> valueDeserializer) throws IOException {
+            subMapCalls.incrementAndGet();
+            Map<K, V> values = new HashMap<>();
+            for (K key : keys) {
+                String value = entries.get(serialize(key, keySerializer));
+                values.put(key, valueDeserializer.deserialize(value == null ? null : value.getBytes(StandardCharsets.UTF_8)));
+            }
+            return values;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public <K> boolean remove(K key, Serializer<K> serializer) throws IOException {
+            return entries.remove(serialize(key, serializer)) != null;
+        }
+
+        @Override
+        public long removeByPattern(String regex) {
+            int before = entries.size();
+            entries.keySet().removeIf(key -> key.matches(regex));
+            return before - entries.size();
+        }
+
+        private static <T> String serialize(T value, Serializer<T> serializer) throws IOException {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            serializer.serialize(value, output);
+            return new String(output.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+
+    /* mock reader that keeps the content it is given, the records still come from addRecord */
+    private static class ContentCapturingRecordParser extends MockRecordParser {
+        private volatile String content;
+
+        @Override
+        public RecordReader createRecordReader(Map<String, String> variables, InputStream in, long inputLength, ComponentLog logger) {
+            try {
+                content = IOUtils.toString(in, StandardCharsets.UTF_8);
+                return super.createRecordReader(variables, in, inputLength, logger);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /* mock reader whose reader cannot be created */
+    private static class FailingRecordParser extends MockRecordParser {
+        @Override
+        public RecordReader createRecordReader(Map<String, String> variables, InputStream in, long inputLength, ComponentLog logger) {
+            throw new IllegalStateException("reader unavailable");
+        }
+    }
+
 }
@@ -76,4 +76,147 @@ public class RangeConverterTest {
         fjonj.close();*/
     }
 
+    @Test
+    public void outputTesterRangeConverterArray() {
+        String jsonString = "[{\"AA\": \"0.705342\"}, {\"AA\": 0.25, \"BB\": null}]";
+
+        testRunner.setProperty(RangeConverter.SpecifiedKey, "AA");
+        testRunner.setProperty(RangeConverter.SpecifiedNewKey, "icc_key");
+        testRunner.enqueue(jsonString);
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        /* every element of the top-level array is converted, the array is kept */
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(RangeConverter.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("[{\"AA\":\"0.705342\",\"icc_key\":\"70-80\"},{\"AA\":0.25,\"icc_key\":\"20-30\"}]");
+        assertTrue("2 records", testRunner.getCounterValue("Records") == 2);
+    }
+
+    @Test
+    public void outputTesterRangeConverterTwoInstances() {
+        TestRunner otherRunner = TestRunners.newTestRunner(RangeConverter.class);
+        testRunner.setProperty(RangeConverter.SpecifiedKey, "AA");
+        testRunner.setProperty(RangeConverter.SpecifiedNewKey, "icc_key");
+        otherRunner.setProperty(RangeConverter.SpecifiedKey, "BB");
+        otherRunner.setProperty(RangeConverter.SpecifiedNewKey, "bb_key");
+        testRunner.enqueue("{\"AA\": 0.25, \"BB\": 0.75}");
+        otherRunner.enqueue("{\"AA\": 0.25, \"BB\": 0.75}");
+
+        /* both are scheduled before either runs, neither may see the settings of the other */
+        testRunner.run(1, false, true);
+        otherRunner.run(1, false, true);
+        testRunner.enqueue("{\"AA\": 0.25, \"BB\": 0.75}");
+        testRunner.run(1, true, false);
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(RangeConverter.REL_SUCCESS);
+        assertTrue("2 match", mockFlowFileList.size() == 2);
+        for (MockFlowFile mockFlowFile : mockFlowFileList) {
+            mockFlowFile.assertContentEquals("{\"AA\":0.25,\"BB\":0.75,\"icc_key\":\"20-30\"}");
+        }
+        mockFlowFileList = otherRunner.getFlowFilesForRelationship(RangeConverter.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("{\"AA\":0.25,\"BB\":0.75,\"bb_key\":\"70-80\"}");
+    }
+
+    @Test
+    public void outputTesterRangeConverterBuckets() {
+        String jsonString = "[{\"AA\": -3}, {\"AA\": 7}, {\"AA\": 150}, {\"AA\": 5000}]";
+
+        /* uneven, open-ended buckets */
+        testRunner.setProperty(RangeConverter.SpecifiedKey, "AA");
+        testRunner.setProperty(RangeConverter.SpecifiedNewKey, "bucket");
+        testRunner.setProperty(RangeConverter.BUCKET_BOUNDARIES, "0,10,100,1000");
+        testRunner.enqueue(jsonString);
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(RangeConverter.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("[{\"AA\":-3,\"bucket\":\"<0\"},{\"AA\":7,\"bucket\":\"0-10\"},"
+                + "{\"AA\":150,\"bucket\":\"100-1000\"},{\"AA\":5000,\"bucket\":\">=1000\"}]");
+    }
+
+    @Test
+    public void outputTesterRangeConverterBucketLabels() {
+        testRunner.setProperty(RangeConverter.SpecifiedKey, "AA");
+        testRunner.setProperty(RangeConverter.SpecifiedNewKey, "bucket");
+        testRunner.setProperty(RangeConverter.BUCKET_BOUNDARIES, "log:1,1000,3");
+        /* boundaries 1, 10, 100 and 1000 make five buckets */
+        testRunner.setProperty(RangeConverter.BUCKET_LABELS, "low,mid,high");
+        testRunner.assertNotValid();
+
+        testRunner.setProperty(RangeConverter.BUCKET_LABELS, "below,low,mid,high,above");
+        testRunner.assertValid();
+        testRunner.enqueue("{\"AA\": 42}");
+        testRunner.run(1);
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(RangeConverter.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("{\"AA\":42,\"bucket\":\"mid\"}");
+    }
+
+    @Test
+    public void outputTesterRangeConverterNestedPath() {
+        String jsonString = "{\"id\": 1, \"telemetry\": {\"readings\": [0.05, \"0.5\", 0.95], \"unit\": \"ratio\"}}";
+
+        /* a JSON Pointer reaches the nested array, which gets a parallel array of ranges */
+        testRunner.setProperty(RangeConverter.SpecifiedKey, "/telemetry/readings");
+        testRunner.setProperty(RangeConverter.SpecifiedNewKey, "ranges");
+        testRunner.enqueue(jsonString);
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(RangeConverter.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("{\"id\":1,\"telemetry\":{\"readings\":[0.05,\"0.5\",0.95],\"unit\":\"ratio\","
+                + "\"ranges\":[\"0-10\",\"50-60\",\"90-100\"]}}");
+    }
+
+    @Test
+    public void outputTesterRangeConverterStreaming() {
+        String jsonString = "{\"id\": 1, \"telemetry\": {\"readings\": [0.05, \"0.5\", 0.95], \"unit\": \"ratio\"}}";
+
+        /* the readings are read straight from the token stream, the ranges end the object as in the tree */
+        testRunner.setProperty(RangeConverter.SpecifiedKey, "/telemetry/readings");
+        testRunner.setProperty(RangeConverter.SpecifiedNewKey, "ranges");
+        testRunner.setProperty(RangeConverter.PROCESSING_MODE, "STREAMING");
+        testRunner.setProperty(RangeConverter.BUCKET_BOUNDARIES, "0.1,0.9");
+        testRunner.enqueue(jsonString);
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(RangeConverter.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("{\"id\":1,\"telemetry\":{\"readings\":[0.05,\"0.5\",0.95],\"unit\":\"ratio\","
+                + "\"ranges\":[\"<0.1\",\"0.1-0.9\",\">=0.9\"]}}");
+        assertTrue("3 records", testRunner.getCounterValue("Records") == 3);
+    }
+
+    @Test
+    public void outputTesterRangeConverterEnginesAgree() {
+        String[][] cases = {
+                /* new key, input, output */
+                {"icc_key", "{\"AA\": 0.25, \"BB\": 1}", "{\"AA\":0.25,\"BB\":1,\"icc_key\":\"20-30\"}"},
+                {"AA", "{\"AA\": 0.25, \"BB\": 1}", "{\"AA\":\"20-30\",\"BB\":1}"},
+                {"AA", "[{\"AA\": [0.25, 0.75]}]", "[{\"AA\":[\"20-30\",\"70-80\"]}]"},
+                {"icc_key", "{\"AA\": 0.25, \"icc_key\": \"old\", \"BB\": 1}", "{\"AA\":0.25,\"icc_key\":\"20-30\",\"BB\":1}"}
+        };
+        for (String engine : new String[]{"TREE", "STREAMING"}) {
+            for (String[] testCase : cases) {
+                init();
+                testRunner.setProperty(RangeConverter.SpecifiedKey, "AA");
+                testRunner.setProperty(RangeConverter.SpecifiedNewKey, testCase[0]);
+                testRunner.setProperty(RangeConverter.PROCESSING_MODE, engine);
+                testRunner.enqueue(testCase[1]);
+                testRunner.run(1);
+
+                /* the new key lands where the tree puts it, never next to a member of the same name */
+                List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(RangeConverter.REL_SUCCESS);
+                assertTrue(engine + " 1 match", mockFlowFileList.size() == 1);
+                mockFlowFileList.get(0).assertContentEquals(testCase[2]);
+            }
+        }
+    }
+
 }
@@ -16,6 +16,8 @@
  */
 package org.example.processors.generic;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
 import org.apache.commons.io.IOUtils;
 import org.apache.nifi.util.MockFlowFile;
 import org.apache.nifi.util.TestRunner;
@@ -23,7 +25,13 @@ import org.apache.nifi.util.TestRunners;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.Assert.assertTrue;
 
@@ -78,4 +86,196 @@ public class XmlToJsonTest {
         fjonj.close();*/
     }
 
+    @Test
+    public void outputTesterXmlToJsonStreaming() {
+        /* Read the content of a sample JSON file */
+        String xmlString = "<Event xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n" +
+                "<GeneralInformation>\n" +
+                "<EventType>Registration</EventType>\n" +
+                "<Participant Source=\"Target\">\n" +
+                "<Identifier>sony1</Identifier>\n" +
+                "</Participant>\n" +
+                "</GeneralInformation>\n" +
+                "</Event>";
+
+        /* Adding properties */
+        testRunner.setProperty(XmlToJson.PROCESSING_MODE, "STREAMING");
+        // Add the content to the runner
+        testRunner.enqueue(xmlString);
+
+        /* Run the enqueued content, it also takes an int = number of contents queued */
+        testRunner.run(1);
+
+        /* All results were processed without failure */
+        testRunner.assertQueueEmpty();
+
+        /* streamed output has the same shape as the DOM conversion */
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(XmlToJson.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("{\"xmlns:xsi\":\"http://www.w3.org/2001/XMLSchema-instance\"," +
+                "\"GeneralInformation\":{\"EventType\":{\"EventType\":\"Registration\"}," +
+                "\"Participant\":{\"Source\":\"Target\",\"Identifier\":{\"Identifier\":\"sony1\"}}}}");
+    }
+
+    @Test
+    public void outputTesterXmlToJsonStreamingRepeatedSiblings() {
+        String xmlString = "<Order id=\"7\"><Item sku=\"a\">1</Item><Note>first</Note><Item sku=\"b\">2</Item>" +
+                "<id>inner</id><Item><Qty>3</Qty></Item></Order>";
+        String[] contents = new String[2];
+        String[] modes = {"TREE", "STREAMING"};
+        for (int i = 0; i < modes.length; i++) {
+            init();
+            testRunner.setProperty(XmlToJson.PROCESSING_MODE, modes[i]);
+            testRunner.enqueue(xmlString);
+            testRunner.run(1);
+            testRunner.assertQueueEmpty();
+            List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(XmlToJson.REL_SUCCESS);
+            assertTrue(modes[i] + " 1 match", mockFlowFileList.size() == 1);
+            contents[i] = new String(testRunner.getContentAsByteArray(mockFlowFileList.get(0)), StandardCharsets.UTF_8);
+        }
+
+        /* the tree keeps the last repeated sibling in the place of the first one, as JsonObject#add does */
+        String expected = "{\"id\":{\"id\":\"inner\"},\"Item\":{\"Qty\":{\"Qty\":\"3\"}},\"Note\":{\"Note\":\"first\"}}";
+        assertTrue("last wins", contents[0].equals(expected));
+        /* streaming writes every sibling as it is read, a json reader keeping the last value gets the same object */
+        assertTrue("written as read", contents[1].equals("{\"id\":\"7\",\"Item\":{\"sku\":\"a\",\"Item\":\"1\"},\"Note\":{\"Note\":\"first\"}," +
+                "\"Item\":{\"sku\":\"b\",\"Item\":\"2\"},\"id\":{\"id\":\"inner\"},\"Item\":{\"Qty\":{\"Qty\":\"3\"}}}"));
+        assertTrue("same object", new Gson().fromJson(contents[1], JsonObject.class).toString().equals(expected));
+    }
+
+    @Test
+    public void outputTesterXmlToJsonIncludePaths() {
+        /* only the order is kept out of the envelope, the header and the other body elements are skipped */
+        String xmlString = "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">" +
+                "<soap:Header><Token>secret</Token></soap:Header>" +
+                "<soap:Body><GetOrderResponse>" +
+                "<Order id=\"7\"><Total>12.50</Total></Order>" +
+                "<Audit><Entry>created</Entry></Audit>" +
+                "</GetOrderResponse></soap:Body>" +
+                "</soap:Envelope>";
+
+        testRunner.setProperty(XmlToJson.INCLUDE_PATHS, "/Envelope/Body/GetOrderResponse/Order");
+        testRunner.enqueue(xmlString);
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        /* same shape as the whole conversion, without the subtrees that are not selected */
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(XmlToJson.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("{\"xmlns:soap\":\"http://schemas.xmlsoap.org/soap/envelope/\"," +
+                "\"soap:Body\":{\"GetOrderResponse\":{\"Order\":{\"id\":\"7\",\"Total\":{\"Total\":\"12.50\"}}}}}");
+    }
+
+    @Test
+    public void outputTesterXmlToJsonInvalidIncludePaths() {
+        /* predicates are not supported */
+        testRunner.setProperty(XmlToJson.INCLUDE_PATHS, "/Envelope/Body/Order[1]");
+        testRunner.assertNotValid();
+    }
+
+    @Test
+    public void outputTesterXmlToJsonDocumentBuilderPool() {
+        /* one task creates a single document builder and reuses it for the following FlowFiles */
+        testRunner.enqueue("<a><b>1</b></a>");
+        testRunner.enqueue("<a><b>2</b></a>");
+        testRunner.enqueue("<a><b>3</b></a>");
+        testRunner.run(3);
+        testRunner.assertQueueEmpty();
+
+        assertTrue("3 matches", testRunner.getFlowFilesForRelationship(XmlToJson.REL_SUCCESS).size() == 3);
+        assertTrue("1 miss", testRunner.getCounterValue("Pool Misses: DocumentBuilder") == 1);
+        assertTrue("2 hits", testRunner.getCounterValue("Pool Hits: DocumentBuilder") == 2);
+        assertTrue("2 hits in total", testRunner.getCounterValue("Pool Hits") == 2);
+    }
+
+    @Test
+    public void outputTesterXmlToJsonGzip() throws IOException {
+        /* gzip input is detected and inflated while read, the output is compressed while written */
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressed)) {
+            gzipOutputStream.write("<a id=\"1\"><b>text</b></a>".getBytes(StandardCharsets.UTF_8));
+        }
+        testRunner.setProperty(XmlToJson.OUTPUT_COMPRESSION, "GZIP");
+        testRunner.enqueue(compressed.toByteArray());
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(XmlToJson.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        MockFlowFile mockFlowFile = mockFlowFileList.get(0);
+        mockFlowFile.assertAttributeEquals("mime.type", "application/gzip");
+        assertTrue("gz file name", mockFlowFile.getAttribute("filename").endsWith(".json.gz"));
+        try (GZIPInputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(testRunner.getContentAsByteArray(mockFlowFile)))) {
+            assertTrue("inflated output", IOUtils.toString(gzipInputStream, StandardCharsets.UTF_8).equals("{\"id\":\"1\",\"b\":{\"b\":\"text\"}}"));
+        }
+    }
+
+    private static final String FEED = "<feed><header><source>bank</source></header><batch>" +
+            "<transaction id=\"1\"><amount>10</amount></transaction>" +
+            "<transaction id=\"2\"><amount>20</amount></transaction>" +
+            "<transaction id=\"3\"><amount>30</amount></transaction>" +
+            "</batch></feed>";
+
+    @Test
+    public void outputTesterXmlToJsonRecordElement() {
+        /* repeated siblings become one line each instead of overwriting each other */
+        testRunner.setProperty(XmlToJson.RECORD_ELEMENT, "//transaction");
+        testRunner.enqueue(FEED);
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(XmlToJson.REL_SUCCESS);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        mockFlowFileList.get(0).assertContentEquals("{\"id\":\"1\",\"amount\":{\"amount\":\"10\"}}\n" +
+                "{\"id\":\"2\",\"amount\":{\"amount\":\"20\"}}\n" +
+                "{\"id\":\"3\",\"amount\":{\"amount\":\"30\"}}\n");
+        assertTrue("3 records", testRunner.getCounterValue("Records") == 3);
+    }
+
+    @Test
+    public void outputTesterXmlToJsonRecordsPerFlowFile() {
+        testRunner.setProperty(XmlToJson.RECORD_ELEMENT, "/feed/batch/transaction");
+        testRunner.setProperty(XmlToJson.RECORDS_PER_FLOWFILE, "2");
+        testRunner.enqueue(FEED);
+        testRunner.run(1);
+        testRunner.assertQueueEmpty();
+
+        /* the incoming FlowFile is replaced by its splits */
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(XmlToJson.REL_SUCCESS);
+        assertTrue("2 splits", mockFlowFileList.size() == 2);
+        assertTrue("no failure", testRunner.getFlowFilesForRelationship(XmlToJson.REL_FAILURE).isEmpty());
+        MockFlowFile first = mockFlowFileList.get(0);
+        MockFlowFile second = mockFlowFileList.get(1);
+        first.assertContentEquals("{\"id\":\"1\",\"amount\":{\"amount\":\"10\"}}\n" +
+                "{\"id\":\"2\",\"amount\":{\"amount\":\"20\"}}\n");
+        second.assertContentEquals("{\"id\":\"3\",\"amount\":{\"amount\":\"30\"}}\n");
+        first.assertAttributeEquals("fragment.index", "0");
+        second.assertAttributeEquals("fragment.index", "1");
+        first.assertAttributeEquals("fragment.count", "2");
+        first.assertAttributeEquals("record.count", "2");
+        second.assertAttributeEquals("record.count", "1");
+        first.assertAttributeEquals("fragment.identifier", second.getAttribute("fragment.identifier"));
+        assertTrue("3 records", testRunner.getCounterValue("Records") == 3);
+    }
+
+    @Test
+    public void outputTesterXmlToJsonRecordsPerFlowFileMalformed() {
+        testRunner.setProperty(XmlToJson.RECORD_ELEMENT, "//transaction");
+        testRunner.setProperty(XmlToJson.RECORDS_PER_FLOWFILE, "1");
+        testRunner.enqueue("<feed><transaction id=\"1\"/><transaction id=\"2\">");
+        testRunner.run(1);
+
+        /* splits written before the error are dropped, the original goes to failure */
+        List<MockFlowFile> mockFlowFileList = testRunner.getFlowFilesForRelationship(XmlToJson.REL_FAILURE);
+        assertTrue("1 match", mockFlowFileList.size() == 1);
+        assertTrue("no split", testRunner.getFlowFilesForRelationship(XmlToJson.REL_SUCCESS).isEmpty());
+    }
+
+    @Test
+    public void outputTesterXmlToJsonRecordElementWithIncludePaths() {
+        testRunner.setProperty(XmlToJson.RECORD_ELEMENT, "//transaction");
+        testRunner.setProperty(XmlToJson.INCLUDE_PATHS, "//transaction");
+        testRunner.assertNotValid();
+    }
+
 }